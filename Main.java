@@ -1,5 +1,26 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
 import java.io.*;
+import java.lang.management.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.*;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.jsoup.Jsoup;
@@ -11,17 +32,30 @@ public class Main {
     static List<subscription_plan> plans = new ArrayList<>();
     // ArrayList to store media details (movies and TV shows) loaded from CSV files
     static List<Media> media_list = new ArrayList<>();
-    // HashMap to track the frequency of words searched by the user
-    static Map<String, Integer> word_frequency = new HashMap<>();
+    // Map to track the frequency of words searched by the user (concurrent, since server requests update it)
+    static Map<String, Integer> word_frequency = new ConcurrentHashMap<>();
     // Trie data structure for efficient prefix-based search of media names
     static Trie trie = new Trie();
     // Trie data structure specifically for suggesting cast names based on user input
     static Trie cast_trie = new Trie();
+    // Source CSV files for subscription plans and media
+    static final String PLANS_FILE = "subscription_plans.csv";
+    static final String[] MEDIA_FILES = {"Netflix_Data.csv", "AmazonPrime_Data.csv", "AppleTV_Data.csv", "Crave_Data.csv"};
+    // Binary snapshot of the parsed catalog and indexes, used to skip CSV parsing on startup
+    static final String SNAPSHOT_FILE = "catalog.snapshot";
+    // Directory of memory-mapped catalog files used with --offheap
+    static final String OFFHEAP_DIR = "catalog.offheap";
 
     // Class to encapsulate subscription plan details fetched from a CSV file
     static class subscription_plan {
         // Instance variables to hold plan attributes
         String name, price, resolution, devices, concurrent_devices, link, platform;
+        // Typed copies of price, resolution and concurrent streams, parsed once so sorting and filtering never
+        // re-parse the text (unknown price: Integer.MAX_VALUE, unknown resolution or streams such as "-": 0)
+        int price_cents, resolution_tier, streams;
+
+        // Resolution tiers in increasing order; a plan's resolution_tier indexes this array
+        static final String[] RESOLUTION_TIERS = {"Unknown", "SD", "720p", "1080p", "4K", "4K + HDR"};
 
         // Constructor to initialize a subscription plan with provided details
         subscription_plan(String name, String price, String resolution, String devices, String concurrent_devices, String link, String platform) {
@@ -32,11 +66,68 @@ public class Main {
             this.concurrent_devices = concurrent_devices;
             this.link = link;
             this.platform = platform;
+            parse_fields();
+        }
+
+        // Method to derive the typed fields from the text fields; called again whenever the text changes
+        void parse_fields() {
+            price_cents = parse_cents(price);
+            resolution_tier = resolution_tier(resolution);
+            String count = concurrent_devices == null ? "" : concurrent_devices.trim();
+            streams = !count.isEmpty() && count.length() < 9 && count.chars().allMatch(Character::isDigit) ? Integer.parseInt(count) : 0;
+        }
+
+        // Method to check the plan against a minimum resolution tier and stream count; a resolution or stream count
+        // the CSV leaves unknown ("-") is not held against the plan
+        boolean meets(int min_tier, int min_streams) {
+            return (resolution_tier == 0 || resolution_tier >= min_tier) && (streams == 0 || streams >= min_streams);
         }
 
-        // Method to extract and return the numeric price value from the price string
+        // Method to return the numeric price value
         double get_price() { 
-            return Double.parseDouble(price.replaceAll("[^0-9.]", "")); 
+            return price_cents / 100.0; 
+        }
+
+        // Method to parse a price such as "$14.99" into cents, ignoring anything but digits and the decimal point;
+        // returns Integer.MAX_VALUE when there are no digits
+        static int parse_cents(String text) {
+            long cents = 0;
+            int decimals = -1; // Digits seen after the point, or -1 before it
+            boolean digits = false;
+            for (int i = 0; text != null && i < text.length() && cents < Integer.MAX_VALUE; i++) {
+                char ch = text.charAt(i);
+                if (ch == '.' && decimals < 0) {
+                    decimals = 0;
+                } else if (ch >= '0' && ch <= '9' && decimals < 2) {
+                    cents = cents * 10 + (ch - '0');
+                    digits = true;
+                    if (decimals >= 0) decimals++;
+                }
+            }
+            if (!digits) return Integer.MAX_VALUE;
+            for (int d = Math.max(decimals, 0); d < 2; d++) cents *= 10;
+            return (int) Math.min(cents, Integer.MAX_VALUE);
+        }
+
+        // Method to map a resolution description such as "4K (Ultra HD) + HDR" to its tier
+        static int resolution_tier(String text) {
+            String r = text == null ? "" : text.toLowerCase();
+            if (r.contains("4k") || r.contains("2160") || r.contains("ultra hd")) return r.contains("hdr") ? 5 : 4;
+            if (r.contains("1080")) return 3;
+            if (r.contains("720")) return 2;
+            if (r.contains("480") || r.equals("sd")) return 1;
+            return 0;
+        }
+
+        // Method to return the plan order used for listings: by price, then higher resolution, more streams,
+        // platform and name, so equal prices always come out the same way
+        static Comparator<subscription_plan> order(boolean ascending) {
+            Comparator<subscription_plan> by_price = Comparator.comparingInt(p -> p.price_cents);
+            return (ascending ? by_price : by_price.reversed())
+                    .thenComparing(Comparator.comparingInt((subscription_plan p) -> p.resolution_tier).reversed())
+                    .thenComparing(Comparator.comparingInt((subscription_plan p) -> p.streams).reversed())
+                    .thenComparing(p -> p.platform, String.CASE_INSENSITIVE_ORDER)
+                    .thenComparing(p -> p.name, String.CASE_INSENSITIVE_ORDER);
         }
 
         // Method to return the platform name associated with this plan
@@ -52,193 +143,5868 @@ public class Main {
         }
     }
 
-    // Class to represent media items (movies or TV shows) with details from CSV
+    // Class to represent media items (movies or TV shows) with details from CSV. An item in the catalog is a view over
+    // its media_store row: type, genre, release date, season, cast and platform are read from the columns and the
+    // interned dictionaries. A record outside the catalog (parsed for a reload diff, received from a remote shard,
+    // copied off the off-heap catalog) keeps those fields in detached until media_store.add makes it a row
     static class Media {
-        // Instance variables for media attributes
-        String type, name, description, genre, releaseDate, season, cast, platform, url;
+        // Positions of the fields in detached
+        static final int TYPE = 0, GENRE = 1, RELEASE = 2, SEASON = 3, CAST = 4, PLATFORM = 5;
+
+        // Free-text fields, unique to each title
+        String name, description, url;
+        // Dense integer ID, equal to the media item's position in media_list and to its media_store row
+        int id = -1;
+        // Fields of a record that has no media_store row, null once it is in the catalog
+        String[] detached;
 
-        // Constructor to initialize a media object with provided details
+        // Constructor to initialize a media object with provided details, detached from the catalog
         Media(String type, String name, String description, String genre, String releaseDate, String season, String cast, String platform, String url) {
-            this.type = type;
             this.name = name;
             this.description = description;
-            this.genre = genre;
-            this.releaseDate = releaseDate;
-            // Set season to "-" if null or empty, otherwise use provided value
-            this.season = season != null && !season.isEmpty() ? season : "-";
-            this.cast = cast;
-            this.platform = platform;
             this.url = url;
+            // Cast is kept in the form a row gives back, so a record and its catalog copy compare equal
+            this.detached = new String[]{type, genre, releaseDate, season_or_dash(season), media_store.canonical_cast(cast), platform};
+        }
+
+        // Constructor for the view over an existing media_store row
+        Media(int id, String name, String description, String url) {
+            this.id = id;
+            this.name = name;
+            this.description = description;
+            this.url = url;
+        }
+
+        // Helper method to set season to "-" if null or empty, otherwise use provided value
+        static String season_or_dash(String season) {
+            return season != null && !season.isEmpty() ? season : "-";
+        }
+
+        // Methods to read the fields held by media_store (or by detached)
+        String type() { return detached != null ? detached[TYPE] : media_store.types.decode(media_store.type_code[id]); }
+        String genre() { return detached != null ? detached[GENRE] : media_store.genres.decode(media_store.genre_code[id]); }
+        String release_date() { return detached != null ? detached[RELEASE] : media_store.release_dates.decode(media_store.release_code[id]); }
+        String season() { return detached != null ? detached[SEASON] : media_store.seasons.decode(media_store.season_code[id]); }
+        String cast() { return detached != null ? detached[CAST] : media_store.cast_of(id); }
+        String platform() { return detached != null ? detached[PLATFORM] : media_store.platforms.decode(media_store.platform_code[id]); }
+
+        // Method to return the media_store fields in detached order
+        String[] fields() {
+            return detached != null ? detached : new String[]{type(), genre(), release_date(), season(), cast(), platform()};
+        }
+
+        // Method to copy the fields out of the row before the row is dropped or reused
+        void detach() {
+            detached = fields();
         }
 
         // Override toString to provide a formatted string representation of the media item
         @Override
         public String toString() {
-            String base = String.format("%s - %s\nDescription: %s\nGenre: %s\nRelease: %s\nCast: %s\nPlatform: %s\nURL: %s",
-                    type, name, description, genre, releaseDate, cast, platform, url);
+            StringWriter text = new StringWriter(256);
+            media_writer.write_media(new PrintWriter(text), this);
+            return text.toString();
+        }
+    }
+
+    // Class producing search results one page at a time; items are only materialized when their page is requested
+    static class result_cursor<T> {
+        // Number of matches in the whole result
+        final int total;
+        private final Iterator<T> source;
+        private int returned = 0;
+
+        // Constructor to page through an iterator holding total items
+        result_cursor(int total, Iterator<T> source) {
+            this.total = total;
+            this.source = source;
+        }
+
+        // Method to page through the media items of a facet bitset, walking the set bits lazily in ID order
+        static result_cursor<Media> of(BitSet ids) {
+            return new result_cursor<>(ids.cardinality(), new Iterator<Media>() {
+                private int next = ids.nextSetBit(0);
+
+                @Override
+                public boolean hasNext() {
+                    return next >= 0;
+                }
+
+                @Override
+                public Media next() {
+                    if (next < 0) throw new NoSuchElementException();
+                    Media m = media_list.get(next);
+                    next = ids.nextSetBit(next + 1);
+                    return m;
+                }
+            });
+        }
+
+        // Method to page through an already computed list
+        static <T> result_cursor<T> of(List<T> items) {
+            return new result_cursor<>(items.size(), items.iterator());
+        }
+
+        // Method to return the next page of at most size items (empty once the cursor is exhausted)
+        List<T> next_page(int size) {
+            List<T> page = new ArrayList<>(Math.min(size, total - returned));
+            while (page.size() < size && source.hasNext()) page.add(source.next());
+            returned += page.size();
+            return page;
+        }
+
+        // Method to check whether another page is available
+        boolean has_more() {
+            return source.hasNext();
+        }
+
+        // Method to return how many items have been handed out so far
+        int returned() {
+            return returned;
+        }
+    }
+
+    // Class rendering results through a single reusable buffered writer with hand-rolled formatting
+    static class media_writer {
+        // Number of results shown before asking whether to continue (-Dbingebuddy.page_size)
+        static final int PAGE_SIZE = Math.max(1, Integer.getInteger("bingebuddy.page_size", 20));
+        // Divider printed after every result
+        static final String DIVIDER = "------------------------";
+        // Shared writer over System.out; flushed once per page instead of once per line
+        private static final PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16), false);
+
+        // Interface for writing one result item
+        interface renderer<T> {
+            void render(PrintWriter out, T item);
+        }
+
+        // Method to write a media item in the same layout Media.toString has always produced
+        static void write_media(PrintWriter out, Media m) {
+            write_details(out, m);
+            out.print("\nPlatform: ");
+            out.print(m.platform());
+            out.print("\nURL: ");
+            out.print(m.url);
+        }
+
+        // Method to write the fields of a media item that every platform copy shares
+        static void write_details(PrintWriter out, Media m) {
+            out.print(m.type());
+            out.print(" - ");
+            out.print(m.name);
+            out.print("\nDescription: ");
+            out.print(m.description);
+            out.print("\nGenre: ");
+            out.print(m.genre());
+            out.print("\nRelease: ");
+            out.print(m.release_date());
             // Include season in output only for TV shows and if season is specified
-            if (type.equals("TV Show") && !season.equals("-")) {
-                base = String.format("%s - %s\nDescription: %s\nGenre: %s\nRelease: %s\nSeason: %s\nCast: %s\nPlatform: %s\nURL: %s",
-                        type, name, description, genre, releaseDate, season, cast, platform, url);
+            if ("TV Show".equals(m.type()) && !"-".equals(m.season())) {
+                out.print("\nSeason: ");
+                out.print(m.season());
+            }
+            out.print("\nCast: ");
+            out.print(m.cast());
+        }
+
+        // Method to write a consolidated title: its details once, every platform carrying it with the link, and the
+        // cheapest plan that unlocks it, followed by the divider line
+        static void write_work(PrintWriter out, watch_index.work w, Map<String, subscription_plan> cheapest) {
+            write_details(out, w.listings.get(0));
+            out.print("\nWhere to watch:");
+            for (Map.Entry<String, String> listing : w.availability().entrySet()) {
+                out.print("\n  ");
+                out.print(listing.getKey());
+                out.print(": ");
+                out.print(listing.getValue());
+            }
+            subscription_plan plan = w.cheapest_plan(cheapest);
+            if (plan != null) {
+                out.print("\nCheapest plan: ");
+                out.print(plan.name);
+                out.print(" on ");
+                out.print(plan.platform);
+                out.print(" (");
+                out.print(plan.price);
+                out.print("/month)");
+            }
+            out.print('\n');
+            out.print(DIVIDER);
+            out.print('\n');
+        }
+
+        // Method to write a media item followed by the divider line
+        static void write_entry(PrintWriter out, Media m) {
+            write_media(out, m);
+            out.print('\n');
+            out.print(DIVIDER);
+            out.print('\n');
+        }
+
+        // Method to print a cursor page by page; after each full page the user can press Enter for more or q to stop
+        static <T> void page(Scanner scanner, result_cursor<T> cursor, renderer<T> renderer) {
+            while (true) {
+                int first = cursor.returned() + 1;
+                for (T item : cursor.next_page(PAGE_SIZE)) renderer.render(out, item);
+                if (cursor.total > PAGE_SIZE) {
+                    out.print("Showing ");
+                    out.print(first);
+                    out.print('-');
+                    out.print(cursor.returned());
+                    out.print(" of ");
+                    out.print(cursor.total);
+                    out.print(" results\n");
+                }
+                out.flush();
+                if (!cursor.has_more()) return;
+                System.out.print("Press Enter for the next page, or type q to stop: ");
+                if (!scanner.hasNextLine() || scanner.nextLine().trim().equalsIgnoreCase("q")) return;
+            }
+        }
+    }
+
+    // Class holding the catalog's per-title fields other than name, description and URL as columns: type, platform,
+    // genre, release date and season codes, the release year, and cast lists stored CSR-style as interned actor IDs.
+    // Row i describes media_list.get(i), and that Media object is only a view reading these columns
+    static class media_store {
+        // Class mapping each distinct string to a dense code and back
+        static class dictionary {
+            private final Map<String, Integer> codes = new HashMap<>();
+            private final List<String> values = new ArrayList<>();
+
+            // Method to return the code of a value, assigning the next free code on first sight
+            int encode(String value) {
+                Integer code = codes.get(value);
+                if (code == null) {
+                    code = values.size();
+                    codes.put(value, code);
+                    values.add(value);
+                }
+                return code;
+            }
+
+            // Method to return the value behind a code
+            String decode(int code) {
+                return values.get(code);
+            }
+
+            // Method to return the number of distinct values
+            int size() {
+                return values.size();
+            }
+
+            // Method to forget every value
+            void clear() {
+                codes.clear();
+                values.clear();
+            }
+        }
+
+        // Dictionaries for the low-cardinality fields and for individual actor names
+        static final dictionary types = new dictionary();
+        static final dictionary platforms = new dictionary();
+        static final dictionary genres = new dictionary();
+        static final dictionary release_dates = new dictionary();
+        static final dictionary seasons = new dictionary();
+        static final dictionary actors = new dictionary();
+
+        // Number of rows stored
+        static int rows = 0;
+        // Encoded columns, grown geometrically; only the first rows entries are meaningful
+        static int[] type_code = new int[0];
+        static int[] platform_code = new int[0];
+        static int[] genre_code = new int[0];
+        static int[] release_code = new int[0];
+        static int[] season_code = new int[0];
+        static short[] year = new short[0];
+        // Cast of row i is actor_ids[cast_start[i] .. cast_end[i]); rows are laid out back to back (CSR) when built.
+        // A row rewritten later keeps its slice when the new cast fits, otherwise it takes a fresh slice at the end of
+        // actor_ids, and the array is compacted instead of grown once the abandoned slices make it full
+        static int[] cast_start = new int[0];
+        static int[] cast_end = new int[0];
+        static int[] actor_ids = new int[0];
+        static int actor_count = 0;
+        // Changes for platform shards to check their slices against: generation moves whenever rows are laid out
+        // afresh or bulk-appended, and each lowercase platform counts the rows of it that add, update and move_last
+        // edit in place
+        static long generation = 0;
+        private static final Map<String, Integer> platform_edits = new HashMap<>();
+
+        // Method to estimate the heap held by the columns and dictionaries
+        static long footprint() {
+            long bytes = 5 * Trie.array_bytes(4, type_code.length) + Trie.array_bytes(2, year.length)
+                    + 2 * Trie.array_bytes(4, cast_start.length) + Trie.array_bytes(4, actor_ids.length);
+            for (dictionary d : new dictionary[]{types, platforms, genres, release_dates, seasons, actors}) {
+                bytes += d.size() * 48L; // Map entry, boxed code and list slot per distinct value
+                for (int i = 0; i < d.size(); i++) bytes += 40 + 2L * d.decode(i).length(); // The string itself
+            }
+            return bytes;
+        }
+
+        // Method to rebuild every column from media_list, renumbering its items by position; items that are already
+        // views are read out first, so the list may mix views and detached records
+        static void build() {
+            int n = media_list.size();
+            String[][] fields = new String[n][];
+            for (int i = 0; i < n; i++) fields[i] = media_list.get(i).fields();
+            types.clear();
+            platforms.clear();
+            genres.clear();
+            release_dates.clear();
+            seasons.clear();
+            actors.clear();
+            rows = 0;
+            type_code = new int[n];
+            platform_code = new int[n];
+            genre_code = new int[n];
+            release_code = new int[n];
+            season_code = new int[n];
+            year = new short[n];
+            cast_start = new int[n];
+            cast_end = new int[n];
+            actor_ids = new int[n * 4];
+            actor_count = 0;
+            generation++;
+            platform_edits.clear();
+            for (int i = 0; i < n; i++) {
+                Media m = media_list.get(i);
+                set(i, fields[i]);
+                m.id = rows++;
+                m.detached = null;
+            }
+        }
+
+        // Method to append a parsed record as the next row and return the view over it (the caller adds it to
+        // media_list at the same position)
+        static Media append(String type, String name, String description, String genre, String releaseDate, String season, String cast, String platform, String url) {
+            if (rows == type_code.length) grow();
+            set(rows, new String[]{type, genre, releaseDate, Media.season_or_dash(season), cast, platform});
+            generation++;
+            return new Media(rows++, name, description, url);
+        }
+
+        // Method to append a detached media item as the next row; the item becomes a view over it
+        static void add(Media m) {
+            if (rows == type_code.length) grow();
+            set(rows, m.fields());
+            edited(rows);
+            m.id = rows++;
+            m.detached = null;
+        }
+
+        // Method to re-encode an existing row from a changed record's fields, in Media.detached order
+        static void update(int row, String[] fields) {
+            edited(row);
+            set(row, fields);
+            edited(row); // The platform may have changed too
+        }
+
+        // Method to return how many in-place edits rows of a platform (matched ignoring case) have had
+        static int edits(String platform) {
+            return platform_edits.getOrDefault(platform.toLowerCase(), 0);
+        }
+
+        // Helper method to count an in-place edit against the platform of a row
+        private static void edited(int row) {
+            platform_edits.merge(platforms.decode(platform_code[row]).toLowerCase(), 1, Integer::sum);
+        }
+
+        // Helper method to encode a record's fields, in Media.detached order, into a row
+        private static void set(int row, String[] fields) {
+            type_code[row] = types.encode(fields[Media.TYPE]);
+            genre_code[row] = genres.encode(fields[Media.GENRE]);
+            release_code[row] = release_dates.encode(fields[Media.RELEASE]);
+            year[row] = (short) release_year(fields[Media.RELEASE]);
+            season_code[row] = seasons.encode(fields[Media.SEASON]);
+            platform_code[row] = platforms.encode(fields[Media.PLATFORM]);
+            // Split the cast string once here; indexes read actor IDs instead of re-splitting it
+            String[] credits = fields[Media.CAST].split(",");
+            int[] cast = new int[credits.length];
+            int n = 0;
+            for (String actor : credits) {
+                String name = actor.trim();
+                if (!name.isEmpty()) cast[n++] = actors.encode(name);
+            }
+            if (n > cast_end[row] - cast_start[row]) {
+                cast_end[row] = cast_start[row]; // The old slice is too small; abandon it
+                if (actor_count + n > actor_ids.length) compact(n);
+                cast_start[row] = actor_count;
+                actor_count += n;
+            }
+            System.arraycopy(cast, 0, actor_ids, cast_start[row], n);
+            cast_end[row] = cast_start[row] + n;
+        }
+
+        // Method to return a row's cast as the comma-separated list of its actors
+        static String cast_of(int row) {
+            StringBuilder cast = new StringBuilder();
+            for (int c = cast_start[row]; c < cast_end[row]; c++) {
+                if (c > cast_start[row]) cast.append(", ");
+                cast.append(actors.decode(actor_ids[c]));
+            }
+            return cast.toString();
+        }
+
+        // Method to bring a cast string to the form cast_of returns: trimmed names joined by ", ", blanks dropped
+        static String canonical_cast(String cast) {
+            StringBuilder canonical = new StringBuilder(cast.length());
+            for (String actor : cast.split(",")) {
+                String name = actor.trim();
+                if (name.isEmpty()) continue;
+                if (canonical.length() > 0) canonical.append(", ");
+                canonical.append(name);
             }
-            return base;
+            return canonical.toString();
+        }
+
+        // Helper method to pack every row's cast slice back to back in row order, leaving room for at least
+        // extra more IDs; space abandoned by rewritten rows is reclaimed instead of growing the array forever
+        private static void compact(int extra) {
+            int live = 0;
+            for (int row = 0; row < rows; row++) live += cast_end[row] - cast_start[row];
+            int[] packed = new int[Math.max(16, (live + extra) * 2)];
+            int next = 0;
+            for (int row = 0; row < rows; row++) {
+                int length = cast_end[row] - cast_start[row];
+                System.arraycopy(actor_ids, cast_start[row], packed, next, length);
+                cast_start[row] = next;
+                cast_end[row] = next += length;
+            }
+            actor_ids = packed;
+            actor_count = next;
+        }
+
+        // Method to move the last row into the given row and drop the last row (the caller moves the media item and
+        // detaches the item that owned the given row)
+        static void move_last(int row) {
+            edited(row);
+            int last = rows - 1;
+            type_code[row] = type_code[last];
+            platform_code[row] = platform_code[last];
+            genre_code[row] = genre_code[last];
+            release_code[row] = release_code[last];
+            season_code[row] = season_code[last];
+            year[row] = year[last];
+            cast_start[row] = cast_start[last];
+            cast_end[row] = cast_end[last];
+            // The dropped row must not keep a slice the moved row now owns, or a later add would write into it
+            cast_start[last] = 0;
+            cast_end[last] = 0;
+            rows--;
+        }
+
+        // Helper method to double the capacity of the per-row columns
+        private static void grow() {
+            int capacity = Math.max(16, rows * 2);
+            type_code = Arrays.copyOf(type_code, capacity);
+            platform_code = Arrays.copyOf(platform_code, capacity);
+            genre_code = Arrays.copyOf(genre_code, capacity);
+            release_code = Arrays.copyOf(release_code, capacity);
+            season_code = Arrays.copyOf(season_code, capacity);
+            year = Arrays.copyOf(year, capacity);
+            cast_start = Arrays.copyOf(cast_start, capacity);
+            cast_end = Arrays.copyOf(cast_end, capacity);
         }
     }
 
-    // Trie class for efficient prefix-based searching and autocomplete functionality
+    // Radix (compressed) Trie class for efficient prefix-based searching and autocomplete functionality
     static class Trie {
-        // Nested class representing a node in the Trie
-        private class TrieNode {
-            // Map to store child nodes with characters as keys
-            Map<Character, TrieNode> child_node = new HashMap<>();
-            // List to store full names (used for cast suggestions)
-            List<String> names = new ArrayList<>();
-            // List to store media items (used for media name suggestions)
-            List<Media> media_item = new ArrayList<>();
+        // Shared empty arrays so leaf nodes do not allocate their own
+        private static final char[] NO_CHARS = new char[0];
+        private static final TrieNode[] NO_NODES = new TrieNode[0];
+
+        // Nested class representing a node in the radix Trie; each node owns the edge label leading into it
+        private static class TrieNode {
+            // Characters on the edge from the parent to this node
+            char[] label;
+            // First character of each child's label, sorted, for binary search
+            char[] child_first = NO_CHARS;
+            // Child nodes in the same order as child_first
+            TrieNode[] child_node = NO_NODES;
+            // Full names (used for cast suggestions), null until the first name is stored
+            String[] names;
+            // Best ranking score seen for each name, parallel to names
+            long[] name_score;
+            // Media items (used for media name suggestions), null until the first item is stored
+            Media[] media_item;
+            // Ranking score of each media item at insert time, parallel to media_item. Scores are not refreshed when
+            // later searches change word_frequency, so a running session ranks by the frequencies loaded at startup
+            long[] media_score;
+            // Best-ranked completions in this subtree, one list per type slot, null until the first insert; built from
+            // the insert-time scores above
+            ranked[][] top;
+
+            TrieNode(char[] label) {
+                this.label = label;
+            }
+
+            // Method to find the index of the child whose label starts with the given character
+            int index_of(char ch) {
+                return Arrays.binarySearch(child_first, ch);
+            }
+
+            // Method to detach the child at the given index
+            void remove_child(int idx) {
+                int n = child_node.length;
+                if (n == 1) {
+                    child_first = NO_CHARS;
+                    child_node = NO_NODES;
+                    return;
+                }
+                char[] first = new char[n - 1];
+                TrieNode[] nodes = new TrieNode[n - 1];
+                System.arraycopy(child_first, 0, first, 0, idx);
+                System.arraycopy(child_node, 0, nodes, 0, idx);
+                System.arraycopy(child_first, idx + 1, first, idx, n - idx - 1);
+                System.arraycopy(child_node, idx + 1, nodes, idx, n - idx - 1);
+                child_first = first;
+                child_node = nodes;
+            }
+
+            // Method to insert a child at its sorted position given the negative result of index_of
+            void add_child(int search_result, TrieNode child) {
+                int pos = -search_result - 1;
+                int n = child_node.length;
+                char[] first = new char[n + 1];
+                TrieNode[] nodes = new TrieNode[n + 1];
+                System.arraycopy(child_first, 0, first, 0, pos);
+                System.arraycopy(child_node, 0, nodes, 0, pos);
+                first[pos] = child.label[0];
+                nodes[pos] = child;
+                System.arraycopy(child_first, pos, first, pos + 1, n - pos);
+                System.arraycopy(child_node, pos, nodes, pos + 1, n - pos);
+                child_first = first;
+                child_node = nodes;
+            }
+        }
+        // Root node of the Trie (empty label)
+        private TrieNode root = new TrieNode(NO_CHARS);
+
+        // Maximum number of completions cached per node and type
+        static final int TOP_K = 10;
+        // Media types seen so far; a type's position is its slot in TrieNode.top (slot 0 is used for cast names)
+        private final List<String> type_slots = new ArrayList<>(List.of(""));
+
+        // Class holding a completion with its ranking score, shared by every node on its path
+        private static class ranked {
+            final String text;
+            final long score;
+
+            ranked(String text, long score) {
+                this.text = text;
+                this.score = score;
+            }
+
+            // Higher scores first, ties broken alphabetically
+            boolean before(ranked other) {
+                return score != other.score ? score > other.score : text.compareToIgnoreCase(other.text) < 0;
+            }
         }
-        // Root node of the Trie
-        private TrieNode root = new TrieNode();
 
         // Method to insert a media item into the Trie using its name
         void insert(String word, Media media) {
+            ranked entry = new ranked(media.name, rank_score(media.name, media.release_date()));
+            TrieNode current = node_for(word.toLowerCase().toCharArray(), entry, slot_of(media.type()));
+            // Add the media item to the final node's media list
+            current.media_item = append(current.media_item, media, Media[]::new);
+            current.media_score = current.media_score == null ? new long[1] : Arrays.copyOf(current.media_score, current.media_score.length + 1);
+            current.media_score[current.media_score.length - 1] = entry.score;
+        }
+
+        // Method to remove a media item (matched by identity) stored under its name; returns false if it is not present
+        boolean remove(Media media) {
+            List<TrieNode> path = path_to(media.name.toLowerCase().toCharArray());
+            TrieNode node = path == null ? null : path.get(path.size() - 1);
+            int at = -1;
+            for (int i = 0; node != null && node.media_item != null && i < node.media_item.length; i++) {
+                if (node.media_item[i] == media) at = i;
+            }
+            if (at < 0) return false;
+            if (node.media_item.length == 1) {
+                node.media_item = null;
+                node.media_score = null;
+            } else {
+                node.media_item = without(node.media_item, at);
+                long[] scores = new long[node.media_score.length - 1];
+                System.arraycopy(node.media_score, 0, scores, 0, at);
+                System.arraycopy(node.media_score, at + 1, scores, at, scores.length - at);
+                node.media_score = scores;
+            }
+            repair(path, slot_of(media.type()), media.name);
+            return true;
+        }
+
+        // Method to remove a cast name; returns false if it is not present
+        boolean remove_cast_name(String name) {
+            List<TrieNode> path = path_to(name.toLowerCase().toCharArray());
+            TrieNode node = path == null ? null : path.get(path.size() - 1);
+            int at = node == null || node.names == null ? -1 : Arrays.asList(node.names).indexOf(name);
+            if (at < 0) return false;
+            if (node.names.length == 1) {
+                node.names = null;
+                node.name_score = null;
+            } else {
+                node.names = without(node.names, at);
+                long[] scores = new long[node.name_score.length - 1];
+                System.arraycopy(node.name_score, 0, scores, 0, at);
+                System.arraycopy(node.name_score, at + 1, scores, at, scores.length - at);
+                node.name_score = scores;
+            }
+            repair(path, 0, name);
+            return true;
+        }
+
+        // Helper method to return the nodes from the root to the node whose path spells exactly the key, or null
+        private List<TrieNode> path_to(char[] key) {
+            List<TrieNode> path = new ArrayList<>();
             TrieNode current = root;
-            // Iterate through each character in the lowercase word
-            for (char ch : word.toLowerCase().toCharArray()) {
-                // Create a new node if the character doesn't exist
-                current = current.child_node.computeIfAbsent(ch, c -> new TrieNode());
+            path.add(current);
+            int i = 0;
+            while (i < key.length) {
+                int idx = current.index_of(key[i]);
+                if (idx < 0) return null;
+                TrieNode child = current.child_node[idx];
+                if (child.label.length > key.length - i) return null; // Key ends inside the edge
+                for (int j = 0; j < child.label.length; j++) {
+                    if (child.label[j] != key[i + j]) return null;
+                }
+                current = child;
+                path.add(current);
+                i += child.label.length;
             }
-            // Add the media item to the final node's media list
-            current.media_item.add(media);
+            return path;
+        }
+
+        // Helper method to restore the Trie after removing text at the end of path: nodes left without items are
+        // pruned (or merged into their only child) and the cached top lists of the slot are recomputed bottom-up.
+        // Once a node neither changed shape nor ranked the text, no ancestor ranks it either, so the walk stops
+        private void repair(List<TrieNode> path, int slot, String text) {
+            boolean reshaped = true;
+            for (int i = path.size() - 1; i >= 0; i--) {
+                TrieNode node = path.get(i);
+                if (!reshaped && !ranks(node, slot, text)) return;
+                reshaped = false;
+                if (i > 0 && node.media_item == null && node.names == null && node.child_node.length <= 1) {
+                    reshaped = true;
+                    TrieNode parent = path.get(i - 1);
+                    int idx = parent.index_of(node.label[0]);
+                    if (node.child_node.length == 0) {
+                        parent.remove_child(idx);
+                    } else {
+                        // Fold the pass-through node into its only child; the child already ranks the same subtree
+                        TrieNode child = node.child_node[0];
+                        char[] label = Arrays.copyOf(node.label, node.label.length + child.label.length);
+                        System.arraycopy(child.label, 0, label, node.label.length, child.label.length);
+                        child.label = label;
+                        parent.child_node[idx] = child;
+                    }
+                    continue;
+                }
+                rebuild_top(node, slot);
+            }
+        }
+
+        // Helper method to check whether a node's top list for a slot contains the text
+        private static boolean ranks(TrieNode node, int slot, String text) {
+            ranked[] list = node.top == null || node.top.length <= slot ? null : node.top[slot];
+            if (list != null) {
+                for (ranked r : list) if (r.text.equals(text)) return true;
+            }
+            return false;
+        }
+
+        // Method to return the stored score of a cast name, or -1 if it is not present
+        long cast_score(String name) {
+            List<TrieNode> path = path_to(name.toLowerCase().toCharArray());
+            TrieNode node = path == null ? null : path.get(path.size() - 1);
+            int at = node == null || node.names == null ? -1 : Arrays.asList(node.names).indexOf(name);
+            return at < 0 ? -1 : node.name_score[at];
+        }
+
+        // Helper method to recompute a node's top list for a slot from its own items and its children's lists;
+        // a completion always lives at one node, so the best of the children's top lists is the best of the subtree
+        private void rebuild_top(TrieNode node, int slot) {
+            Map<String, Long> best = new HashMap<>();
+            if (slot == 0 && node.names != null) {
+                for (int i = 0; i < node.names.length; i++) best.merge(node.names[i], node.name_score[i], Math::max);
+            }
+            if (slot > 0 && node.media_item != null) {
+                for (int i = 0; i < node.media_item.length; i++) {
+                    if (slot_of(node.media_item[i].type()) == slot) best.merge(node.media_item[i].name, node.media_score[i], Math::max);
+                }
+            }
+            for (TrieNode child : node.child_node) {
+                ranked[] list = child.top == null || child.top.length <= slot ? null : child.top[slot];
+                if (list != null) for (ranked r : list) best.merge(r.text, r.score, Math::max);
+            }
+            List<ranked> all = new ArrayList<>(best.size());
+            for (Map.Entry<String, Long> e : best.entrySet()) all.add(new ranked(e.getKey(), e.getValue()));
+            all.sort((a, b) -> a.before(b) ? -1 : b.before(a) ? 1 : 0);
+            if (node.top == null || node.top.length <= slot) {
+                if (all.isEmpty()) return;
+                node.top = node.top == null ? new ranked[slot + 1][] : Arrays.copyOf(node.top, slot + 1);
+            }
+            node.top[slot] = all.isEmpty() ? null : all.subList(0, Math.min(TOP_K, all.size())).toArray(new ranked[0]);
+        }
+
+        // Helper method to copy an array without the element at the given index
+        private static <T> T[] without(T[] values, int at) {
+            T[] shrunk = Arrays.copyOf(values, values.length - 1);
+            System.arraycopy(values, at + 1, shrunk, at, values.length - at - 1);
+            return shrunk;
+        }
+
+        // Method to insert a cast name into the Trie for suggestions
+        void insert_cast_name(String name) {
+            insert_cast_name(name, rank_score(name, null));
+        }
+
+        // Method to insert a cast name with a ranking score; re-inserting with a higher score promotes the name
+        void insert_cast_name(String name, long score) {
+            TrieNode current = node_for(name.toLowerCase().toCharArray(), new ranked(name, score), 0);
+            // Add the name to the node's list if not already present, otherwise keep its best score
+            int existing = current.names == null ? -1 : Arrays.asList(current.names).indexOf(name);
+            if (existing < 0) {
+                current.names = append(current.names, name, String[]::new);
+                current.name_score = current.name_score == null ? new long[1] : Arrays.copyOf(current.name_score, current.name_score.length + 1);
+                current.name_score[current.name_score.length - 1] = score;
+            } else {
+                current.name_score[existing] = Math.max(current.name_score[existing], score);
+            }
+        }
+
+        // Helper method to walk to (creating or splitting nodes as needed) the node for a key,
+        // offering the entry to the cached top list of every node on the path
+        private TrieNode node_for(char[] key, ranked entry, int slot) {
+            TrieNode current = root;
+            offer(current, entry, slot);
+            int i = 0;
+            while (i < key.length) {
+                int idx = current.index_of(key[i]);
+                if (idx < 0) {
+                    // No edge starts with this character: hang the whole remaining key off a new leaf
+                    TrieNode leaf = new TrieNode(Arrays.copyOfRange(key, i, key.length));
+                    current.add_child(idx, leaf);
+                    offer(leaf, entry, slot);
+                    return leaf;
+                }
+                TrieNode child = current.child_node[idx];
+                int common = 0;
+                while (common < child.label.length && i + common < key.length && child.label[common] == key[i + common]) {
+                    common++;
+                }
+                if (common < child.label.length) {
+                    // Key diverges inside the edge: split it into a shared prefix node and the old child
+                    TrieNode mid = new TrieNode(Arrays.copyOfRange(child.label, 0, common));
+                    child.label = Arrays.copyOfRange(child.label, common, child.label.length);
+                    mid.child_first = new char[]{child.label[0]};
+                    mid.child_node = new TrieNode[]{child};
+                    // The split node covers exactly the old child's subtree, so it starts with the same rankings
+                    mid.top = child.top == null ? null : child.top.clone();
+                    current.child_node[idx] = mid;
+                    child = mid;
+                }
+                current = child;
+                offer(current, entry, slot);
+                i += common;
+            }
+            return current;
+        }
+
+        // Helper method to merge an entry into a node's bounded top list (lists are copied, never mutated in place)
+        private static void offer(TrieNode node, ranked entry, int slot) {
+            if (node.top == null) node.top = new ranked[slot + 1][];
+            else if (node.top.length <= slot) node.top = Arrays.copyOf(node.top, slot + 1);
+            ranked[] list = node.top[slot];
+            List<ranked> merged = new ArrayList<>(TOP_K + 1);
+            if (list != null) {
+                for (ranked r : list) {
+                    if (r.text.equals(entry.text)) {
+                        if (!entry.before(r)) return; // Same completion already ranked at least as high
+                        continue; // Drop the weaker duplicate; the entry is inserted below
+                    }
+                    merged.add(r);
+                }
+            }
+            int pos = merged.size();
+            while (pos > 0 && entry.before(merged.get(pos - 1))) pos--;
+            if (pos >= TOP_K) return; // Not good enough for this node
+            merged.add(pos, entry);
+            if (merged.size() > TOP_K) merged.remove(TOP_K);
+            node.top[slot] = merged.toArray(new ranked[0]);
+        }
+
+        // Helper method to map a media type to its slot in the cached top lists
+        private int slot_of(String type) {
+            int slot = type_slots.indexOf(type);
+            if (slot < 0) {
+                type_slots.add(type);
+                slot = type_slots.size() - 1;
+            }
+            return slot;
+        }
+
+        // Method to return the best k completions for a prefix; type is a media type, or null for cast names
+        // Served from the cached per-node lists when k <= TOP_K, so cost does not depend on subtree size
+        List<String> suggest(String prefix, String type, int k) {
+            long started = metrics.start_sampled();
+            try {
+                return completions(prefix, type, k);
+            } finally {
+                metrics.time("trie_suggest", started);
+            }
+        }
+
+        // Helper method to compute the completions for suggest
+        private List<String> completions(String prefix, String type, int k) {
+            TrieNode current = find(prefix);
+            int slot = type == null ? 0 : type_slots.indexOf(type);
+            if (current == null || slot < 0 || k <= 0) return Collections.emptyList();
+            if (k > TOP_K) {
+                // Beyond the cache depth: collect the whole subtree, keeping each completion's best score, and rank it
+                Map<String, Long> best = new HashMap<>();
+                collect(current, type, best);
+                List<ranked> all = new ArrayList<>();
+                for (Map.Entry<String, Long> e : best.entrySet()) all.add(new ranked(e.getKey(), e.getValue()));
+                all.sort((a, b) -> a.before(b) ? -1 : b.before(a) ? 1 : 0);
+                List<String> result = new ArrayList<>();
+                for (int i = 0; i < Math.min(k, all.size()); i++) result.add(all.get(i).text);
+                return result;
+            }
+            ranked[] list = current.top == null || current.top.length <= slot ? null : current.top[slot];
+            if (list == null) return Collections.emptyList();
+            List<String> result = new ArrayList<>(Math.min(k, list.length));
+            for (int i = 0; i < Math.min(k, list.length); i++) result.add(list[i].text);
+            return result;
+        }
+
+        // Method to return up to k completions (at most TOP_K) whose prefix is within max_dist edits of the query;
+        // walks the Trie with one Levenshtein row per character and prunes a branch once every cell exceeds max_dist
+        List<String> suggest_fuzzy(String prefix, String type, int k, int max_dist) {
+            char[] query = prefix.toLowerCase().toCharArray();
+            int slot = type == null ? 0 : type_slots.indexOf(type);
+            // A bound as long as the query would match the empty prefix, i.e. the whole catalog
+            max_dist = Math.min(max_dist, query.length - 1);
+            if (slot < 0 || k <= 0 || max_dist < 0) return Collections.emptyList();
+            int[] row = new int[query.length + 1];
+            for (int j = 0; j <= query.length; j++) row[j] = j;
+            // Best distance and score seen for each completion
+            Map<String, long[]> best = new HashMap<>();
+            fuzzy_walk(root, row, Integer.MAX_VALUE, query, slot, max_dist, best);
+            List<Map.Entry<String, long[]>> matches = new ArrayList<>(best.entrySet());
+            // Closest matches first, then by ranking score, then alphabetically
+            matches.sort((a, b) -> a.getValue()[0] != b.getValue()[0] ? Long.compare(a.getValue()[0], b.getValue()[0])
+                    : a.getValue()[1] != b.getValue()[1] ? Long.compare(b.getValue()[1], a.getValue()[1])
+                    : a.getKey().compareToIgnoreCase(b.getKey()));
+            List<String> result = new ArrayList<>();
+            for (int i = 0; i < Math.min(Math.min(k, TOP_K), matches.size()); i++) result.add(matches.get(i).getKey());
+            return result;
+        }
+
+        // Helper method for suggest_fuzzy: consume a node's label, then recurse into its children; path_best is the
+        // smallest distance at which this path already matched the whole query
+        private void fuzzy_walk(TrieNode node, int[] row, int path_best, char[] query, int slot, int max_dist, Map<String, long[]> best) {
+            int n = query.length;
+            for (int i = 0; i < node.label.length; i++) {
+                int[] next = new int[n + 1];
+                next[0] = row[0] + 1;
+                int row_min = next[0];
+                for (int j = 1; j <= n; j++) {
+                    int substitute = row[j - 1] + (query[j - 1] == node.label[i] ? 0 : 1);
+                    next[j] = Math.min(Math.min(row[j] + 1, next[j - 1] + 1), substitute);
+                    row_min = Math.min(row_min, next[j]);
+                }
+                if (row_min > max_dist) return; // No extension of this path can come back within the bound
+                row = next;
+                // The path matches the whole query part-way along the edge, so every completion below this node qualifies
+                if (row[n] < path_best) path_best = offer_fuzzy(node, row[n], slot, best);
+            }
+            for (TrieNode child : node.child_node) fuzzy_walk(child, row, path_best, query, slot, max_dist, best);
+        }
+
+        // Helper method for fuzzy_walk: record a node's cached best completions at the given distance and return it
+        private int offer_fuzzy(TrieNode node, int dist, int slot, Map<String, long[]> best) {
+            if (node.top == null || node.top.length <= slot || node.top[slot] == null) return dist;
+            for (ranked r : node.top[slot]) {
+                long[] seen = best.get(r.text);
+                if (seen == null || dist < seen[0]) best.put(r.text, new long[]{dist, r.score});
+            }
+            return dist;
+        }
+
+        // Helper method to gather the best score of every completion of the given type below a node
+        private void collect(TrieNode node, String type, Map<String, Long> best) {
+            if (type == null && node.names != null) {
+                for (int i = 0; i < node.names.length; i++) best.merge(node.names[i], node.name_score[i], Math::max);
+            }
+            if (type != null && node.media_item != null) {
+                for (int i = 0; i < node.media_item.length; i++) {
+                    Media m = node.media_item[i];
+                    if (m.type().equals(type)) best.merge(m.name, node.media_score[i], Math::max);
+                }
+            }
+            for (TrieNode child : node.child_node) collect(child, type, best);
+        }
+
+        // Helper method to append a value to an exactly sized array
+        private static <T> T[] append(T[] values, T value, IntFunction<T[]> factory) {
+            if (values == null) {
+                T[] single = factory.apply(1);
+                single[0] = value;
+                return single;
+            }
+            T[] grown = Arrays.copyOf(values, values.length + 1);
+            grown[values.length] = value;
+            return grown;
+        }
+
+        // Helper method to find the node whose path covers the whole prefix, or null if none does
+        private TrieNode find(String prefix) {
+            char[] key = prefix.toLowerCase().toCharArray();
+            TrieNode current = root;
+            int i = 0;
+            while (i < key.length) {
+                int idx = current.index_of(key[i]);
+                if (idx < 0) return null;
+                TrieNode child = current.child_node[idx];
+                int n = Math.min(child.label.length, key.length - i);
+                for (int j = 0; j < n; j++) {
+                    if (child.label[j] != key[i + j]) return null;
+                }
+                current = child;
+                i += n;
+            }
+            return current;
+        }
+
+        // Method to retrieve suggestions based on a prefix and media type
+        List<String> get_suggestions(String prefix, String type) {
+            TrieNode current = find(prefix);
+            if (current == null) return Collections.emptyList();
+            // List to store suggestions
+            List<String> suggestions = new ArrayList<>();
+            // Fetch all media names starting from this node
+            fetch_all_media_name(current, suggestions, type);
+            return suggestions;
+        }
+
+        // Helper method to recursively fetch all media names from a Trie node
+        private void fetch_all_media_name(TrieNode node, List<String> suggestions, String type) {
+            // Add media names of the specified type to suggestions
+            if (node.media_item != null) {
+                for (Media media : node.media_item) {
+                    if (media.type().equals(type)) {
+                        suggestions.add(media.name);
+                    }
+                }
+            }
+            // Recursively explore all child nodes in sorted order
+            for (TrieNode child : node.child_node) {
+                fetch_all_media_name(child, suggestions, type);
+            }
+        }
+
+        // Method to fetch cast name suggestions based on a prefix
+        List<String> fetch_cast_suggestions(String prefix) {
+            TrieNode current = find(prefix);
+            if (current == null) return Collections.emptyList();
+            List<String> suggestions = new ArrayList<>();
+            // Fetch all cast names starting from this node
+            fetch_all_cast_name(current, suggestions);
+            return suggestions;
+        }
+
+        // Helper method to recursively fetch all cast names from a Trie node
+        private void fetch_all_cast_name(TrieNode node, List<String> suggestions) {
+            if (node.names != null) {
+                suggestions.addAll(Arrays.asList(node.names)); // Add all names stored at this node
+            }
+            // Recursively explore all child nodes in sorted order
+            for (TrieNode child : node.child_node) {
+                fetch_all_cast_name(child, suggestions);
+            }
+        }
+
+        // Method to recompute every stored score from the current search frequencies, keeping the release year part
+        // (scores are popularity * 10000 + year), then rebuild the cached top lists bottom-up
+        void rerank() {
+            Map<String, Long> popularity = new HashMap<>();
+            rerank(root, popularity);
+        }
+
+        // Helper method to rescore a subtree's items and rebuild its top lists once its children are done
+        private void rerank(TrieNode node, Map<String, Long> popularity) {
+            for (TrieNode child : node.child_node) rerank(child, popularity);
+            if (node.names != null) {
+                for (int i = 0; i < node.names.length; i++) {
+                    node.name_score[i] = popularity.computeIfAbsent(node.names[i], Main::popularity) * 10000 + node.name_score[i] % 10000;
+                }
+            }
+            if (node.media_item != null) {
+                for (int i = 0; i < node.media_item.length; i++) {
+                    node.media_score[i] = popularity.computeIfAbsent(node.media_item[i].name, Main::popularity) * 10000 + node.media_score[i] % 10000;
+                }
+            }
+            for (int slot = 0; slot < type_slots.size(); slot++) rebuild_top(node, slot);
+        }
+
+        // Method to write the Trie structure, including cached rankings, to a snapshot stream
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(type_slots.size());
+            for (String type : type_slots) catalog_snapshot.write_string(out, type);
+            // Ranked entries are shared along insert paths, so write each once and refer to it by index
+            Map<ranked, Integer> ids = new IdentityHashMap<>();
+            List<ranked> table = new ArrayList<>();
+            collect_ranked(root, ids, table);
+            out.writeInt(table.size());
+            for (ranked r : table) {
+                catalog_snapshot.write_string(out, r.text);
+                out.writeLong(r.score);
+            }
+            write_node(root, out, ids);
+        }
+
+        private void collect_ranked(TrieNode node, Map<ranked, Integer> ids, List<ranked> table) {
+            if (node.top != null) {
+                for (ranked[] list : node.top) {
+                    if (list == null) continue;
+                    for (ranked r : list) {
+                        if (ids.putIfAbsent(r, table.size()) == null) table.add(r);
+                    }
+                }
+            }
+            for (TrieNode child : node.child_node) collect_ranked(child, ids, table);
+        }
+
+        private void write_node(TrieNode node, DataOutputStream out, Map<ranked, Integer> ids) throws IOException {
+            out.writeInt(node.label.length);
+            for (char ch : node.label) out.writeChar(ch);
+            out.writeInt(node.names == null ? -1 : node.names.length);
+            if (node.names != null) {
+                for (int i = 0; i < node.names.length; i++) {
+                    catalog_snapshot.write_string(out, node.names[i]);
+                    out.writeLong(node.name_score[i]);
+                }
+            }
+            out.writeInt(node.media_item == null ? -1 : node.media_item.length);
+            if (node.media_item != null) {
+                for (int i = 0; i < node.media_item.length; i++) {
+                    out.writeInt(node.media_item[i].id);
+                    out.writeLong(node.media_score[i]);
+                }
+            }
+            out.writeInt(node.top == null ? -1 : node.top.length);
+            if (node.top != null) {
+                for (ranked[] list : node.top) {
+                    out.writeInt(list == null ? -1 : list.length);
+                    if (list != null) {
+                        for (ranked r : list) out.writeInt(ids.get(r));
+                    }
+                }
+            }
+            out.writeInt(node.child_node.length);
+            for (TrieNode child : node.child_node) write_node(child, out, ids);
+        }
+
+        // Method to rebuild a Trie from a snapshot buffer; media IDs are resolved against the given list
+        static Trie read(ByteBuffer in, List<Media> media) {
+            Trie trie = new Trie();
+            trie.type_slots.clear();
+            int types = in.getInt();
+            for (int i = 0; i < types; i++) trie.type_slots.add(catalog_snapshot.read_string(in));
+            ranked[] table = new ranked[in.getInt()];
+            for (int i = 0; i < table.length; i++) table[i] = new ranked(catalog_snapshot.read_string(in), in.getLong());
+            trie.root = read_node(in, media, table);
+            return trie;
+        }
+
+        private static TrieNode read_node(ByteBuffer in, List<Media> media, ranked[] table) {
+            char[] label = new char[in.getInt()];
+            for (int i = 0; i < label.length; i++) label[i] = in.getChar();
+            TrieNode node = new TrieNode(label.length == 0 ? NO_CHARS : label);
+            int names = in.getInt();
+            if (names >= 0) {
+                node.names = new String[names];
+                node.name_score = new long[names];
+                for (int i = 0; i < names; i++) {
+                    node.names[i] = catalog_snapshot.read_string(in);
+                    node.name_score[i] = in.getLong();
+                }
+            }
+            int items = in.getInt();
+            if (items >= 0) {
+                node.media_item = new Media[items];
+                node.media_score = new long[items];
+                for (int i = 0; i < items; i++) {
+                    node.media_item[i] = media.get(in.getInt());
+                    node.media_score[i] = in.getLong();
+                }
+            }
+            int slots = in.getInt();
+            if (slots >= 0) {
+                node.top = new ranked[slots][];
+                for (int s = 0; s < slots; s++) {
+                    int size = in.getInt();
+                    if (size < 0) continue;
+                    node.top[s] = new ranked[size];
+                    for (int i = 0; i < size; i++) node.top[s][i] = table[in.getInt()];
+                }
+            }
+            int children = in.getInt();
+            if (children > 0) {
+                node.child_node = new TrieNode[children];
+                node.child_first = new char[children];
+                for (int i = 0; i < children; i++) {
+                    node.child_node[i] = read_node(in, media, table);
+                    node.child_first[i] = node.child_node[i].label[0];
+                }
+            }
+            return node;
+        }
+
+        // Method to count the nodes in the Trie
+        int node_count() {
+            return node_count(root);
+        }
+
+        private int node_count(TrieNode node) {
+            int count = 1;
+            for (TrieNode child : node.child_node) count += node_count(child);
+            return count;
+        }
+
+        // Method to estimate the heap retained by the Trie structure (excluding the shared Media and name strings)
+        long footprint() {
+            return footprint(root);
+        }
+
+        private long footprint(TrieNode node) {
+            // Node object: 12-byte header plus eight compressed references
+            long bytes = align(12 + 8 * 4);
+            if (node.label.length > 0) bytes += array_bytes(2, node.label.length);
+            if (node.child_node.length > 0) {
+                bytes += array_bytes(2, node.child_first.length) + array_bytes(4, node.child_node.length);
+            }
+            if (node.names != null) bytes += array_bytes(4, node.names.length) + array_bytes(8, node.name_score.length);
+            if (node.media_item != null) bytes += array_bytes(4, node.media_item.length) + array_bytes(8, node.media_score.length);
+            if (node.top != null) {
+                // Ranked entries themselves are shared along the insert path and counted by the callers' strings
+                bytes += array_bytes(4, node.top.length);
+                for (ranked[] list : node.top) if (list != null) bytes += array_bytes(4, list.length);
+            }
+            for (TrieNode child : node.child_node) bytes += footprint(child);
+            return bytes;
+        }
+
+        // Helper method to size an array assuming a 64-bit JVM with compressed references
+        static long array_bytes(int element_size, long length) {
+            return align(16 + element_size * length);
+        }
+
+        // Helper method to round an object size up to the 8-byte allocation granularity
+        static long align(long bytes) {
+            return (bytes + 7) & ~7L;
+        }
+    }
+
+    // Original HashMap-per-character Trie, kept as the baseline for the footprint report
+    static class legacy_trie {
+        // Nested class representing a node in the Trie
+        private class TrieNode {
+            // Map to store child nodes with characters as keys
+            Map<Character, TrieNode> child_node = new HashMap<>();
+            // List to store full names (used for cast suggestions)
+            List<String> names = new ArrayList<>();
+            // List to store media items (used for media name suggestions)
+            List<Media> media_item = new ArrayList<>();
+        }
+        // Root node of the Trie
+        private TrieNode root = new TrieNode();
+
+        // Method to insert a media item into the Trie using its name
+        void insert(String word, Media media) {
+            TrieNode current = root;
+            for (char ch : word.toLowerCase().toCharArray()) {
+                current = current.child_node.computeIfAbsent(ch, c -> new TrieNode());
+            }
+            current.media_item.add(media);
+        }
+
+        // Method to insert a cast name into the Trie for suggestions
+        void insert_cast_name(String name) {
+            TrieNode current = root;
+            for (char ch : name.toLowerCase().toCharArray()) {
+                current = current.child_node.computeIfAbsent(ch, c -> new TrieNode());
+            }
+            if (!current.names.contains(name)) {
+                current.names.add(name);
+            }
+        }
+
+        // Method to count the nodes in the Trie
+        int node_count() {
+            return node_count(root);
+        }
+
+        private int node_count(TrieNode node) {
+            int count = 1;
+            for (TrieNode child : node.child_node.values()) count += node_count(child);
+            return count;
+        }
+
+        // Method to estimate the heap retained by the Trie structure (excluding the shared Media and name strings)
+        long footprint() {
+            return footprint(root);
+        }
+
+        private long footprint(TrieNode node) {
+            // Node object: header, three fields and the implicit outer-instance reference
+            long bytes = Trie.align(12 + 4 * 4);
+            // HashMap object, plus its table and one HashMap.Node per entry once anything is stored
+            bytes += 48;
+            int children = node.child_node.size();
+            if (children > 0) {
+                int capacity = 16;
+                while (children > capacity * 3 / 4) capacity *= 2;
+                bytes += Trie.array_bytes(4, capacity) + 32L * children;
+                for (Character ch : node.child_node.keySet()) {
+                    if (ch > 127) bytes += 16; // Characters above 127 are not served from the box cache
+                }
+            }
+            // Two ArrayLists; their backing arrays are shared empties until the first add
+            bytes += 2 * 24 + list_bytes(node.names.size()) + list_bytes(node.media_item.size());
+            for (TrieNode child : node.child_node.values()) bytes += footprint(child);
+            return bytes;
+        }
+
+        // Helper method to size an ArrayList backing array grown by the default 1.5x policy
+        private static long list_bytes(int size) {
+            if (size == 0) return 0;
+            int capacity = 10;
+            while (capacity < size) capacity += capacity >> 1;
+            return Trie.array_bytes(4, capacity);
+        }
+    }
+
+    // Class to manage an index of cast members and their associated media
+    static class cast_index {
+        // Map to store actors and the list of media they appear in
+        private static Map<String, List<Media>> cast_index = new HashMap<>();
+
+        // Threads used to build the index (-Dbingebuddy.index_threads, default: all cores)
+        static final int INDEX_THREADS = Math.max(1, Integer.getInteger("bingebuddy.index_threads", Runtime.getRuntime().availableProcessors()));
+        // Rows handled by one fork-join leaf task
+        static final int BUILD_CHUNK_ROWS = 4096;
+        // Statistics of the last full build, reported at startup
+        static int distinct_actors, credits, build_threads;
+        static double build_ms;
+
+        // Method to build the cast index and populate the cast Trie from the media_store cast columns
+        static void build() {
+            build(INDEX_THREADS);
+        }
+
+        // Method to build the cast index on the given number of threads: rows are split across a fork-join pool,
+        // each leaf groups its titles by normalized actor and the partial maps are merged in row order.
+        // Reads the media_store columns, so media_store.build() must have run over the current media_list
+        static void build(int threads) {
+            if (media_store.rows != media_list.size()) {
+                throw new IllegalStateException("cast_index.build needs media_store.build() first: " + media_store.rows
+                        + " encoded rows for " + media_list.size() + " media items");
+            }
+            long start = System.nanoTime();
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                int actors = media_store.actors.size();
+                // Normalize and score each distinct actor once, instead of once per credit
+                String[] actor_norm = new String[actors];
+                long[] actor_popularity = new long[actors];
+                pool.submit(() -> IntStream.range(0, actors).parallel().forEach(a -> {
+                    actor_norm[a] = normalize(media_store.actors.decode(a));
+                    actor_popularity[a] = popularity(media_store.actors.decode(a));
+                })).join();
+                // Latest release year of each actor's titles; leaves raise it concurrently
+                AtomicIntegerArray latest = new AtomicIntegerArray(actors);
+                for (int a = 0; a < actors; a++) latest.set(a, -1);
+                cast_index = pool.invoke(new build_task(0, media_store.rows, actor_norm, latest));
+                // The cast Trie is not thread-safe, so names go in serially: once per actor at its best score,
+                // which leaves the same Trie as one insert per credit (same score as rank_score, from the year column)
+                int credited = 0;
+                for (int a = 0; a < actors; a++) {
+                    if (latest.get(a) < 0) continue;
+                    cast_trie.insert_cast_name(media_store.actors.decode(a), actor_popularity[a] * 10000 + latest.get(a));
+                    credited++;
+                }
+                distinct_actors = credited;
+                credits = 0;
+                for (int row = 0; row < media_store.rows; row++) credits += media_store.cast_end[row] - media_store.cast_start[row];
+                build_threads = threads;
+                costar_graph.build(actor_norm); // Shares the normalized names computed above
+            } finally {
+                pool.shutdown();
+            }
+            build_ms = (System.nanoTime() - start) / 1e6;
+            metrics.time("cast_index_build", start);
+        }
+
+        // Fork-join task grouping the titles of a row range by normalized actor name
+        private static class build_task extends RecursiveTask<Map<String, List<Media>>> {
+            private static final long serialVersionUID = 1L;
+
+            private final int from, to;
+            private final String[] actor_norm;
+            private final AtomicIntegerArray latest;
+
+            build_task(int from, int to, String[] actor_norm, AtomicIntegerArray latest) {
+                this.from = from;
+                this.to = to;
+                this.actor_norm = actor_norm;
+                this.latest = latest;
+            }
+
+            @Override
+            protected Map<String, List<Media>> compute() {
+                if (to - from > BUILD_CHUNK_ROWS) {
+                    int mid = (from + to) >>> 1;
+                    build_task left = new build_task(from, mid, actor_norm, latest);
+                    left.fork();
+                    Map<String, List<Media>> right = new build_task(mid, to, actor_norm, latest).compute();
+                    Map<String, List<Media>> merged = left.join();
+                    // Left rows come first, so appending keeps every list in ID order
+                    right.forEach((actor, titles) -> merged.merge(actor, titles, (a, b) -> {
+                        a.addAll(b);
+                        return a;
+                    }));
+                    return merged;
+                }
+                Map<String, List<Media>> titles = new HashMap<>();
+                for (int row = from; row < to; row++) {
+                    Media media = media_list.get(row);
+                    for (int c = media_store.cast_start[row]; c < media_store.cast_end[row]; c++) {
+                        int actor = media_store.actor_ids[c];
+                        if (actor_norm[actor].isEmpty()) continue; // Skip names that normalize to nothing
+                        titles.computeIfAbsent(actor_norm[actor], k -> new ArrayList<>()).add(media);
+                        int year = media_store.year[row];
+                        latest.accumulateAndGet(actor, year, Math::max);
+                    }
+                }
+                return titles;
+            }
+        }
+
+        // Method to add one media item (already encoded in media_store) to the cast index and cast Trie
+        static void add(Media media) {
+            for (int c = media_store.cast_start[media.id]; c < media_store.cast_end[media.id]; c++) {
+                String actor_original = media_store.actors.decode(media_store.actor_ids[c]);
+                String actor_norm = normalize(actor_original);
+                if (actor_norm.isEmpty()) continue; // Skip names that normalize to nothing
+                cast_index.computeIfAbsent(actor_norm, k -> new ArrayList<>()).add(media);
+                cast_trie.insert_cast_name(actor_original, popularity(actor_original) * 10000 + media_store.year[media.id]);
+            }
+        }
+
+        // Method to remove one media item from the cast index; actors left without any title leave the cast Trie,
+        // the others are re-ranked by their most recent remaining title
+        static void remove(Media media) {
+            for (int c = media_store.cast_start[media.id]; c < media_store.cast_end[media.id]; c++) {
+                int actor = media_store.actor_ids[c];
+                String actor_original = media_store.actors.decode(actor);
+                List<Media> titles = cast_index.get(normalize(actor_original));
+                if (titles != null) {
+                    titles.removeIf(m -> m == media);
+                    if (titles.isEmpty()) cast_index.remove(normalize(actor_original));
+                }
+                int latest = titles == null ? -1 : latest_credit(titles, actor);
+                if (latest < 0) {
+                    cast_trie.remove_cast_name(actor_original);
+                } else {
+                    long score = popularity(actor_original) * 10000 + latest;
+                    if (cast_trie.cast_score(actor_original) != score) {
+                        cast_trie.remove_cast_name(actor_original);
+                        cast_trie.insert_cast_name(actor_original, score);
+                    }
+                }
+            }
+        }
+
+        // Helper method to return the latest release year among the titles crediting the given actor ID, or -1
+        private static int latest_credit(List<Media> titles, int actor) {
+            int latest = -1;
+            for (Media m : titles) {
+                for (int c = media_store.cast_start[m.id]; c < media_store.cast_end[m.id]; c++) {
+                    if (media_store.actor_ids[c] == actor) latest = Math.max(latest, media_store.year[m.id]);
+                }
+            }
+            return latest;
+        }
+
+        // Method to normalize an actor name for consistent indexing in one pass: trim, drop one leading and one
+        // trailing quote, collapse runs of space separators into one space, remove non-ASCII characters and
+        // lowercase; returns the input itself when nothing changes
+        static String normalize(String actor) {
+            int start = 0, end = actor.length();
+            while (start < end && actor.charAt(start) <= ' ') start++;
+            while (end > start && actor.charAt(end - 1) <= ' ') end--;
+            if (start < end && actor.charAt(start) == '"') start++;
+            if (end > start && actor.charAt(end - 1) == '"') end--;
+            char[] out = null; // Allocated on the first character that differs from the input
+            int n = 0;
+            boolean in_space = false;
+            for (int i = start; i < end; i++) {
+                char ch = actor.charAt(i);
+                char next = ch;
+                boolean keep = true;
+                if (Character.getType(ch) == Character.SPACE_SEPARATOR) {
+                    keep = !in_space; // A run of separators is written as a single space
+                    next = ' ';
+                    in_space = true;
+                } else {
+                    in_space = false;
+                    if (ch > 127) keep = false;
+                    else if (ch >= 'A' && ch <= 'Z') next = (char) (ch + ('a' - 'A'));
+                }
+                if (out == null && (!keep || next != ch)) {
+                    out = new char[end - start];
+                    actor.getChars(start, i, out, 0);
+                    n = i - start;
+                }
+                if (out != null && keep) out[n++] = next;
+            }
+            if (out == null) return start == 0 && end == actor.length() ? actor : actor.substring(start, end);
+            return new String(out, 0, n);
+        }
+
+        // Method to estimate the heap held by the index: map entries, name keys and title lists
+        static long footprint() {
+            long bytes = Trie.array_bytes(4, cast_index.size() * 2L); // Hash table, at the default load factor
+            for (Map.Entry<String, List<Media>> entry : cast_index.entrySet()) {
+                bytes += 32 + Trie.array_bytes(2, entry.getKey().length()) + 24 + 24 + Trie.array_bytes(4, entry.getValue().size());
+            }
+            return bytes;
+        }
+
+        // Method to search for media items by actor name
+        static List<Media> search(String actor) {
+            // Normalize the search query to match indexed format
+            long started = metrics.start();
+            String key = normalize(actor);
+            // Return a copy of the media list for the actor, or an empty list if not found; repeated lookups are cached
+            List<Media> results = query_cache.get("cast", "", key,
+                    () -> Collections.unmodifiableList(new ArrayList<>(cast_index.getOrDefault(key, Collections.emptyList()))),
+                    list -> query_cache.list_bytes(list, 0));
+            metrics.time("cast_search", started);
+            metrics.record("cast_search_results", "results", results.size());
+            return results;
+        }
+
+        // Method to write the cast index to a snapshot stream as actor names and media IDs
+        static void write(DataOutputStream out) throws IOException {
+            out.writeInt(cast_index.size());
+            for (Map.Entry<String, List<Media>> entry : cast_index.entrySet()) {
+                catalog_snapshot.write_string(out, entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (Media m : entry.getValue()) out.writeInt(m.id);
+            }
+        }
+
+        // Method to restore the cast index from a snapshot buffer
+        static void read(ByteBuffer in, List<Media> media) {
+            cast_index.clear();
+            int actors = in.getInt();
+            for (int a = 0; a < actors; a++) {
+                String actor = catalog_snapshot.read_string(in);
+                int size = in.getInt();
+                List<Media> titles = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) titles.add(media.get(in.getInt()));
+                cast_index.put(actor, titles);
+            }
+        }
+    }
+
+    // Class to hold the actor-title co-star graph in compressed sparse row (CSR) arrays of int IDs, answering
+    // degrees-of-separation and top co-star queries with breadth-first searches over it
+    static class costar_graph {
+        // Random actor pairs traced by --costar-sample when no count is given
+        static final int SAMPLE_PAIRS = 10000;
+        // Co-stars listed by the menu when no count is given
+        static final int TOP_COSTARS = 10;
+        // The current graph; replaced as a whole when the catalog changes
+        private static volatile graph current;
+        // Per-thread search state, so concurrent queries and sample workers never share marks
+        private static final ThreadLocal<search[]> SEARCH = new ThreadLocal<>();
+
+        // Class to hold one built graph: actor IDs are dense, titles are media_store rows at build time
+        private static class graph {
+            final String[] names; // First spelling seen of each actor, for display
+            final Map<String, Integer> ids; // Normalized actor name to actor ID
+            final Media[] titles;
+            // Actors of title t are title_actors[title_start[t] .. title_start[t + 1]), without duplicates
+            final int[] title_start, title_actors;
+            // Titles of actor a are actor_titles[actor_start[a] .. actor_start[a + 1]), ascending
+            final int[] actor_start, actor_titles;
+            final long version;
+
+            graph(String[] names, Map<String, Integer> ids, Media[] titles, int[] title_start, int[] title_actors,
+                  int[] actor_start, int[] actor_titles, long version) {
+                this.names = names;
+                this.ids = ids;
+                this.titles = titles;
+                this.title_start = title_start;
+                this.title_actors = title_actors;
+                this.actor_start = actor_start;
+                this.actor_titles = actor_titles;
+                this.version = version;
+            }
+        }
+
+        // Class to hold one direction of a bidirectional search; marks are valid only when equal to the current stamp
+        private static class search {
+            int stamp;
+            int[] seen, depth, parent, via; // Per actor: mark, hops from the start, previous actor and the shared title
+            int[] title_seen; // Per title: mark once its actors have been visited
+            int[] frontier, next;
+            int size, level;
+
+            search(int actors, int titles) {
+                seen = new int[actors];
+                depth = new int[actors];
+                parent = new int[actors];
+                via = new int[actors];
+                title_seen = new int[titles];
+                frontier = new int[actors];
+                next = new int[actors];
+            }
+
+            // Method to start a new search from one actor
+            void start(int actor) {
+                if (++stamp == 0) { // Marks wrapped around: clear them once rather than risk stale matches
+                    Arrays.fill(seen, 0);
+                    Arrays.fill(title_seen, 0);
+                    stamp = 1;
+                }
+                seen[actor] = stamp;
+                depth[actor] = 0;
+                parent[actor] = -1;
+                frontier[0] = actor;
+                size = 1;
+                level = 0;
+            }
+        }
+
+        // Class to describe a connection between two actors: actors[i] and actors[i + 1] both appear in titles[i]
+        static class connection {
+            final List<String> actors;
+            final List<Media> titles;
+
+            connection(List<String> actors, List<Media> titles) {
+                this.actors = actors;
+                this.titles = titles;
+            }
+
+            // Method to return the number of hops (shared titles) along the connection
+            int hops() {
+                return titles.size();
+            }
+        }
+
+        // Method to build the graph from the media_store cast columns; actor_norm holds the normalized name of each
+        // actor dictionary code (computed here when null), so the cast index build can share its work
+        static synchronized void build(String[] actor_norm) {
+            long started = metrics.start();
+            long version = query_cache.version();
+            int codes = media_store.actors.size();
+            if (actor_norm == null) {
+                actor_norm = new String[codes];
+                for (int c = 0; c < codes; c++) actor_norm[c] = cast_index.normalize(media_store.actors.decode(c));
+            }
+            // Actor IDs are handed out in credit order to the codes still credited (hot reloads leave unused codes in the
+            // dictionary); spellings that normalize alike share one ID and names that normalize to nothing are left out
+            Map<String, Integer> ids = new HashMap<>();
+            List<String> names = new ArrayList<>();
+            int[] code_actor = new int[codes];
+            Arrays.fill(code_actor, -2); // Not seen yet
+            int rows = media_store.rows;
+            Media[] titles = media_list.subList(0, rows).toArray(new Media[0]);
+            int[] title_start = new int[rows + 1];
+            int credits = 0;
+            for (int row = 0; row < rows; row++) credits += media_store.cast_end[row] - media_store.cast_start[row];
+            int[] title_actors = new int[credits];
+            int n = 0;
+            for (int row = 0; row < rows; row++) {
+                for (int c = media_store.cast_start[row]; c < media_store.cast_end[row]; c++) {
+                    int code = media_store.actor_ids[c];
+                    if (code_actor[code] == -2) {
+                        Integer id = actor_norm[code].isEmpty() ? Integer.valueOf(-1) : ids.get(actor_norm[code]);
+                        if (id == null) {
+                            id = names.size();
+                            ids.put(actor_norm[code], id);
+                            names.add(media_store.actors.decode(code).trim());
+                        }
+                        code_actor[code] = id;
+                    }
+                    int actor = code_actor[code];
+                    if (actor < 0) continue;
+                    // Casts are short, so a linear scan drops an actor credited twice on one title
+                    boolean duplicate = false;
+                    for (int i = title_start[row]; i < n && !duplicate; i++) duplicate = title_actors[i] == actor;
+                    if (!duplicate) title_actors[n++] = actor;
+                }
+                title_start[row + 1] = n;
+            }
+            int actors = names.size();
+            title_actors = Arrays.copyOf(title_actors, n);
+            // Transpose into actor rows with a counting sort; walking titles in order keeps each row ascending
+            int[] actor_start = new int[actors + 1];
+            for (int actor : title_actors) actor_start[actor + 1]++;
+            for (int a = 0; a < actors; a++) actor_start[a + 1] += actor_start[a];
+            int[] actor_titles = new int[n];
+            int[] fill = Arrays.copyOf(actor_start, actors);
+            for (int row = 0; row < rows; row++) {
+                for (int i = title_start[row]; i < title_start[row + 1]; i++) actor_titles[fill[title_actors[i]]++] = row;
+            }
+            current = new graph(names.toArray(new String[0]), ids, titles, title_start, title_actors, actor_start, actor_titles, version);
+            metrics.time("costar_graph_build", started);
+        }
+
+        // Method to return the number of distinct actors in the graph
+        static int actors() {
+            return current().names.length;
+        }
+
+        // Method to return the number of actor-title edges in the graph
+        static int edges() {
+            return current().actor_titles.length;
+        }
+
+        // Method to return the display name of an actor, or null when there is no such cast member
+        static String name(String actor) {
+            graph g = current();
+            Integer id = g.ids.get(cast_index.normalize(actor));
+            return id == null ? null : g.names[id];
+        }
+
+        // Method to find a shortest chain of shared titles between two actors; null when either is unknown or the
+        // two are not connected
+        static connection path(String from, String to) {
+            long started = metrics.start();
+            graph g = current();
+            Integer source = g.ids.get(cast_index.normalize(from)), target = g.ids.get(cast_index.normalize(to));
+            int[] path = source == null || target == null ? null : path(g, source, target);
+            metrics.time("costar_path", started);
+            if (path == null) return null;
+            List<String> actors = new ArrayList<>();
+            List<Media> titles = new ArrayList<>();
+            for (int i = 0; i < path.length; i++) {
+                if (i % 2 == 0) actors.add(g.names[path[i]]);
+                else titles.add(g.titles[path[i]]);
+            }
+            return new connection(actors, titles);
+        }
+
+        // Method to list up to k actors sharing the most titles with the given actor, as name and count pairs, most
+        // shared first and then by name
+        static List<Map.Entry<String, Integer>> top_costars(String actor, int k) {
+            long started = metrics.start();
+            graph g = current();
+            Integer id = g.ids.get(cast_index.normalize(actor));
+            List<Map.Entry<String, Integer>> results = new ArrayList<>();
+            if (id != null) {
+                // Count shared titles in the search scratch arrays: seen marks an actor counted in this query
+                search counts = searches(g)[0];
+                counts.start(id);
+                int touched = 0;
+                for (int t = g.actor_start[id]; t < g.actor_start[id + 1]; t++) {
+                    int title = g.actor_titles[t];
+                    for (int i = g.title_start[title]; i < g.title_start[title + 1]; i++) {
+                        int other = g.title_actors[i];
+                        if (counts.seen[other] != counts.stamp) {
+                            counts.seen[other] = counts.stamp;
+                            counts.depth[other] = 0;
+                            counts.frontier[touched++] = other;
+                        }
+                        counts.depth[other]++;
+                    }
+                }
+                PriorityQueue<int[]> best = new PriorityQueue<>((a, b) -> a[1] != b[1] ? Integer.compare(a[1], b[1]) : g.names[b[0]].compareTo(g.names[a[0]]));
+                for (int i = 0; i < touched; i++) {
+                    int other = counts.frontier[i];
+                    if (other == id) continue;
+                    best.add(new int[]{other, counts.depth[other]});
+                    if (best.size() > k) best.poll();
+                }
+                while (!best.isEmpty()) {
+                    int[] entry = best.poll();
+                    results.add(new AbstractMap.SimpleImmutableEntry<>(g.names[entry[0]], entry[1]));
+                }
+                Collections.reverse(results);
+            }
+            metrics.time("costar_top", started);
+            return results;
+        }
+
+        // Method to trace random actor pairs on a fork-join pool and summarize traversal throughput; each worker
+        // thread sizes its own search state once
+        static String sample(int pairs, int threads, long seed) {
+            if (pairs <= 0) throw new IllegalArgumentException("Number of co-star pairs must be positive: " + pairs);
+            graph g = current();
+            int actors = g.names.length;
+            if (actors == 0) return "Co-star sample: no cast members in the catalog";
+            // Endpoints are drawn per credit rather than per actor, so prolific actors come up as often as they are searched
+            long[] pair = new long[pairs];
+            Random random = new Random(seed);
+            int credits = g.title_actors.length;
+            for (int i = 0; i < pairs; i++) pair[i] = (long) g.title_actors[random.nextInt(credits)] << 32 | g.title_actors[random.nextInt(credits)];
+            int[] hops = new int[pairs];
+            long start = System.nanoTime();
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                pool.submit(() -> IntStream.range(0, pairs).parallel().forEach(i -> {
+                    int[] path = path(g, (int) (pair[i] >>> 32), (int) pair[i]);
+                    hops[i] = path == null ? -1 : path.length / 2;
+                })).join();
+            } finally {
+                pool.shutdown();
+            }
+            double ms = (System.nanoTime() - start) / 1e6;
+            int connected = 0, longest = 0;
+            long total = 0;
+            for (int h : hops) {
+                if (h < 0) continue;
+                connected++;
+                total += h;
+                longest = Math.max(longest, h);
+            }
+            return String.format("Co-star sample: %d pairs in %.1f ms on %d thread(s) (%.0f pairs/s) over %d actors and %d credits; "
+                            + "%d connected (%.1f%%), mean %.2f hops, longest %d",
+                    pairs, ms, threads, pairs / (ms / 1000), actors, g.actor_titles.length,
+                    connected, 100.0 * connected / pairs, connected == 0 ? 0 : (double) total / connected, longest);
+        }
+
+        // Helper method to run a level-synchronous bidirectional breadth-first search; returns the path as alternating
+        // actor and title IDs, starting and ending with an actor, or null when the actors are not connected
+        private static int[] path(graph g, int source, int target) {
+            if (source == target) return new int[]{source};
+            search[] sides = searches(g);
+            search forward = sides[0], backward = sides[1];
+            forward.start(source);
+            backward.start(target);
+            while (forward.size > 0 && backward.size > 0) {
+                // Grow the smaller frontier by one full level; the best meeting point within that level is a shortest path
+                boolean grow_forward = forward.size <= backward.size;
+                search grow = grow_forward ? forward : backward, other = grow_forward ? backward : forward;
+                int meet = expand(g, grow, other);
+                if (meet >= 0) {
+                    int hops = forward.depth[meet] + backward.depth[meet];
+                    int[] path = new int[2 * hops + 1];
+                    int at = 2 * forward.depth[meet];
+                    for (int a = meet; a != source; a = forward.parent[a]) {
+                        path[at] = a;
+                        path[at - 1] = forward.via[a];
+                        at -= 2;
+                    }
+                    path[0] = source;
+                    at = 2 * forward.depth[meet];
+                    for (int a = meet; a != target; a = backward.parent[a]) {
+                        path[at] = a;
+                        path[at + 1] = backward.via[a];
+                        at += 2;
+                    }
+                    path[path.length - 1] = target;
+                    return path;
+                }
+            }
+            return null;
+        }
+
+        // Helper method to expand one side's frontier by a level, returning the discovered actor closest to the
+        // other side's start among those the other side has reached, or -1
+        private static int expand(graph g, search grow, search other) {
+            int level = grow.level + 1, size = 0, meet = -1, best = Integer.MAX_VALUE;
+            for (int f = 0; f < grow.size; f++) {
+                int actor = grow.frontier[f];
+                for (int t = g.actor_start[actor]; t < g.actor_start[actor + 1]; t++) {
+                    int title = g.actor_titles[t];
+                    if (grow.title_seen[title] == grow.stamp) continue; // Its actors were all visited already
+                    grow.title_seen[title] = grow.stamp;
+                    for (int i = g.title_start[title]; i < g.title_start[title + 1]; i++) {
+                        int next = g.title_actors[i];
+                        if (grow.seen[next] == grow.stamp) continue;
+                        grow.seen[next] = grow.stamp;
+                        grow.depth[next] = level;
+                        grow.parent[next] = actor;
+                        grow.via[next] = title;
+                        grow.next[size++] = next;
+                        if (other.seen[next] == other.stamp && other.depth[next] < best) {
+                            best = other.depth[next];
+                            meet = next;
+                        }
+                    }
+                }
+            }
+            int[] swap = grow.frontier;
+            grow.frontier = grow.next;
+            grow.next = swap;
+            grow.size = size;
+            grow.level = level;
+            return meet;
+        }
+
+        // Helper method to return this thread's search state, resized for the given graph
+        private static search[] searches(graph g) {
+            search[] sides = SEARCH.get();
+            if (sides == null || sides[0].seen.length < g.names.length || sides[0].title_seen.length < g.titles.length) {
+                int actors = Math.max(g.names.length, 1), titles = Math.max(g.titles.length, 1);
+                sides = new search[]{new search(actors, titles), new search(actors, titles)};
+                SEARCH.set(sides);
+            }
+            return sides;
+        }
+
+        // Helper method to return the current graph, rebuilding it first if the catalog changed since it was built
+        private static graph current() {
+            graph g = current;
+            if (g != null && g.version == query_cache.version()) return g;
+            synchronized (costar_graph.class) {
+                if (current == null || current.version != query_cache.version()) build(null);
+                return current;
+            }
+        }
+    }
+
+    // Class to manage an inverted index of words in media names and descriptions
+    static class word_index {
+        // Posting list holding media IDs (ascending) with per-field term frequencies
+        static class posting_list {
+            int[] ids = new int[4];
+            int[] name_tf = new int[4];
+            int[] desc_tf = new int[4];
+            int size = 0;
+
+            // Method to record one occurrence of the term in the given media item and field
+            void add(int id, boolean in_desc) {
+                // Media items are usually indexed in ID order, so the last entry is checked before searching
+                int at;
+                if (size > 0 && ids[size - 1] == id) at = size - 1;
+                else if (size == 0 || ids[size - 1] < id) at = -size - 1;
+                else at = Arrays.binarySearch(ids, 0, size, id);
+                if (at < 0) {
+                    at = -at - 1;
+                    if (size == ids.length) {
+                        ids = Arrays.copyOf(ids, size * 2);
+                        name_tf = Arrays.copyOf(name_tf, size * 2);
+                        desc_tf = Arrays.copyOf(desc_tf, size * 2);
+                    }
+                    // Shift later entries up to keep IDs ascending
+                    System.arraycopy(ids, at, ids, at + 1, size - at);
+                    System.arraycopy(name_tf, at, name_tf, at + 1, size - at);
+                    System.arraycopy(desc_tf, at, desc_tf, at + 1, size - at);
+                    ids[at] = id;
+                    name_tf[at] = 0;
+                    desc_tf[at] = 0;
+                    size++;
+                }
+                if (in_desc) desc_tf[at]++;
+                else name_tf[at]++;
+            }
+
+            // Method to drop a media item from the list; returns true when the list is left empty
+            boolean remove(int id) {
+                int at = Arrays.binarySearch(ids, 0, size, id);
+                if (at >= 0) {
+                    System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+                    System.arraycopy(name_tf, at + 1, name_tf, at, size - at - 1);
+                    System.arraycopy(desc_tf, at + 1, desc_tf, at, size - at - 1);
+                    size--;
+                }
+                return size == 0;
+            }
+        }
+
+        // Map from normalized term to its posting list
+        private static Map<String, posting_list> index = new HashMap<>();
+
+        // Method to build the inverted index over all loaded media
+        static void build() {
+            index.clear(); // Clear existing entries to avoid duplicates
+            for (Media media : media_list) {
+                index_field(index, media.name, media.id, false);
+                index_field(index, media.description, media.id, true);
+            }
+        }
+
+        // Method to add one media item to the index under its current ID
+        static void add(Media media) {
+            index_field(index, media.name, media.id, false);
+            index_field(index, media.description, media.id, true);
+        }
+
+        // Method to remove one media item, identified by its current ID, from every term it is posted under
+        static void remove(Media media) {
+            Set<String> terms = new HashSet<>();
+            for (String text : new String[]{media.name, media.description}) {
+                if (text == null) continue;
+                for (String token : tokenize(text)) {
+                    terms.add(token);
+                    if (token.length() > 1 && token.endsWith("s")) terms.add(token.substring(0, token.length() - 1));
+                }
+            }
+            for (String term : terms) {
+                posting_list postings = index.get(term);
+                if (postings != null && postings.remove(media.id)) index.remove(term);
+            }
+        }
+
+        // Method to tokenize one field and add its terms to an index (the global one, or a shard's)
+        static void index_field(Map<String, posting_list> index, String text, int id, boolean in_desc) {
+            if (text == null) return;
+            for (String token : tokenize(text)) {
+                index.computeIfAbsent(token, t -> new posting_list()).add(id, in_desc);
+                // Plural folding: "words" is also posted under "word", matching the old "word(s)?" regex
+                if (token.length() > 1 && token.endsWith("s")) {
+                    index.computeIfAbsent(token.substring(0, token.length() - 1), t -> new posting_list()).add(id, in_desc);
+                }
+            }
+        }
+
+        // Method to split text into lowercase word tokens (letters, digits and underscores)
+        static List<String> tokenize(String text) {
+            List<String> tokens = new ArrayList<>();
+            int start = -1;
+            for (int i = 0; i <= text.length(); i++) {
+                boolean word_char = i < text.length() && is_word_char(text.charAt(i));
+                if (word_char && start < 0) {
+                    start = i;
+                } else if (!word_char && start >= 0) {
+                    tokens.add(text.substring(start, i).toLowerCase());
+                    start = -1;
+                }
+            }
+            return tokens;
+        }
+
+        // Helper method to check whether a character belongs to a word
+        private static boolean is_word_char(char c) {
+            return Character.isLetterOrDigit(c) || c == '_';
+        }
+
+        // Method to estimate the heap held by the index: map entries, term keys and posting arrays
+        static long footprint() {
+            long bytes = Trie.array_bytes(4, index.size() * 2L); // Hash table, at the default load factor
+            for (Map.Entry<String, posting_list> entry : index.entrySet()) {
+                bytes += 32 + 24 + Trie.array_bytes(1, entry.getKey().length()) + 32 + 3 * Trie.array_bytes(4, entry.getValue().ids.length);
+            }
+            return bytes;
+        }
+
+        // Pattern separating alternatives in a word query: OR in any case, or "|"
+        static final Pattern ALTERNATIVES = Pattern.compile("(?i)\\s+OR\\s+|\\|");
+
+        // Method to search the index; "OR" (or "|") separates alternatives, spaces within an alternative mean AND
+        // Returns media of the given type mapped to their total term frequency in the description
+        static List<Map.Entry<Media, Integer>> search(String query, String type) {
+            return search(query, type, null);
+        }
+
+        // Method to search the index as above, scoring only the media IDs set in within (all when null)
+        static List<Map.Entry<Media, Integer>> search(String query, String type, BitSet within) {
+            return search(index, media_list, query, type, within);
+        }
+
+        // Method to search an index whose IDs are positions in media: the global index over media_list, or a shard's
+        // index over its slice
+        static List<Map.Entry<Media, Integer>> search(Map<String, posting_list> index, List<Media> media, String query, String type, BitSet within) {
+            // Accumulate description frequency per media ID across all matching alternatives
+            Map<Integer, Integer> scores = new TreeMap<>();
+            for (String clause : ALTERNATIVES.split(query.trim())) {
+                List<String> terms = tokenize(clause);
+                if (terms.isEmpty()) continue;
+                List<posting_list> lists = new ArrayList<>();
+                boolean missing = false;
+                for (String term : new LinkedHashSet<>(terms)) {
+                    posting_list list = index.get(term);
+                    if (list == null) { missing = true; break; }
+                    lists.add(list);
+                }
+                if (missing) continue; // A term had no postings, so the AND clause is empty
+                // Intersect starting from the shortest list so the cost scales with the smallest match set
+                lists.sort(Comparator.comparingInt(l -> l.size));
+                int[] ids = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+                int count = ids.length;
+                for (int l = 1; l < lists.size() && count > 0; l++) {
+                    count = intersect(ids, count, lists.get(l));
+                }
+                for (int i = 0; i < count; i++) {
+                    if (within != null && !within.get(ids[i])) continue;
+                    Media m = media.get(ids[i]);
+                    if (!m.type().equals(type)) continue;
+                    int freq = 0;
+                    for (posting_list list : lists) freq += list.desc_tf[find(list, ids[i])];
+                    scores.merge(ids[i], freq, Integer::sum);
+                }
+            }
+            List<Map.Entry<Media, Integer>> results = new ArrayList<>();
+            for (Map.Entry<Integer, Integer> entry : scores.entrySet()) {
+                results.add(new AbstractMap.SimpleEntry<>(media.get(entry.getKey()), entry.getValue()));
+            }
+            return results;
+        }
+
+        // Helper method to intersect the first count IDs in place with a posting list, returning the new count
+        private static int intersect(int[] ids, int count, posting_list list) {
+            int out = 0, j = 0;
+            for (int i = 0; i < count && j < list.size; i++) {
+                while (j < list.size && list.ids[j] < ids[i]) j++;
+                if (j < list.size && list.ids[j] == ids[i]) ids[out++] = ids[i];
+            }
+            return out;
+        }
+
+        // Helper method to binary search a media ID inside a posting list
+        private static int find(posting_list list, int id) {
+            return Arrays.binarySearch(list.ids, 0, list.size, id);
+        }
+
+        // Method to write the inverted index to a snapshot stream
+        static void write(DataOutputStream out) throws IOException {
+            out.writeInt(index.size());
+            for (Map.Entry<String, posting_list> entry : index.entrySet()) {
+                posting_list list = entry.getValue();
+                catalog_snapshot.write_string(out, entry.getKey());
+                out.writeInt(list.size);
+                for (int i = 0; i < list.size; i++) {
+                    out.writeInt(list.ids[i]);
+                    out.writeInt(list.name_tf[i]);
+                    out.writeInt(list.desc_tf[i]);
+                }
+            }
+        }
+
+        // Method to restore the inverted index from a snapshot buffer
+        static void read(ByteBuffer in) {
+            index.clear();
+            int terms = in.getInt();
+            for (int t = 0; t < terms; t++) {
+                String term = catalog_snapshot.read_string(in);
+                posting_list list = new posting_list();
+                list.size = in.getInt();
+                list.ids = new int[Math.max(1, list.size)];
+                list.name_tf = new int[list.ids.length];
+                list.desc_tf = new int[list.ids.length];
+                for (int i = 0; i < list.size; i++) {
+                    list.ids[i] = in.getInt();
+                    list.name_tf[i] = in.getInt();
+                    list.desc_tf[i] = in.getInt();
+                }
+                index.put(term, list);
+            }
+        }
+    }
+
+    // Class to index media by type, platform and genre as bitsets over dense media IDs, plus a name lookup
+    static class facet_index {
+        // One bitset per lowercase facet value; bit i is set when media_list.get(i) has that value
+        private static Map<String, BitSet> by_type = new HashMap<>();
+        private static Map<String, BitSet> by_platform = new HashMap<>();
+        private static Map<String, BitSet> by_genre = new HashMap<>();
+        // Lowercase title to the media items carrying it
+        private static Map<String, List<Media>> by_name = new HashMap<>();
+
+        // Method to build the facet bitsets and name lookup over all loaded media, scanning the media_store columns
+        static void build() {
+            by_type.clear();
+            by_platform.clear();
+            by_genre.clear();
+            by_name.clear();
+            String[] type_keys = new String[media_store.types.size()];
+            for (int c = 0; c < type_keys.length; c++) type_keys[c] = media_store.types.decode(c).toLowerCase();
+            String[] platform_keys = new String[media_store.platforms.size()];
+            for (int c = 0; c < platform_keys.length; c++) platform_keys[c] = media_store.platforms.decode(c).toLowerCase();
+            // Genres are normalized once per distinct value here instead of on every query
+            String[] genre_keys = new String[media_store.genres.size()];
+            for (int c = 0; c < genre_keys.length; c++) genre_keys[c] = map_to_valid_genre(media_store.genres.decode(c)).toLowerCase();
+            add_column(by_type, media_store.type_code, type_keys);
+            add_column(by_platform, media_store.platform_code, platform_keys);
+            add_column(by_genre, media_store.genre_code, genre_keys);
+            for (Media m : media_list) by_name.computeIfAbsent(m.name.toLowerCase(), k -> new ArrayList<>()).add(m);
+        }
+
+        // Helper method to set one bit per row under the key of the row's dictionary code
+        private static void add_column(Map<String, BitSet> facet, int[] codes, String[] keys) {
+            BitSet[] by_code = new BitSet[keys.length];
+            for (int c = 0; c < keys.length; c++) by_code[c] = facet.computeIfAbsent(keys[c], k -> new BitSet(media_store.rows));
+            for (int row = 0; row < media_store.rows; row++) by_code[codes[row]].set(row);
+        }
+
+        // Method to add one media item to every facet
+        static void add(Media m) {
+            by_type.computeIfAbsent(m.type().toLowerCase(), k -> new BitSet()).set(m.id);
+            by_platform.computeIfAbsent(m.platform().toLowerCase(), k -> new BitSet()).set(m.id);
+            // Genres are normalized once here instead of on every query
+            by_genre.computeIfAbsent(map_to_valid_genre(m.genre()).toLowerCase(), k -> new BitSet()).set(m.id);
+            by_name.computeIfAbsent(m.name.toLowerCase(), k -> new ArrayList<>()).add(m);
+        }
+
+        // Method to remove one media item, identified by its current ID, from every facet
+        static void remove(Media m) {
+            for (Map<String, BitSet> facet : List.of(by_type, by_platform, by_genre)) {
+                for (BitSet bits : facet.values()) bits.clear(m.id);
+            }
+            List<Media> same_name = by_name.get(m.name.toLowerCase());
+            if (same_name != null) {
+                same_name.removeIf(other -> other == m);
+                if (same_name.isEmpty()) by_name.remove(m.name.toLowerCase());
+            }
+        }
+
+        // Method to intersect the requested facets (null means any value) into a new bitset
+        static BitSet filter(String type, String platform, String genre) {
+            BitSet result = null;
+            for (BitSet facet : new BitSet[]{
+                    type == null ? null : by_type.getOrDefault(type.toLowerCase(), new BitSet()),
+                    platform == null ? null : by_platform.getOrDefault(platform.toLowerCase(), new BitSet()),
+                    genre == null ? null : by_genre.getOrDefault(genre.toLowerCase(), new BitSet())}) {
+                if (facet == null) continue;
+                if (result == null) result = (BitSet) facet.clone();
+                else result.and(facet);
+            }
+            if (result == null) {
+                result = new BitSet(media_list.size());
+                result.set(0, media_list.size());
+            }
+            return result;
+        }
+
+        // Method to materialize the media items for a bitset, in ID order
+        static List<Media> select(BitSet ids) {
+            List<Media> results = new ArrayList<>(ids.cardinality());
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) results.add(media_list.get(id));
+            return results;
+        }
+
+        // Method to look up media items of a type (null for any type) by exact (case-insensitive) name
+        static List<Media> named(String name, String type) {
+            List<Media> results = new ArrayList<>();
+            for (Media m : by_name.getOrDefault(name.toLowerCase(), Collections.emptyList())) {
+                if (type == null || m.type().equals(type)) results.add(m);
+            }
+            return results;
+        }
+    }
+
+    // Class to answer plan range queries and cheapest-bundle questions from the plans sorted by price
+    static class plan_index {
+        // Bundles over at most this many candidate platforms are solved exactly by trying every subset
+        static final int EXACT_PLATFORMS = 20;
+        // Plans in subscription_plan.order(true) and their prices in cents, for binary search on a budget
+        private static subscription_plan[] by_price = new subscription_plan[0];
+        private static int[] cents = new int[0];
+        // The list and size the index was built from, so a replaced plans list is picked up on the next query
+        private static List<subscription_plan> source;
+        private static int source_size = -1;
+        // Distinct platform names keyed by their lowercase letters and digits, for matching bundle items
+        private static Map<String, String> platform_keys = new LinkedHashMap<>();
+
+        // Class to hold a solved bundle: the chosen plans, their total and the items no plan covers
+        static class bundle {
+            final List<subscription_plan> plans = new ArrayList<>();
+            final List<String> uncovered = new ArrayList<>();
+            int total_cents;
+        }
+
+        // Method to rebuild the index from the current plans; call it after plan fields change
+        static synchronized void build() {
+            List<subscription_plan> sorted = sorted_plans(true);
+            by_price = sorted.toArray(new subscription_plan[0]);
+            cents = new int[by_price.length];
+            for (int i = 0; i < by_price.length; i++) cents[i] = by_price[i].price_cents;
+            platform_keys = new LinkedHashMap<>();
+            for (subscription_plan p : plans) platform_keys.putIfAbsent(platform_key(p.platform), p.platform);
+            source = plans;
+            source_size = plans.size();
+        }
+
+        // Helper method to rebuild the index when the plans list was replaced or resized since the last build
+        private static synchronized subscription_plan[] current() {
+            if (source != plans || source_size != plans.size()) build();
+            return by_price;
+        }
+
+        // Method to list plans costing at most max_cents (negative for any budget) with at least the given
+        // resolution tier and concurrent streams, optionally on one platform, cheapest first
+        static List<subscription_plan> query(int max_cents, int min_tier, int min_streams, String platform) {
+            subscription_plan[] sorted = current();
+            int end = max_cents < 0 ? sorted.length : upper_bound(cents, sorted.length, max_cents);
+            List<subscription_plan> results = new ArrayList<>();
+            for (int i = 0; i < end; i++) {
+                subscription_plan p = sorted[i];
+                if (!p.meets(min_tier, min_streams)) continue;
+                if (platform != null && !p.platform.equalsIgnoreCase(platform)) continue;
+                results.add(p);
+            }
+            return results;
+        }
+
+        // Helper method to find the first index whose value exceeds the key in a sorted prefix of the array
+        private static int upper_bound(int[] values, int length, int key) {
+            int low = 0, high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[mid] <= key) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+
+        // Method to find the cheapest set of plans, at most one per platform, covering every item; an item is a
+        // platform name (whole words such as "Apple TV" or "Amazon" are enough) or a title available on one or more platforms
+        static bundle cheapest_bundle(List<String> items, int min_tier, int min_streams) {
+            bundle result = new bundle();
+            Map<String, subscription_plan> cheapest = cheapest_plans(min_tier, min_streams);
+            // Only platforms named by some item are candidates; each item becomes a bitmask over them
+            List<subscription_plan> candidates = new ArrayList<>();
+            Map<subscription_plan, Integer> bit = new HashMap<>();
+            Set<Long> needs = new LinkedHashSet<>();
+            for (String item : items) {
+                long mask = 0;
+                for (String platform : item_platforms(item)) {
+                    subscription_plan p = cheapest.get(platform.toLowerCase());
+                    if (p == null || (!bit.containsKey(p) && candidates.size() == Long.SIZE)) continue;
+                    int i = bit.computeIfAbsent(p, k -> {
+                        candidates.add(k);
+                        return candidates.size() - 1;
+                    });
+                    mask |= 1L << i;
+                }
+                if (mask == 0) result.uncovered.add(item);
+                else needs.add(mask);
+            }
+            if (needs.isEmpty()) return result;
+            long chosen = candidates.size() <= EXACT_PLATFORMS ? exact_cover(candidates, needs) : greedy_cover(candidates, needs);
+            for (int i = 0; i < candidates.size(); i++) {
+                if ((chosen & (1L << i)) == 0) continue;
+                result.plans.add(candidates.get(i));
+                result.total_cents += candidates.get(i).price_cents;
+            }
+            result.plans.sort(subscription_plan.order(true));
+            return result;
+        }
+
+        // Method to map each lowercase platform name to its cheapest plan with at least the given resolution tier and
+        // concurrent streams; plans are scanned in price order so the first one wins and the scan stops once every
+        // platform has one
+        static Map<String, subscription_plan> cheapest_plans(int min_tier, int min_streams) {
+            Map<String, subscription_plan> cheapest = new HashMap<>();
+            subscription_plan[] sorted = current();
+            for (int i = 0; i < sorted.length && cheapest.size() < platform_keys.size(); i++) {
+                subscription_plan p = sorted[i];
+                if (p.price_cents == Integer.MAX_VALUE || !p.meets(min_tier, min_streams)) continue;
+                cheapest.putIfAbsent(p.platform.toLowerCase(), p);
+            }
+            return cheapest;
+        }
+
+        // Helper method to resolve a bundle item to platform names: a platform with exactly that name first, then the
+        // platforms carrying a title of that name, then platforms whose name contains the item's words as whole words
+        // (so "Amazon" finds Amazon Prime Video, while a title such as "Apple" or "A" stays a title)
+        private static Set<String> item_platforms(String item) {
+            Set<String> platforms = new LinkedHashSet<>();
+            String key = platform_key(item);
+            if (key.isEmpty()) return platforms;
+            String exact = platform_keys.get(key);
+            if (exact != null) {
+                platforms.add(exact);
+                return platforms;
+            }
+            for (watch_index.work w : watch_index.named(item, null)) platforms.addAll(w.availability().keySet());
+            if (!platforms.isEmpty()) return platforms;
+            String words = " " + String.join(" ", item.toLowerCase().split("[^a-z0-9]+")).trim() + " ";
+            for (String platform : platform_keys.values()) {
+                String platform_words = " " + String.join(" ", platform.toLowerCase().split("[^a-z0-9]+")).trim() + " ";
+                if (platform_words.contains(words)) platforms.add(platform);
+            }
+            return platforms;
+        }
+
+        // Helper method to reduce a platform name to its lowercase letters and digits ("Apple TV+" becomes "appletv")
+        private static String platform_key(String name) {
+            return name.toLowerCase().replaceAll("[^a-z0-9]", "");
+        }
+
+        // Helper method to try every subset of candidate platforms and keep the cheapest one (fewest plans, then the
+        // lowest mask on a tie) that meets every need; subsets are walked in Gray-code order, so each one differs from
+        // the previous by a single platform and its cost is updated in place without a per-request table
+        private static long exact_cover(List<subscription_plan> candidates, Set<Long> needs) {
+            int n = candidates.size();
+            long best = -1, best_cost = Long.MAX_VALUE, cost = 0;
+            for (int step = 1; step < (1 << n); step++) {
+                int flipped = Integer.numberOfTrailingZeros(step);
+                int mask = step ^ (step >>> 1);
+                cost += (mask & (1 << flipped)) != 0 ? candidates.get(flipped).price_cents : -candidates.get(flipped).price_cents;
+                if (cost > best_cost) continue;
+                if (cost == best_cost) {
+                    int plans = Integer.bitCount(mask), best_plans = Long.bitCount(best);
+                    if (plans > best_plans || (plans == best_plans && mask > best)) continue;
+                }
+                boolean covers = true;
+                for (long need : needs) {
+                    if ((need & mask) == 0) {
+                        covers = false;
+                        break;
+                    }
+                }
+                if (covers) {
+                    best = mask;
+                    best_cost = cost;
+                }
+            }
+            return best;
+        }
+
+        // Helper method to approximate the cover for many platforms by repeatedly taking the plan with the
+        // lowest price per newly covered need
+        private static long greedy_cover(List<subscription_plan> candidates, Set<Long> needs) {
+            List<Long> open = new ArrayList<>(needs);
+            long chosen = 0;
+            while (!open.isEmpty()) {
+                int pick = -1;
+                double pick_ratio = Double.MAX_VALUE;
+                for (int i = 0; i < candidates.size(); i++) {
+                    if ((chosen & (1L << i)) != 0) continue;
+                    int covered = 0;
+                    for (long need : open) if ((need & (1L << i)) != 0) covered++;
+                    double ratio = covered == 0 ? Double.MAX_VALUE : (double) candidates.get(i).price_cents / covered;
+                    if (ratio < pick_ratio) {
+                        pick = i;
+                        pick_ratio = ratio;
+                    }
+                }
+                if (pick < 0) break;
+                chosen |= 1L << pick;
+                long bit = 1L << pick;
+                open.removeIf(need -> (need & bit) != 0);
+            }
+            return chosen;
+        }
+    }
+
+    // Class to find similar titles: each title gets a MinHash signature over its description and name words, genre and
+    // cast, and signatures are split into LSH bands so only titles sharing a band are compared; those candidates are
+    // then ranked by their exact Jaccard similarity
+    static class similar_index {
+        // Signature length and band layout. Descriptions are short, so even closely related titles share only about
+        // 5% of their features; single-value bands still make such a pair a candidate with probability 1 - 0.95^64
+        static final int HASHES = 64;
+        static final int ROWS_PER_BAND = 1;
+        static final int BANDS = HASHES / ROWS_PER_BAND;
+        // Description and name words shorter than this are skipped, as are the common words below
+        static final int MIN_WORD_LENGTH = 4;
+        static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+                "about", "after", "against", "also", "before", "being", "between", "both", "come", "comes", "down", "each",
+                "even", "ever", "from", "have", "having", "into", "just", "more", "most", "much", "must", "only", "other",
+                "over", "same", "some", "such", "than", "that", "their", "them", "then", "there", "these", "they", "this",
+                "those", "through", "under", "until", "very", "what", "when", "where", "which", "while", "will", "with",
+                "within", "without", "your"));
+        // Buckets holding more than 1 / MAX_BUCKET_SHARE of the titles (and over MIN_BUCKET_LIMIT) are skipped: they
+        // come from features most titles share, such as a broad genre, and would make every query scan much of the catalog
+        static final int MAX_BUCKET_SHARE = 100;
+        static final int MIN_BUCKET_LIMIT = 64;
+        // Multipliers and offsets of the HASHES hash functions; fixed seed so signatures are reproducible
+        private static final long[] HASH_A = new long[HASHES], HASH_B = new long[HASHES];
+        // The current index; replaced as a whole when the catalog changes
+        private static volatile table current;
+
+        static {
+            Random random = new Random(42);
+            for (int i = 0; i < HASHES; i++) {
+                HASH_A[i] = random.nextLong() | 1;
+                HASH_B[i] = random.nextLong();
+            }
+        }
+
+        // Class to hold one built index: the rows it covers, their features and signatures, and the sorted band keys
+        private static class table {
+            final Media[] rows;
+            // Features of row i are features[feature_start[i] .. feature_start[i + 1]), sorted (CSR layout)
+            final long[] features;
+            final int[] feature_start;
+            // Signature of row i is signatures[i * HASHES .. (i + 1) * HASHES)
+            final int[] signatures;
+            // bands[b] holds (band key << 32 | row) for every row with features, sorted, so a bucket is a run of equal keys
+            final long[][] bands;
+            final long version;
+
+            table(Media[] rows, long[] features, int[] feature_start, int[] signatures, long[][] bands, long version) {
+                this.rows = rows;
+                this.features = features;
+                this.feature_start = feature_start;
+                this.signatures = signatures;
+                this.bands = bands;
+                this.version = version;
+            }
+        }
+
+        // Method to (re)build the signatures and bands over media_list, in parallel
+        static synchronized void build() {
+            long started = metrics.start();
+            long version = query_cache.version();
+            Media[] rows = media_list.toArray(new Media[0]);
+            int n = rows.length;
+            int[] signatures = new int[n * HASHES];
+            long[][] per_row = new long[n][];
+            IntStream.range(0, n).parallel().forEach(i -> {
+                per_row[i] = features(rows[i]);
+                sign(per_row[i], signatures, i * HASHES);
+            });
+            int[] feature_start = new int[n + 1];
+            for (int i = 0; i < n; i++) feature_start[i + 1] = feature_start[i] + per_row[i].length;
+            long[] features = new long[feature_start[n]];
+            for (int i = 0; i < n; i++) System.arraycopy(per_row[i], 0, features, feature_start[i], per_row[i].length);
+            long[][] bands = new long[BANDS][];
+            IntStream.range(0, BANDS).parallel().forEach(b -> {
+                long[] keys = new long[n];
+                int count = 0;
+                for (int i = 0; i < n; i++) {
+                    // Titles without features would all share one bucket, so they are left out of the bands
+                    if (per_row[i].length > 0) keys[count++] = (long) band_key(signatures, i * HASHES + b * ROWS_PER_BAND) << 32 | i;
+                }
+                keys = Arrays.copyOf(keys, count);
+                Arrays.sort(keys);
+                bands[b] = keys;
+            });
+            current = new table(rows, features, feature_start, signatures, bands, version);
+            metrics.time("similar_index_build", started);
+        }
+
+        // Method to return up to n titles of the same type most similar to m, best first; other listings with the
+        // same name (the title on another platform) are left out
+        static List<Media> similar(Media m, int n) {
+            long started = metrics.start();
+            table t = current();
+            int row = m.id >= 0 && m.id < t.rows.length && t.rows[m.id] == m ? m.id : -1;
+            long[] features = row >= 0 ? Arrays.copyOfRange(t.features, t.feature_start[row], t.feature_start[row + 1]) : features(m);
+            int[] signature = new int[HASHES];
+            sign(features, signature, 0);
+            // Collect candidates from every band bucket the title falls into, scoring each candidate once
+            BitSet seen = new BitSet(t.rows.length);
+            int limit = Math.max(MIN_BUCKET_LIMIT, t.rows.length / MAX_BUCKET_SHARE);
+            PriorityQueue<double[]> best = new PriorityQueue<>((a, b) -> a[0] != b[0] ? Double.compare(a[0], b[0]) : Double.compare(b[1], a[1]));
+            for (int b = 0; b < BANDS; b++) {
+                long[] keys = t.bands[b];
+                long key = band_key(signature, b * ROWS_PER_BAND);
+                // The bucket ends before the largest row slot of its key; adding 1L << 32 instead would overflow
+                // for key Integer.MAX_VALUE and skip that bucket (rows are below 2^31, so the slot itself is never taken)
+                int from = lower_bound(keys, key << 32), to = lower_bound(keys, key << 32 | 0xFFFFFFFFL);
+                if (to - from > limit) continue;
+                for (int at = from; at < to; at++) {
+                    int candidate = (int) keys[at];
+                    if (candidate == row || seen.get(candidate)) continue;
+                    seen.set(candidate);
+                    Media other = t.rows[candidate];
+                    if (!other.type().equals(m.type()) || other.name.equalsIgnoreCase(m.name)) continue;
+                    best.add(new double[]{jaccard(features, t.features, t.feature_start[candidate], t.feature_start[candidate + 1]), candidate});
+                    if (best.size() > n) best.poll();
+                }
+            }
+            List<Media> results = new ArrayList<>(best.size());
+            while (!best.isEmpty()) results.add(t.rows[(int) best.poll()[1]]);
+            Collections.reverse(results);
+            metrics.time("similar_search", started);
+            return results;
+        }
+
+        // Method to compute a title's feature set as sorted, distinct 64-bit hashes of tagged tokens: description and
+        // name words ("w"), the genre ("g") and each cast member ("c")
+        static long[] features(Media m) {
+            Set<String> tokens = new HashSet<>();
+            for (String text : new String[]{m.name, m.description}) {
+                if (text == null) continue;
+                for (String word : word_index.tokenize(text)) {
+                    if (word.length() >= MIN_WORD_LENGTH && !STOP_WORDS.contains(word)) tokens.add("w" + word);
+                }
+            }
+            if (m.genre() != null && !m.genre().trim().isEmpty()) tokens.add("g" + m.genre().trim().toLowerCase());
+            if (m.cast() != null) {
+                for (String actor : m.cast().split(",")) {
+                    String name = cast_index.normalize(actor);
+                    if (!name.isEmpty()) tokens.add("c" + name);
+                }
+            }
+            long[] hashes = new long[tokens.size()];
+            int i = 0;
+            for (String token : tokens) hashes[i++] = hash(token);
+            Arrays.sort(hashes);
+            return hashes;
+        }
+
+        // Helper method to return the current index, rebuilding it first if the catalog changed since it was built
+        private static table current() {
+            table t = current;
+            if (t != null && t.version == query_cache.version()) return t;
+            synchronized (similar_index.class) {
+                if (current == null || current.version != query_cache.version()) build();
+                return current;
+            }
+        }
+
+        // Method to return the exact Jaccard similarity of a sorted feature set and the sorted range [from, to) of another
+        static double jaccard(long[] a, long[] b, int from, int to) {
+            int i = 0, j = from, shared = 0;
+            while (i < a.length && j < to) {
+                if (a[i] == b[j]) {
+                    shared++;
+                    i++;
+                    j++;
+                } else if (a[i] < b[j]) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+            int union = a.length + (to - from) - shared;
+            return union == 0 ? 0 : (double) shared / union;
+        }
+
+        // Helper method to write the MinHash signature of a feature set at the given offset
+        private static void sign(long[] features, int[] out, int offset) {
+            Arrays.fill(out, offset, offset + HASHES, Integer.MAX_VALUE);
+            for (long x : features) {
+                for (int h = 0; h < HASHES; h++) {
+                    int value = (int) ((HASH_A[h] * x + HASH_B[h]) >>> 32);
+                    if (value < out[offset + h]) out[offset + h] = value;
+                }
+            }
+        }
+
+        // Helper method to combine the ROWS_PER_BAND signature values starting at offset into one bucket key
+        private static int band_key(int[] signature, int offset) {
+            long key = 0;
+            for (int r = 0; r < ROWS_PER_BAND; r++) key = (key + signature[offset + r]) * 0x9E3779B97F4A7C15L;
+            return (int) (key >>> 32);
+        }
+
+        // Helper method to find the first index whose value is at least the key in a sorted array
+        private static int lower_bound(long[] values, long key) {
+            int low = 0, high = values.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[mid] < key) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+
+        // Helper method to hash a token to 64 bits (FNV-1a over its characters, then a final mix)
+        private static long hash(String token) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < token.length(); i++) h = (h ^ token.charAt(i)) * 0x100000001b3L;
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            return h ^ (h >>> 33);
+        }
+    }
+
+    // Class to consolidate the per-platform copies of a title into one work: copies with the same type, normalized
+    // name and release year are grouped by hashing that key, and each work keeps its listings (platform and link).
+    // "Where can I watch X" is then one hash lookup, titles exclusive to a platform are a precomputed list, and the
+    // cheapest plan that unlocks a work is joined in from plan_index at query time so plan edits apply at once
+    static class watch_index {
+        // Class to hold one consolidated title and the catalog copies listing it, one per platform
+        static class work {
+            final String type, name;
+            final int year;
+            final List<Media> listings = new ArrayList<>(2);
+
+            work(Media first, int year) {
+                this.type = first.type();
+                this.name = first.name;
+                this.year = year;
+            }
+
+            // Method to map each platform carrying the work to its link, in catalog order
+            Map<String, String> availability() {
+                Map<String, String> platforms = new LinkedHashMap<>();
+                for (Media m : listings) platforms.putIfAbsent(m.platform(), m.url);
+                return platforms;
+            }
+
+            // Method to return the cheapest plan on any platform carrying the work, or null if none of them has a priced plan
+            subscription_plan cheapest_plan(Map<String, subscription_plan> cheapest) {
+                subscription_plan best = null;
+                for (Media m : listings) {
+                    subscription_plan p = cheapest.get(m.platform().toLowerCase());
+                    if (p != null && (best == null || p.price_cents < best.price_cents)) best = p;
+                }
+                return best;
+            }
+        }
+
+        // Class to hold one build: works by key and by normalized name, and the exclusives of each platform and type
+        private static class table {
+            final Map<String, work> by_key;
+            final Map<String, List<work>> by_name;
+            final Map<String, List<work>> exclusives;
+            final long version;
+
+            table(Map<String, work> by_key, Map<String, List<work>> by_name, Map<String, List<work>> exclusives, long version) {
+                this.by_key = by_key;
+                this.by_name = by_name;
+                this.exclusives = exclusives;
+                this.version = version;
+            }
+        }
+
+        // Current build; replaced as a whole so readers never see a half-built index
+        private static volatile table current;
+
+        // Method to (re)build the works over media_list
+        static synchronized void build() {
+            long started = metrics.start();
+            long version = query_cache.version();
+            Map<String, work> by_key = new HashMap<>(media_list.size() * 2);
+            Map<String, List<work>> by_name = new HashMap<>(media_list.size() * 2);
+            for (Media m : media_list) {
+                String name = normalize(m.name);
+                int year = release_year(m.release_date());
+                work w = by_key.computeIfAbsent(m.type() + '\u0000' + name + '\u0000' + year, k -> {
+                    work created = new work(m, year);
+                    by_name.computeIfAbsent(name, n -> new ArrayList<>(1)).add(created);
+                    return created;
+                });
+                w.listings.add(m);
+            }
+            Map<String, List<work>> exclusives = new HashMap<>();
+            for (work w : by_key.values()) {
+                String platform = w.listings.get(0).platform();
+                boolean exclusive = true;
+                for (Media m : w.listings) exclusive &= m.platform().equalsIgnoreCase(platform);
+                if (exclusive) exclusives.computeIfAbsent(exclusive_key(platform, w.type), k -> new ArrayList<>()).add(w);
+            }
+            // Exclusives are listed in catalog order, like the platform listings
+            for (List<work> works : exclusives.values()) works.sort(Comparator.comparingInt(w -> w.listings.get(0).id));
+            current = new table(by_key, by_name, exclusives, version);
+            metrics.time("watch_index_build", started);
+        }
+
+        // Helper method to return the current index, rebuilding it first if the catalog changed since it was built
+        private static table current() {
+            table t = current;
+            if (t != null && t.version == query_cache.version()) return t;
+            synchronized (watch_index.class) {
+                if (current == null || current.version != query_cache.version()) build();
+                return current;
+            }
+        }
+
+        // Method to return the works of a type (null for any type) with the given name, ignoring case and punctuation
+        static List<work> named(String name, String type) {
+            long started = metrics.start();
+            List<work> results = new ArrayList<>();
+            for (work w : current().by_name.getOrDefault(normalize(name), Collections.emptyList())) {
+                if (type == null || w.type.equals(type)) results.add(w);
+            }
+            metrics.time("watch_lookup", started);
+            return results;
+        }
+
+        // Method to return the works of a type (null for both) listed on the given platform and no other
+        static List<work> exclusive(String platform, String type) {
+            long started = metrics.start();
+            table t = current();
+            List<work> results = new ArrayList<>();
+            for (String each : type == null ? new String[]{"Movie", "TV Show"} : new String[]{type}) {
+                results.addAll(t.exclusives.getOrDefault(exclusive_key(platform, each), Collections.emptyList()));
+            }
+            metrics.time("watch_exclusive", started);
+            return results;
+        }
+
+        // Method to return the number of consolidated works
+        static int works() {
+            return current().by_key.size();
+        }
+
+        // Method to reduce a title to lowercase words separated by single spaces, so "Spider-Man: No Way Home" and
+        // "Spider Man  No Way Home" group together; apostrophes are dropped and & reads as "and"
+        static String normalize(String name) {
+            StringBuilder out = new StringBuilder(name.length());
+            boolean gap = false;
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                if (Character.isLetterOrDigit(c)) {
+                    if (gap && out.length() > 0) out.append(' ');
+                    out.append(Character.toLowerCase(c));
+                    gap = false;
+                } else if (c == '&') {
+                    if (out.length() > 0) out.append(' ');
+                    out.append("and"); // "Mr. & Mrs. Smith" and "Mr and Mrs Smith" group together
+                    gap = true;
+                } else if (c != '\'' && c != '\u2019') {
+                    gap = true;
+                }
+            }
+            return out.toString();
+        }
+
+        // Helper method to key the exclusives of a platform and type
+        private static String exclusive_key(String platform, String type) {
+            return platform.toLowerCase() + '\u0000' + type;
+        }
+    }
+
+    // Class to record operation latencies and result sizes as log-bucketed histograms, alongside counters and gauges,
+    // and to print them for the menu or write them as Prometheus text or JSON
+    static class metrics {
+        // File written on exit: a name ending in .json selects JSON, anything else Prometheus text (empty: none)
+        static final String DUMP_FILE = System.getProperty("bingebuddy.metrics.file", "");
+        // Buckets per power of two; with 4, a bucket's upper bound is at most 25% above any value in it
+        static final int SUB_BUCKETS = 4;
+        private static final Map<String, histogram> histograms = new ConcurrentHashMap<>();
+        private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+        // Values read on demand: monotonic counts kept elsewhere, and point-in-time gauges
+        private static final Map<String, LongSupplier> counter_readings = new ConcurrentHashMap<>();
+        private static final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+        // Class to count values into buckets that double in width every SUB_BUCKETS buckets
+        static class histogram {
+            // "seconds" for timers (recorded in nanoseconds), otherwise the unit of the recorded values
+            final String unit;
+            final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+            final LongAdder count = new LongAdder();
+            final LongAdder sum = new LongAdder();
+            final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+            histogram(String unit) {
+                this.unit = unit;
+            }
+
+            // Method to record one value (negative values count as zero)
+            void record(long value) {
+                value = Math.max(0, value);
+                buckets.incrementAndGet(bucket(value));
+                count.increment();
+                sum.add(value);
+                max.accumulate(value);
+            }
+
+            // Helper method to find a value's bucket: small values get their own, larger ones are split by the two
+            // bits after the leading one
+            static int bucket(long value) {
+                if (value < SUB_BUCKETS) return (int) value;
+                int exponent = 63 - Long.numberOfLeadingZeros(value);
+                return exponent * SUB_BUCKETS + (int) ((value >>> (exponent - 2)) & (SUB_BUCKETS - 1));
+            }
+
+            // Helper method to return the largest value that falls into a bucket
+            static long upper(int bucket) {
+                if (bucket < SUB_BUCKETS) return bucket;
+                int exponent = bucket / SUB_BUCKETS;
+                long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - 2);
+                return lower + (1L << (exponent - 2)) - 1;
+            }
+
+            // Method to estimate a percentile (0-100) as the upper bound of the bucket holding that rank
+            long percentile(double p) {
+                long total = count.sum();
+                if (total == 0) return 0;
+                long rank = Math.max(1, (long) Math.ceil(p / 100 * total)), seen = 0;
+                for (int b = 0; b < buckets.length(); b++) {
+                    seen += buckets.get(b);
+                    if (seen >= rank) return Math.min(upper(b), max.get());
+                }
+                return max.get();
+            }
+        }
+
+        // Timers on sub-microsecond paths time one call in this many, so the clock reads stay off most calls
+        static final int SAMPLE_EVERY = 16;
+        // Start value meaning "this call is not sampled"
+        static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+        // Method to start a timer; pass the result to time() when the operation ends
+        static long start() {
+            return System.nanoTime();
+        }
+
+        // Method to start a timer for one call in SAMPLE_EVERY; the histogram then holds a sample of the calls
+        static long start_sampled() {
+            return ThreadLocalRandom.current().nextInt(SAMPLE_EVERY) == 0 ? System.nanoTime() : NOT_SAMPLED;
+        }
+
+        // Method to record the time since start under the named timer
+        static void time(String name, long start) {
+            if (start != NOT_SAMPLED) histogram(name, "seconds").record(System.nanoTime() - start);
+        }
+
+        // Method to record a value, such as a result count, under the named histogram
+        static void record(String name, String unit, long value) {
+            histogram(name, unit).record(value);
+        }
+
+        // Method to add one to the named counter
+        static void count(String name) {
+            counters.computeIfAbsent(name, k -> new LongAdder()).increment();
+        }
+
+        // Method to register a counter whose value is kept elsewhere, read when metrics are shown
+        static void counter(String name, LongSupplier reading) {
+            counter_readings.put(name, reading);
+        }
+
+        // Method to register a gauge, read when metrics are shown
+        static void gauge(String name, LongSupplier reading) {
+            gauges.put(name, reading);
+        }
+
+        // Helper method to find or create a histogram
+        private static histogram histogram(String name, String unit) {
+            histogram h = histograms.get(name);
+            return h != null ? h : histograms.computeIfAbsent(name, k -> new histogram(unit));
+        }
+
+        // Helper method to read every counter, recorded or registered, in name order
+        private static Map<String, Long> counter_values() {
+            Map<String, Long> values = new TreeMap<>();
+            counters.forEach((name, adder) -> values.put(name, adder.sum()));
+            counter_readings.forEach((name, reading) -> values.put(name, reading.getAsLong()));
+            return values;
+        }
+
+        // Helper method to read every gauge in name order
+        private static Map<String, Long> gauge_values() {
+            Map<String, Long> values = new TreeMap<>();
+            gauges.forEach((name, reading) -> values.put(name, reading.getAsLong()));
+            return values;
+        }
+
+        // Helper method to format a histogram value: milliseconds for timers, the raw value otherwise
+        private static String format(histogram h, long value) {
+            return h.unit.equals("seconds") ? String.format("%.3f ms", value / 1e6) : value + " " + h.unit;
+        }
+
+        // Method to render every metric as a readable table
+        static String report() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("%-24s %9s %14s %14s %14s %14s%n", "Operation", "Count", "p50", "p90", "p99", "Max"));
+            for (Map.Entry<String, histogram> entry : new TreeMap<>(histograms).entrySet()) {
+                histogram h = entry.getValue();
+                text.append(String.format("%-24s %9d %14s %14s %14s %14s%n", entry.getKey(), h.count.sum(), format(h, h.percentile(50)),
+                        format(h, h.percentile(90)), format(h, h.percentile(99)), format(h, h.max.get())));
+            }
+            text.append(String.format("%nCounters:%n"));
+            counter_values().forEach((name, value) -> text.append(String.format("  %-30s %d%n", name, value)));
+            text.append(String.format("Gauges:%n"));
+            gauge_values().forEach((name, value) -> text.append(String.format("  %-30s %d%n", name, value)));
+            return text.toString();
+        }
+
+        // Method to render every metric in the Prometheus text exposition format
+        static String prometheus() {
+            StringBuilder text = new StringBuilder();
+            for (Map.Entry<String, histogram> entry : new TreeMap<>(histograms).entrySet()) {
+                histogram h = entry.getValue();
+                boolean timer = h.unit.equals("seconds");
+                String name = "bingebuddy_" + entry.getKey() + "_" + h.unit;
+                text.append("# TYPE ").append(name).append(" histogram\n");
+                long cumulative = 0;
+                for (int b = 0; b < h.buckets.length(); b++) {
+                    long n = h.buckets.get(b);
+                    if (n == 0) continue; // Only occupied buckets; the cumulative counts stay exact
+                    cumulative += n;
+                    String le = timer ? String.valueOf((histogram.upper(b) + 1) / 1e9) : String.valueOf(histogram.upper(b));
+                    text.append(name).append("_bucket{le=\"").append(le).append("\"} ").append(cumulative).append('\n');
+                }
+                text.append(name).append("_bucket{le=\"+Inf\"} ").append(h.count.sum()).append('\n');
+                text.append(name).append("_sum ").append(timer ? String.valueOf(h.sum.sum() / 1e9) : String.valueOf(h.sum.sum())).append('\n');
+                text.append(name).append("_count ").append(h.count.sum()).append('\n');
+            }
+            counter_values().forEach((name, value) ->
+                    text.append("# TYPE bingebuddy_").append(name).append("_total counter\nbingebuddy_").append(name).append("_total ").append(value).append('\n'));
+            gauge_values().forEach((name, value) ->
+                    text.append("# TYPE bingebuddy_").append(name).append(" gauge\nbingebuddy_").append(name).append(' ').append(value).append('\n'));
+            return text.toString();
+        }
+
+        // Method to render every metric as JSON; timer values are in nanoseconds
+        static String json() {
+            StringBuilder json = new StringBuilder("{\"histograms\":{");
+            for (Map.Entry<String, histogram> entry : new TreeMap<>(histograms).entrySet()) {
+                histogram h = entry.getValue();
+                if (json.charAt(json.length() - 1) != '{') json.append(',');
+                json.append(query_server.json_string(entry.getKey())).append(":{\"unit\":")
+                        .append(query_server.json_string(h.unit.equals("seconds") ? "nanoseconds" : h.unit))
+                        .append(",\"count\":").append(h.count.sum()).append(",\"sum\":").append(h.sum.sum())
+                        .append(",\"p50\":").append(h.percentile(50)).append(",\"p90\":").append(h.percentile(90))
+                        .append(",\"p99\":").append(h.percentile(99)).append(",\"max\":").append(h.max.get()).append('}');
+            }
+            json.append("},\"counters\":");
+            append_values(json, counter_values());
+            json.append(",\"gauges\":");
+            append_values(json, gauge_values());
+            return json.append('}').toString();
+        }
+
+        // Helper method to append name/value pairs as a JSON object
+        private static void append_values(StringBuilder json, Map<String, Long> values) {
+            json.append('{');
+            for (Map.Entry<String, Long> entry : values.entrySet()) {
+                if (json.charAt(json.length() - 1) != '{') json.append(',');
+                json.append(query_server.json_string(entry.getKey())).append(':').append(entry.getValue());
+            }
+            json.append('}');
+        }
+
+        // Method to write the metrics to DUMP_FILE, if one is configured; runs on exit
+        static void dump() {
+            if (DUMP_FILE.isEmpty()) return;
+            try {
+                Files.write(Paths.get(DUMP_FILE), (DUMP_FILE.endsWith(".json") ? json() : prometheus()).getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                System.out.println("Error writing metrics file: " + e.getMessage());
+            }
+        }
+
+        // Method to register the catalog gauges and the query cache counters; sizes are estimates of retained heap
+        static void register_catalog_gauges() {
+            gauge("media_titles", () -> media_list.size());
+            gauge("offheap_titles", offheap_catalog::rows);
+            gauge("offheap_mapped_bytes", offheap_catalog::mapped_bytes);
+            gauge("subscription_plans", () -> plans.size());
+            gauge("trie_bytes", () -> locked(() -> trie.footprint()));
+            gauge("cast_trie_bytes", () -> locked(() -> cast_trie.footprint()));
+            gauge("cast_index_bytes", () -> locked(cast_index::footprint));
+            gauge("word_index_bytes", () -> locked(word_index::footprint));
+            gauge("media_store_bytes", () -> locked(media_store::footprint));
+            gauge("query_cache_bytes", () -> {
+                synchronized (query_cache.class) {
+                    return query_cache.bytes;
+                }
+            });
+            gauge("jvm_heap_used_bytes", () -> Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
+            counter("query_cache_hits", () -> query_cache.hits);
+            counter("query_cache_misses", () -> query_cache.misses);
+            counter("query_cache_evictions", () -> query_cache.evictions);
+        }
+
+        // Helper method to read a value while no file reload is changing the catalog
+        private static long locked(LongSupplier reading) {
+            catalog_reloader.lock.readLock().lock();
+            try {
+                return reading.getAsLong();
+            } finally {
+                catalog_reloader.lock.readLock().unlock();
+            }
+        }
+    }
+
+    // Class to cache query results keyed by operation, media type and normalized query; the least recently used
+    // entries are dropped once the entry or byte budget is exceeded, and everything is dropped when the catalog changes
+    static class query_cache {
+        static final int MAX_ENTRIES = Integer.getInteger("bingebuddy.cache.entries", 1024);
+        static final long MAX_BYTES = Long.getLong("bingebuddy.cache.bytes", 16L << 20);
+        // Approximate fixed cost of one entry: map node, key string header and entry object
+        static final int ENTRY_OVERHEAD = 128;
+        // Catalog version, bumped on every change; results computed against an older version are never stored
+        private static volatile long version;
+        // Access-ordered, so iteration starts at the least recently used entry
+        private static final LinkedHashMap<String, entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+        static long bytes;
+        static long hits, misses, evictions, invalidations;
+
+        // Class to hold one cached result with its approximate size
+        private static class entry {
+            final Object value;
+            final long bytes;
+
+            entry(Object value, long bytes) {
+                this.value = value;
+                this.bytes = bytes;
+            }
+        }
+
+        // Method to return the cached result for a query, computing and caching it on a miss; the weigher estimates
+        // the result's size in bytes. Cached results are shared, so callers must not modify them
+        @SuppressWarnings("unchecked")
+        static <T> T get(String op, String type, String key, Supplier<T> compute,
+                         ToLongFunction<T> weigher) {
+            String full_key = op + '\u0000' + type + '\u0000' + key;
+            long seen;
+            synchronized (query_cache.class) {
+                entry cached = entries.get(full_key);
+                if (cached != null) {
+                    hits++;
+                    return (T) cached.value;
+                }
+                misses++;
+                seen = version;
+            }
+            T value = compute.get(); // Computed outside the lock; concurrent misses on one key may both compute
+            long size = ENTRY_OVERHEAD + 2L * full_key.length() + weigher.applyAsLong(value);
+            synchronized (query_cache.class) {
+                if (seen != version || size > MAX_BYTES / 8) return value; // Catalog changed meanwhile, or too big
+                entry previous = entries.put(full_key, new entry(value, size));
+                bytes += size - (previous == null ? 0 : previous.bytes);
+                for (Iterator<entry> it = entries.values().iterator(); it.hasNext() && (entries.size() > MAX_ENTRIES || bytes > MAX_BYTES); ) {
+                    bytes -= it.next().bytes;
+                    it.remove();
+                    evictions++;
+                }
+            }
+            return value;
+        }
+
+        // Method to record a catalog change: bump the version and drop every cached result
+        static synchronized void invalidate() {
+            version++;
+            if (!entries.isEmpty()) invalidations++;
+            entries.clear();
+            bytes = 0;
+        }
+
+        // Method to return the current catalog version
+        static long version() {
+            return version;
+        }
+
+        // Method to normalize a word query for use as a key: single spaces and lowercase words, with the OR operator
+        // in any case written as "OR", matching how word_index.search splits alternatives
+        static String words_key(String query) {
+            StringBuilder key = new StringBuilder();
+            for (String token : query.trim().split("\\s+")) {
+                if (key.length() > 0) key.append(' ');
+                key.append(token.equalsIgnoreCase("OR") ? "OR" : token.toLowerCase());
+            }
+            return key.toString();
+        }
+
+        // Method to estimate the size of a cached list: one reference per element plus the per-element cost
+        static long list_bytes(List<?> list, int element_bytes) {
+            return 24 + (long) list.size() * (8 + element_bytes);
+        }
+
+        // Method to summarize the cache's hit rate and usage for printing
+        static synchronized String stats() {
+            long lookups = hits + misses;
+            return String.format("Query cache: %d hits / %d lookups (%.1f%% hit rate), %d entries, ~%d KB, %d evictions, %d invalidations, catalog version %d",
+                    hits, lookups, lookups == 0 ? 0.0 : 100.0 * hits / lookups, entries.size(), bytes >> 10, evictions, invalidations, version);
+        }
+    }
+
+    // Class to save and restore the parsed catalog and its indexes as a versioned binary snapshot
+    static class catalog_snapshot {
+        // File magic ("BBSN") and format version; bump the version whenever the layout changes
+        static final int MAGIC = 0x4242534E;
+        static final int VERSION = 2;
+        // Header: magic, version, payload length and payload CRC32
+        static final int HEADER_BYTES = 4 + 4 + 8 + 8;
+
+        // Method to write the current catalog to a snapshot file, replacing any previous one atomically
+        static void save(String path, String[] sources) {
+            File tmp = new File(path + ".tmp");
+            try {
+                CRC32 crc = new CRC32();
+                try (FileOutputStream fos = new FileOutputStream(tmp)) {
+                    fos.write(new byte[HEADER_BYTES]); // Placeholder, patched once the payload CRC is known
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(fos, crc), 1 << 16));
+                    write_sources(out, sources);
+                    out.writeInt(plans.size());
+                    for (subscription_plan p : plans) {
+                        for (String field : new String[]{p.name, p.price, p.resolution, p.devices, p.concurrent_devices, p.link, p.platform}) {
+                            write_string(out, field);
+                        }
+                    }
+                    out.writeInt(media_list.size());
+                    for (Media m : media_list) {
+                        for (String field : new String[]{m.type(), m.name, m.description, m.genre(), m.release_date(), m.season(), m.cast(), m.platform(), m.url}) {
+                            write_string(out, field);
+                        }
+                    }
+                    trie.write(out);
+                    cast_trie.write(out);
+                    cast_index.write(out);
+                    word_index.write(out);
+                    out.flush();
+                }
+                try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw")) {
+                    raf.writeInt(MAGIC);
+                    raf.writeInt(VERSION);
+                    raf.writeLong(raf.length() - HEADER_BYTES);
+                    raf.writeLong(crc.getValue());
+                }
+                Files.move(tmp.toPath(), new File(path).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                System.out.println("Error writing catalog snapshot: " + e.getMessage());
+                tmp.delete();
+            }
+        }
+
+        // Method to load the catalog from a snapshot file; returns false (leaving the catalog untouched)
+        // if the snapshot is missing, from another format version, corrupt or older than its source files
+        static boolean load(String path, String[] sources) {
+            File file = new File(path);
+            if (!file.exists()) return false;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (channel.size() < HEADER_BYTES || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                    System.out.println("Catalog snapshot has an unknown format, rebuilding from CSV files.");
+                    return false;
+                }
+                long length = buf.getLong();
+                long expected_crc = buf.getLong();
+                CRC32 crc = new CRC32();
+                crc.update(buf.slice());
+                if (length != channel.size() - HEADER_BYTES || crc.getValue() != expected_crc) {
+                    System.out.println("Catalog snapshot is corrupt, rebuilding from CSV files.");
+                    return false;
+                }
+                if (!sources_unchanged(buf, sources)) {
+                    System.out.println("Catalog snapshot is out of date, rebuilding from CSV files.");
+                    return false;
+                }
+                // Decode into fresh structures and only publish them once everything has been read
+                List<subscription_plan> loaded_plans = new ArrayList<>();
+                int plan_count = buf.getInt();
+                for (int i = 0; i < plan_count; i++) {
+                    loaded_plans.add(new subscription_plan(read_string(buf), read_string(buf), read_string(buf),
+                            read_string(buf), read_string(buf), read_string(buf), read_string(buf)));
+                }
+                // Titles are appended straight into media_store, which therefore only reads snapshots into an empty
+                // catalog (startup); on failure the columns are rebuilt from the untouched media_list
+                if (!media_list.isEmpty()) return false;
+                int media_count = buf.getInt();
+                List<Media> loaded_media = new ArrayList<>(media_count);
+                try {
+                    media_store.build();
+                    for (int i = 0; i < media_count; i++) {
+                        loaded_media.add(media_store.append(read_string(buf), read_string(buf), read_string(buf), read_string(buf),
+                                read_string(buf), read_string(buf), read_string(buf), read_string(buf), read_string(buf)));
+                    }
+                    Trie loaded_trie = Trie.read(buf, loaded_media);
+                    Trie loaded_cast_trie = Trie.read(buf, loaded_media);
+                    cast_index.read(buf, loaded_media);
+                    word_index.read(buf);
+                    trie = loaded_trie;
+                    cast_trie = loaded_cast_trie;
+                } catch (RuntimeException e) {
+                    media_store.build();
+                    throw e;
+                }
+                query_cache.invalidate();
+                plans.clear();
+                plans.addAll(loaded_plans);
+                media_list.addAll(loaded_media);
+                return true;
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Catalog snapshot is unreadable, rebuilding from CSV files: " + e);
+                return false;
+            }
+        }
+
+        // Helper method to record size, modification time and checksum of every source file
+        static void write_sources(DataOutputStream out, String[] sources) throws IOException {
+            out.writeInt(sources.length);
+            for (String source : sources) {
+                File file = new File(source);
+                write_string(out, source);
+                out.writeLong(file.exists() ? file.length() : -1);
+                out.writeLong(file.exists() ? file.lastModified() : 0);
+                out.writeLong(file.exists() ? file_crc(file) : 0);
+            }
+        }
+
+        // Helper method to check the recorded source files against the current ones; a file whose
+        // modification time changed still matches if its size and checksum are the same
+        static boolean sources_unchanged(ByteBuffer buf, String[] sources) throws IOException {
+            int count = buf.getInt();
+            boolean unchanged = count == sources.length;
+            for (int i = 0; i < count; i++) {
+                String source = read_string(buf);
+                long size = buf.getLong(), modified = buf.getLong(), crc = buf.getLong();
+                if (!unchanged) continue; // Keep reading so the buffer stays positioned correctly
+                File file = new File(source);
+                long current_size = file.exists() ? file.length() : -1;
+                if (i >= sources.length || !source.equals(sources[i]) || current_size != size) {
+                    unchanged = false;
+                } else if (size >= 0 && file.lastModified() != modified && file_crc(file) != crc) {
+                    unchanged = false;
+                }
+            }
+            return unchanged;
+        }
+
+        // Helper method to compute the CRC32 of a file through a memory mapping
+        static long file_crc(File file) throws IOException {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+                CRC32 crc = new CRC32();
+                for (long pos = 0; pos < channel.size(); pos += CSV_SCAN_WINDOW) {
+                    crc.update(channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(CSV_SCAN_WINDOW, channel.size() - pos)));
+                }
+                return crc.getValue();
+            }
+        }
+
+        // Method to write a string as a length-prefixed UTF-8 byte sequence (-1 for null)
+        static void write_string(DataOutputStream out, String value) throws IOException {
+            if (value == null) {
+                out.writeInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        // Method to read a string written by write_string
+        static String read_string(ByteBuffer in) {
+            int length = in.getInt();
+            if (length < 0) return null;
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    // Class holding the catalog off the Java heap, for catalogs too large to keep as Media objects: records, strings
+    // and index arrays live in a directory of memory-mapped files built once from the CSV files (streamed one chunk
+    // at a time), and titles are read through small flyweight handles that only become Media objects when printed
+    static class offheap_catalog {
+        // File magic ("BBOH") and format version; bump the version whenever the layout changes
+        static final int MAGIC = 0x42424F48;
+        static final int VERSION = 1;
+        // Fixed-width record per title: five dictionary codes, the release year, four string references and the
+        // title's slice of the credits file
+        static final int RECORD_BYTES = 64;
+        private static final int TYPE = 0, PLATFORM = 4, GENRE = 8, RELEASE = 12, SEASON = 16, YEAR = 20,
+                NAME = 24, DESCRIPTION = 32, CAST = 40, URL = 48, CREDITS = 56, CREDIT_COUNT = 60;
+        // Actor entry: references to the normalized name (the sort key) and to the first spelling seen
+        static final int ACTOR_BYTES = 16;
+        // The open catalog, or null when the heap catalog is in use
+        private static volatile catalog current;
+
+        // Class mapping a whole file as segments of at most 1 GiB; numbers are naturally aligned and strings start
+        // on a 4-byte boundary, so no fixed-width value straddles two segments
+        static class mapped {
+            static final int SEGMENT_BITS = 30;
+            static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+            final MappedByteBuffer[] segments;
+            final long size;
+
+            mapped(Path path, long size, boolean writable) throws IOException {
+                this.size = size;
+                try (FileChannel channel = writable
+                        ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                        : FileChannel.open(path, StandardOpenOption.READ)) {
+                    segments = new MappedByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_BITS)];
+                    for (int s = 0; s < segments.length; s++) {
+                        long from = (long) s << SEGMENT_BITS;
+                        segments[s] = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                                from, Math.min(1L << SEGMENT_BITS, size - from));
+                    }
+                }
+            }
+
+            // Method to map an existing file read-only
+            static mapped open(Path path) throws IOException {
+                return new mapped(path, Files.size(path), false);
+            }
+
+            int get_int(long pos) {
+                return segments[(int) (pos >>> SEGMENT_BITS)].getInt((int) (pos & SEGMENT_MASK));
+            }
+
+            long get_long(long pos) {
+                return segments[(int) (pos >>> SEGMENT_BITS)].getLong((int) (pos & SEGMENT_MASK));
+            }
+
+            void put_int(long pos, int value) {
+                segments[(int) (pos >>> SEGMENT_BITS)].putInt((int) (pos & SEGMENT_MASK), value);
+            }
+
+            // Method to read the UTF-8 bytes of a string written by string_writer (null for a null string)
+            byte[] get_bytes(long pos) {
+                int length = get_int(pos);
+                if (length < 0) return null;
+                byte[] bytes = new byte[length];
+                for (int done = 0; done < length; ) {
+                    long at = pos + 4 + done;
+                    int offset = (int) (at & SEGMENT_MASK);
+                    int n = Math.min(length - done, segments[(int) (at >>> SEGMENT_BITS)].limit() - offset);
+                    segments[(int) (at >>> SEGMENT_BITS)].get(offset, bytes, done, n);
+                    done += n;
+                }
+                return bytes;
+            }
+
+            String get_string(long pos) {
+                byte[] bytes = get_bytes(pos);
+                return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+
+        // Class appending length-prefixed UTF-8 strings to a file and returning where each one starts
+        private static class string_writer implements Closeable {
+            private final DataOutputStream out;
+            long size = 0;
+
+            string_writer(Path path) throws IOException {
+                out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+            }
+
+            long write(String value) throws IOException {
+                long at = size;
+                byte[] bytes = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes == null ? -1 : bytes.length);
+                int length = bytes == null ? 0 : bytes.length;
+                if (bytes != null) out.write(bytes);
+                int padding = (4 - (length & 3)) & 3; // Keep the next length prefix aligned
+                for (int i = 0; i < padding; i++) out.write(0);
+                size += 4 + length + padding;
+                return at;
+            }
+
+            void flush() throws IOException {
+                out.flush();
+            }
+
+            public void close() throws IOException {
+                out.close();
+            }
+        }
+
+        // Class holding the mapped files and the (small) dictionaries of one open catalog
+        private static class catalog {
+            final int rows, actors;
+            final String[] types, platforms, genres, release_dates, seasons;
+            final mapped records, strings, names, name_start, actor_table, cast_start, cast_rows, listing_start, listing_rows;
+
+            catalog(Path dir) throws IOException {
+                ByteBuffer meta = ByteBuffer.wrap(Files.readAllBytes(dir.resolve("meta.bin")));
+                if (meta.getInt() != MAGIC || meta.getInt() != VERSION) throw new IOException("unknown format");
+                rows = meta.getInt();
+                actors = meta.getInt();
+                types = read_values(meta);
+                platforms = read_values(meta);
+                genres = read_values(meta);
+                release_dates = read_values(meta);
+                seasons = read_values(meta);
+                records = mapped.open(dir.resolve("records.bin"));
+                strings = mapped.open(dir.resolve("strings.bin"));
+                names = mapped.open(dir.resolve("names.bin"));
+                name_start = mapped.open(dir.resolve("name_start.bin"));
+                actor_table = mapped.open(dir.resolve("actors.bin"));
+                cast_start = mapped.open(dir.resolve("cast_start.bin"));
+                cast_rows = mapped.open(dir.resolve("cast_rows.bin"));
+                listing_start = mapped.open(dir.resolve("listing_start.bin"));
+                listing_rows = mapped.open(dir.resolve("listing_rows.bin"));
+            }
+
+            // Method to return the bytes mapped by this catalog
+            long mapped_bytes() {
+                long bytes = 0;
+                for (mapped m : new mapped[]{records, strings, names, name_start, actor_table, cast_start, cast_rows, listing_start, listing_rows}) bytes += m.size;
+                return bytes;
+            }
+
+            int field(int row, int offset) {
+                return records.get_int((long) row * RECORD_BYTES + offset);
+            }
+
+            String string(int row, int offset) {
+                return strings.get_string(records.get_long((long) row * RECORD_BYTES + offset));
+            }
+
+            // Method to return a title's name lowercased as UTF-8, the key names.bin is sorted by
+            byte[] name_key(int row) {
+                return string(row, NAME).toLowerCase().getBytes(StandardCharsets.UTF_8);
+            }
+
+            String actor_key(int actor) {
+                return strings.get_string(actor_table.get_long((long) actor * ACTOR_BYTES));
+            }
+
+            String actor_name(int actor) {
+                return strings.get_string(actor_table.get_long((long) actor * ACTOR_BYTES + 8));
+            }
+
+            // Helper method to read a dictionary written by build
+            private static String[] read_values(ByteBuffer meta) {
+                String[] values = new String[meta.getInt()];
+                for (int i = 0; i < values.length; i++) values[i] = catalog_snapshot.read_string(meta);
+                return values;
+            }
+        }
+
+        // Class for a flyweight handle on one off-heap title: it holds only the row, and every accessor decodes
+        // the field from the mapped files
+        static class title {
+            private final catalog c;
+            final int row;
+
+            title(catalog c, int row) {
+                this.c = c;
+                this.row = row;
+            }
+
+            String type() { return c.types[c.field(row, TYPE)]; }
+            String name() { return c.string(row, NAME); }
+            String description() { return c.string(row, DESCRIPTION); }
+            String genre() { return c.genres[c.field(row, GENRE)]; }
+            String release_date() { return c.release_dates[c.field(row, RELEASE)]; }
+            String season() { return c.seasons[c.field(row, SEASON)]; }
+            String cast() { return c.string(row, CAST); }
+            String platform() { return c.platforms[c.field(row, PLATFORM)]; }
+            String url() { return c.string(row, URL); }
+            int year() { return c.field(row, YEAR); }
+
+            // Method to copy the title into a (short-lived) Media object for code that prints Media
+            Media media() {
+                return new Media(type(), name(), description(), genre(), release_date(), season(), cast(), platform(), url());
+            }
+        }
+
+        // Method to open the off-heap catalog in dir, first (re)building it from the source CSV files when it is
+        // missing, from another format version or older than its sources
+        static void open(String dir, String[] sources) {
+            long start = System.nanoTime();
+            Path path = Paths.get(dir);
+            try {
+                if (!up_to_date(path, sources)) {
+                    System.out.println("Building off-heap catalog in " + dir + " ...");
+                    build(path, sources);
+                }
+                current = new catalog(path);
+                query_cache.invalidate();
+                Runtime runtime = Runtime.getRuntime();
+                System.out.printf("Opened off-heap catalog %s: %d titles, %d actors, %.1f MB mapped in %.1f ms (heap in use: %.1f MB)%n",
+                        dir, current.rows, current.actors, current.mapped_bytes() / 1048576.0, (System.nanoTime() - start) / 1e6,
+                        (runtime.totalMemory() - runtime.freeMemory()) / 1048576.0);
+                metrics.time("offheap_open", start);
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Error opening off-heap catalog " + dir + ": " + e);
+            }
+        }
+
+        // Method to check whether the off-heap catalog is in use
+        static boolean active() {
+            return current != null;
+        }
+
+        // Method to return the number of titles in the open catalog
+        static int rows() {
+            return current == null ? 0 : current.rows;
+        }
+
+        // Method to return the bytes mapped by the open catalog
+        static long mapped_bytes() {
+            return current == null ? 0 : current.mapped_bytes();
+        }
+
+        // Method to return up to k distinct names of the given type starting with prefix (case-insensitive), in
+        // name order
+        static List<String> names(String prefix, String type, int k) {
+            long started = metrics.start();
+            catalog c = current;
+            byte[] key = prefix.toLowerCase().getBytes(StandardCharsets.UTF_8);
+            int code = Arrays.asList(c.types).indexOf(type);
+            List<String> results = new ArrayList<>();
+            int end = code < 0 ? 0 : c.name_start.get_int(4L * code + 4);
+            for (int i = code < 0 ? 0 : name_lower_bound(c, code, key); i < end && results.size() < k; i++) {
+                int row = c.names.get_int(4L * i);
+                if (!starts_with(c.name_key(row), key)) break;
+                String name = c.string(row, NAME);
+                if (results.isEmpty() || !results.get(results.size() - 1).equalsIgnoreCase(name)) results.add(name);
+            }
+            metrics.time("offheap_names", started);
+            return results;
+        }
+
+        // Method to page through the titles of the given type with exactly this name (case-insensitive)
+        static result_cursor<title> named(String name, String type) {
+            catalog c = current;
+            byte[] key = name.toLowerCase().getBytes(StandardCharsets.UTF_8);
+            int code = Arrays.asList(c.types).indexOf(type);
+            List<title> matches = new ArrayList<>();
+            int end = code < 0 ? 0 : c.name_start.get_int(4L * code + 4);
+            for (int i = code < 0 ? 0 : name_lower_bound(c, code, key); i < end; i++) {
+                int row = c.names.get_int(4L * i);
+                if (!Arrays.equals(c.name_key(row), key)) break;
+                matches.add(new title(c, row));
+            }
+            return result_cursor.of(matches);
+        }
+
+        // Method to return up to k cast member names whose normalized name starts with the normalized prefix
+        static List<String> cast_names(String prefix, int k) {
+            catalog c = current;
+            String key = cast_index.normalize(prefix);
+            List<String> results = new ArrayList<>();
+            for (int a = actor_lower_bound(c, key); a < c.actors && results.size() < k; a++) {
+                if (!c.actor_key(a).startsWith(key)) break;
+                results.add(c.actor_name(a));
+            }
+            return results;
+        }
+
+        // Method to page through the titles crediting an actor, in catalog order
+        static result_cursor<title> cast(String actor) {
+            long started = metrics.start();
+            catalog c = current;
+            String key = cast_index.normalize(actor);
+            int a = actor_lower_bound(c, key);
+            boolean found = !key.isEmpty() && a < c.actors && c.actor_key(a).equals(key);
+            result_cursor<title> cursor = found ? rows(c, c.cast_rows, c.cast_start.get_int(4L * a), c.cast_start.get_int(4L * a + 4))
+                    : result_cursor.of(Collections.<title>emptyList());
+            metrics.time("offheap_cast", started);
+            return cursor;
+        }
+
+        // Method to page through the titles of a type on a platform (case-insensitive), in catalog order
+        static result_cursor<title> platform(String platform, String type) {
+            catalog c = current;
+            int p = -1, t = Arrays.asList(c.types).indexOf(type);
+            for (int i = 0; i < c.platforms.length; i++) if (c.platforms[i].equalsIgnoreCase(platform)) p = i;
+            if (p < 0 || t < 0) return result_cursor.of(Collections.<title>emptyList());
+            int listing = p * c.types.length + t;
+            return rows(c, c.listing_rows, c.listing_start.get_int(4L * listing), c.listing_start.get_int(4L * listing + 4));
+        }
+
+        // Method to print a title in the standard result layout
+        static void write_entry(PrintWriter out, title t) {
+            media_writer.write_entry(out, t.media());
+        }
+
+        // Helper method to page lazily through the row IDs in ids[from, to); each title is created on demand
+        private static result_cursor<title> rows(catalog c, mapped ids, int from, int to) {
+            return new result_cursor<>(to - from, new Iterator<title>() {
+                private int next = from;
+
+                @Override
+                public boolean hasNext() {
+                    return next < to;
+                }
+
+                @Override
+                public title next() {
+                    if (next >= to) throw new NoSuchElementException();
+                    return new title(c, ids.get_int(4L * next++));
+                }
+            });
+        }
+
+        // Helper method to find the first position in the type's range of names.bin whose key is not below the given key
+        private static int name_lower_bound(catalog c, int type, byte[] key) {
+            int low = c.name_start.get_int(4L * type), high = c.name_start.get_int(4L * type + 4);
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (Arrays.compareUnsigned(c.name_key(c.names.get_int(4L * mid)), key) < 0) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+
+        // Helper method to find the first actor whose normalized name is not below the given key
+        private static int actor_lower_bound(catalog c, String key) {
+            int low = 0, high = c.actors;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (c.actor_key(mid).compareTo(key) < 0) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+
+        // Helper method to check whether bytes start with prefix
+        private static boolean starts_with(byte[] bytes, byte[] prefix) {
+            return bytes.length >= prefix.length && Arrays.equals(bytes, 0, prefix.length, prefix, 0, prefix.length);
+        }
+
+        // Helper method to check the catalog's format version and recorded sources against the current files
+        private static boolean up_to_date(Path dir, String[] sources) {
+            Path meta = dir.resolve("meta.bin");
+            if (!Files.exists(meta)) return false;
+            try {
+                ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(meta));
+                if (buf.getInt() != MAGIC || buf.getInt() != VERSION) return false;
+                buf.getInt();
+                buf.getInt();
+                for (int d = 0; d < 5; d++) catalog.read_values(buf);
+                return catalog_snapshot.sources_unchanged(buf, sources);
+            } catch (IOException | RuntimeException e) {
+                return false;
+            }
+        }
+
+        // Method to build the catalog files in dir from the CSV files; rows are parsed one chunk at a time and
+        // streamed to disk, and the indexes are sorted and filled through mappings, so heap use stays bounded by the
+        // chunk size plus one key per title and the actor dictionary. meta.bin is written last, marking a complete build
+        static void build(Path dir, String[] sources) throws IOException {
+            long start = System.nanoTime();
+            Files.createDirectories(dir);
+            Files.deleteIfExists(dir.resolve("meta.bin"));
+            media_store.dictionary types = new media_store.dictionary(), platforms = new media_store.dictionary(),
+                    genres = new media_store.dictionary(), release_dates = new media_store.dictionary(), seasons = new media_store.dictionary();
+            Map<String, Integer> actor_ids = new HashMap<>();
+            List<String> actor_keys = new ArrayList<>();
+            long[] actor_refs = new long[16];
+            int rows = 0, actor_count;
+            long credits = 0;
+            Path credits_file = dir.resolve("credits.tmp");
+            try (string_writer strings = new string_writer(dir.resolve("strings.bin"));
+                 DataOutputStream records = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dir.resolve("records.bin")), 1 << 16));
+                 DataOutputStream credit_out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(credits_file), 1 << 16))) {
+                for (String file : sources) {
+                    if (!file.endsWith(".csv")) continue;
+                    long[] bounds;
+                    try {
+                        bounds = record_chunks(file);
+                    } catch (UncheckedIOException e) {
+                        System.out.println("Error reading " + file + ": " + e.getCause().getMessage());
+                        continue;
+                    }
+                    for (int chunk = 0; chunk + 1 < bounds.length; chunk++) {
+                        for (String[] record : parse_media_chunk(file, bounds[chunk], bounds[chunk + 1], chunk == 0)) {
+                            Media m = media_from_fields(record); // Detached: it only lives until its record is written
+                            int first_credit = (int) credits, count = 0;
+                            for (String actor : m.cast().split(",")) {
+                                String key = cast_index.normalize(actor);
+                                if (key.isEmpty()) continue;
+                                Integer id = actor_ids.get(key);
+                                if (id == null) {
+                                    id = actor_keys.size();
+                                    actor_ids.put(key, id);
+                                    actor_keys.add(key);
+                                    if (id == actor_refs.length) actor_refs = Arrays.copyOf(actor_refs, id * 2);
+                                    actor_refs[id] = strings.write(actor.trim());
+                                }
+                                credit_out.writeInt(id);
+                                count++;
+                            }
+                            credits += count;
+                            records.writeInt(types.encode(m.type()));
+                            records.writeInt(platforms.encode(m.platform()));
+                            records.writeInt(genres.encode(m.genre()));
+                            records.writeInt(release_dates.encode(m.release_date()));
+                            records.writeInt(seasons.encode(m.season()));
+                            records.writeInt(release_year(m.release_date()));
+                            records.writeLong(strings.write(m.name));
+                            records.writeLong(strings.write(m.description));
+                            records.writeLong(strings.write(m.cast()));
+                            records.writeLong(strings.write(m.url));
+                            records.writeInt(first_credit);
+                            records.writeInt(count);
+                            rows++;
+                        }
+                    }
+                }
+                // Actors are numbered in normalized-name order, so lookups and prefix completions are binary searches
+                String[] sorted = actor_keys.toArray(new String[0]);
+                Arrays.sort(sorted);
+                try (DataOutputStream actors = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dir.resolve("actors.bin")), 1 << 16))) {
+                    for (String key : sorted) {
+                        actors.writeLong(strings.write(key));
+                        actors.writeLong(actor_refs[actor_ids.get(key)]);
+                    }
+                }
+                actor_count = sorted.length;
+                int[] renumber = new int[sorted.length];
+                for (int a = 0; a < sorted.length; a++) renumber[actor_ids.get(sorted[a])] = a;
+                actor_ids = null;
+                actor_keys = null;
+                records.flush();
+                credit_out.flush();
+                strings.flush();
+                if (types.size() > 255) throw new IOException("more than 255 media types; is the Type column misaligned?");
+                mapped record_map = mapped.open(dir.resolve("records.bin"));
+                mapped string_map = mapped.open(dir.resolve("strings.bin"));
+                write_name_order(dir, rows, types.size(), record_map, string_map);
+                write_cast_postings(dir, rows, renumber, credits, record_map, mapped.open(credits_file));
+                write_listings(dir, rows, platforms.size(), types.size(), record_map);
+            }
+            Files.deleteIfExists(credits_file);
+            try (DataOutputStream meta = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(dir.resolve("meta.bin"))))) {
+                meta.writeInt(MAGIC);
+                meta.writeInt(VERSION);
+                meta.writeInt(rows);
+                meta.writeInt(actor_count);
+                for (media_store.dictionary d : new media_store.dictionary[]{types, platforms, genres, release_dates, seasons}) {
+                    meta.writeInt(d.size());
+                    for (int i = 0; i < d.size(); i++) catalog_snapshot.write_string(meta, d.decode(i));
+                }
+                catalog_snapshot.write_sources(meta, sources);
+            }
+            System.out.printf("Built off-heap catalog: %d titles, %d credits in %.1f ms%n", rows, credits, (System.nanoTime() - start) / 1e6);
+        }
+
+        // Helper method to write names.bin: row IDs sorted by type, then by lowercased UTF-8 name, then by row, with
+        // name_start.bin holding where each type's range begins. Each title gets a long key packing its type code and
+        // leading name bytes above its row ID; runs of equal leading bytes are then ordered by their full names
+        private static void write_name_order(Path dir, int rows, int types, mapped records, mapped strings) throws IOException {
+            int row_bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(1, rows - 1)));
+            int prefix_bytes = (64 - row_bits) / 8; // The first of them holds the type code (dictionaries stay tiny)
+            long row_mask = -1L >>> (64 - row_bits);
+            long[] keys = new long[rows];
+            int[] start = new int[types + 1];
+            for (int row = 0; row < rows; row++) {
+                byte[] name = name_key(records, strings, row);
+                int type = records.get_int((long) row * RECORD_BYTES + TYPE);
+                start[type + 1]++;
+                long prefix = type;
+                for (int b = 0; b + 1 < prefix_bytes; b++) prefix = prefix << 8 | (b < name.length ? name[b] & 0xFF : 0);
+                keys[row] = (prefix << (64 - 8 * prefix_bytes) | row) ^ Long.MIN_VALUE; // Flipped sign bit: unsigned order
+            }
+            Arrays.parallelSort(keys);
+            for (int i = 0; i < rows; i++) keys[i] ^= Long.MIN_VALUE;
+            mapped out = new mapped(dir.resolve("names.bin"), 4L * rows, true);
+            for (int i = 0; i < rows; ) {
+                int end = i + 1;
+                while (end < rows && (keys[end] & ~row_mask) == (keys[i] & ~row_mask)) end++;
+                if (end - i > 1) {
+                    // Same leading bytes: order the run by full name, then by row
+                    int from = i;
+                    Integer[] run = new Integer[end - i];
+                    byte[][] names = new byte[end - i][];
+                    for (int j = 0; j < run.length; j++) {
+                        run[j] = (int) (keys[i + j] & row_mask);
+                        names[j] = name_key(records, strings, run[j]);
+                    }
+                    Integer[] order = new Integer[run.length];
+                    for (int j = 0; j < order.length; j++) order[j] = j;
+                    Arrays.sort(order, (a, b) -> {
+                        int c = Arrays.compareUnsigned(names[a], names[b]);
+                        return c != 0 ? c : Integer.compare(run[a], run[b]);
+                    });
+                    for (int j = 0; j < order.length; j++) out.put_int(4L * (from + j), run[order[j]]);
+                } else {
+                    out.put_int(4L * i, (int) (keys[i] & row_mask));
+                }
+                i = end;
+            }
+            for (int t = 0; t < types; t++) start[t + 1] += start[t];
+            write_ints(dir.resolve("name_start.bin"), start);
+        }
+
+        // Helper method to return a record's name lowercased as UTF-8 while building
+        private static byte[] name_key(mapped records, mapped strings, int row) {
+            return strings.get_string(records.get_long((long) row * RECORD_BYTES + NAME)).toLowerCase().getBytes(StandardCharsets.UTF_8);
+        }
+
+        // Helper method to write the actor to title postings (cast_start.bin, cast_rows.bin) with a counting sort over
+        // the credits; an actor credited twice on one title is listed once
+        private static void write_cast_postings(Path dir, int rows, int[] renumber, long credits, mapped records, mapped credit_ids) throws IOException {
+            int actors = renumber.length;
+            int[] start = new int[actors + 1];
+            for (int pass = 0; pass < 2; pass++) {
+                mapped out = pass == 0 ? null : new mapped(dir.resolve("cast_rows.bin"), 4L * start[actors], true);
+                int[] fill = pass == 0 ? null : Arrays.copyOf(start, actors);
+                for (int row = 0; row < rows; row++) {
+                    long first = records.get_int((long) row * RECORD_BYTES + CREDITS);
+                    int count = records.get_int((long) row * RECORD_BYTES + CREDIT_COUNT);
+                    for (int i = 0; i < count; i++) {
+                        int actor = renumber[credit_ids.get_int(4 * (first + i))];
+                        boolean duplicate = false;
+                        for (int j = 0; j < i && !duplicate; j++) duplicate = renumber[credit_ids.get_int(4 * (first + j))] == actor;
+                        if (duplicate) continue;
+                        if (pass == 0) start[actor + 1]++;
+                        else out.put_int(4L * fill[actor]++, row);
+                    }
+                }
+                if (pass == 0) for (int a = 0; a < actors; a++) start[a + 1] += start[a];
+            }
+            write_ints(dir.resolve("cast_start.bin"), start);
+        }
+
+        // Helper method to write the per platform and type row lists (listing_start.bin, listing_rows.bin); listing
+        // p * types + t holds the rows of type t on platform p in catalog order
+        private static void write_listings(Path dir, int rows, int platforms, int types, mapped records) throws IOException {
+            int[] start = new int[platforms * types + 1];
+            for (int row = 0; row < rows; row++) start[listing(records, row, types) + 1]++;
+            for (int l = 0; l + 1 < start.length; l++) start[l + 1] += start[l];
+            int[] fill = Arrays.copyOf(start, start.length - 1);
+            mapped out = new mapped(dir.resolve("listing_rows.bin"), 4L * rows, true);
+            for (int row = 0; row < rows; row++) out.put_int(4L * fill[listing(records, row, types)]++, row);
+            write_ints(dir.resolve("listing_start.bin"), start);
+        }
+
+        // Helper method to return a record's listing number
+        private static int listing(mapped records, int row, int types) {
+            return records.get_int((long) row * RECORD_BYTES + PLATFORM) * types + records.get_int((long) row * RECORD_BYTES + TYPE);
+        }
+
+        // Helper method to write an int array to a file
+        private static void write_ints(Path path, int[] values) throws IOException {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+                for (int value : values) out.writeInt(value);
+            }
+        }
+    }
+
+    // Class to persist search frequencies as an append-only delta log written behind the user's back;
+    // the log is periodically compacted into search_frequency.csv
+    static class search_freq_log {
+        static final String CSV_FILE = "search_frequency.csv";
+        static final String LOG_FILE = "search_frequency.log";
+        // When appended batches are forced to disk: after every batch, at most once per interval, or left to the OS
+        enum fsync_policy { BATCH, INTERVAL, NONE }
+        static final fsync_policy FSYNC = parse_fsync(System.getProperty("bingebuddy.fsync", "BATCH"));
+        // How long the writer waits to gather a batch, and the largest batch it writes at once
+        static final long FLUSH_INTERVAL_MS = 200;
+        static final int MAX_BATCH = 1024;
+        // Number of log records after which the log is folded into the CSV snapshot
+        static final int COMPACT_THRESHOLD = 10_000;
+
+        // Helper method to read the fsync policy, falling back to BATCH with a warning on an unknown value
+        private static fsync_policy parse_fsync(String value) {
+            try {
+                return fsync_policy.valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.out.println("Warning: unknown -Dbingebuddy.fsync value '" + value + "', using BATCH (choices: BATCH, INTERVAL, NONE)");
+                return fsync_policy.BATCH;
+            }
+        }
+
+        // Searches waiting to be written; STOP tells the writer to finish
+        private static final BlockingQueue<String> pending = new LinkedBlockingQueue<>();
+        private static final String STOP = new String("STOP");
+        // Counts covered by the CSV snapshot plus the log, owned by the writer thread
+        private static final Map<String, Integer> persisted = new HashMap<>();
+        private static Thread writer;
+        private static FileOutputStream log_stream;
+        private static Writer log_out;
+        private static int log_records = 0;
+        private static long last_sync = 0;
+
+        // Method to apply the log's deltas on top of counts loaded from the CSV snapshot; a log whose base
+        // checksum does not match the snapshot was already compacted into it and is ignored
+        static void replay(Map<String, Integer> counts) {
+            File log = new File(LOG_FILE);
+            if (!log.exists()) return;
+            try (BufferedReader br = new BufferedReader(new FileReader(log))) {
+                String header = br.readLine();
+                if (header == null || !header.equals(base_line())) return;
+                String line;
+                while ((line = br.readLine()) != null) {
+                    // A torn final line from a crash has no closing quote or number and is skipped
+                    Map.Entry<String, Integer> record = parse_record(line);
+                    if (record == null) continue;
+                    counts.merge(record.getKey(), record.getValue(), Integer::sum);
+                    log_records++;
+                }
+            } catch (IOException e) {
+                System.out.println("Error replaying search frequency log: " + e.getMessage());
+            }
+        }
+
+        // Method to parse one "word",count record as the log and the CSV snapshot write it (quotes in the word are
+        // doubled); returns null for a torn or malformed line
+        static Map.Entry<String, Integer> parse_record(String line) {
+            int comma = line.lastIndexOf(',');
+            if (comma < 2 || !line.startsWith("\"") || line.charAt(comma - 1) != '"') return null;
+            try {
+                int count = Integer.parseInt(line.substring(comma + 1).trim());
+                return new AbstractMap.SimpleEntry<>(line.substring(1, comma - 1).replace("\"\"", "\""), count);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        // Method to start the background writer from the counts loaded at startup
+        static void start(Map<String, Integer> counts) {
+            persisted.putAll(counts);
+            try {
+                boolean valid = log_records > 0 || base_line().equals(first_line(new File(LOG_FILE)));
+                open_log(!valid);
+            } catch (IOException e) {
+                System.out.println("Error opening search frequency log: " + e.getMessage());
+                return;
+            }
+            writer = new Thread(search_freq_log::run, "search-freq-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        // Method to record one search; only enqueues, so the caller never waits on disk I/O
+        static void append(String word) {
+            if (writer != null) pending.add(word);
+        }
+
+        // Method to flush outstanding searches, compact the log and stop the writer
+        static void close() {
+            if (writer == null) return;
+            pending.add(STOP);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+
+        // Writer loop: gather searches into batches, append one aggregated record per word, sync per policy
+        private static void run() {
+            boolean stopping = false;
+            List<String> batch = new ArrayList<>();
+            while (!stopping) {
+                try {
+                    String first = pending.poll(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        sync(false);
+                        continue;
+                    }
+                    batch.clear();
+                    batch.add(first);
+                    pending.drainTo(batch, MAX_BATCH - 1);
+                    Map<String, Integer> deltas = new LinkedHashMap<>();
+                    for (String word : batch) {
+                        if (word == STOP) stopping = true;
+                        else deltas.merge(word, 1, Integer::sum);
+                    }
+                    for (Map.Entry<String, Integer> entry : deltas.entrySet()) {
+                        log_out.write("\"" + entry.getKey().replace("\"", "\"\"") + "\"," + entry.getValue() + "\n");
+                        persisted.merge(entry.getKey(), entry.getValue(), Integer::sum);
+                        log_records++;
+                    }
+                    log_out.flush();
+                    sync(!deltas.isEmpty() && FSYNC == fsync_policy.BATCH);
+                    if (log_records >= COMPACT_THRESHOLD) compact();
+                } catch (InterruptedException e) {
+                    stopping = true;
+                } catch (IOException e) {
+                    System.out.println("Error writing search frequency log: " + e.getMessage());
+                }
+            }
+            try {
+                if (log_records > 0) compact();
+                log_out.close();
+            } catch (IOException e) {
+                System.out.println("Error compacting search frequency log: " + e.getMessage());
+            }
+        }
+
+        // Helper method to force the log to disk now, or when the interval policy's period has elapsed
+        private static void sync(boolean now) throws IOException {
+            long time = System.currentTimeMillis();
+            if (now || (FSYNC == fsync_policy.INTERVAL && time - last_sync >= 1000)) {
+                log_stream.getChannel().force(false);
+                last_sync = time;
+            }
+        }
+
+        // Method to fold the log into a fresh CSV snapshot, then restart the log on top of it;
+        // a crash between the two steps leaves a log whose base no longer matches, so it is not replayed twice
+        private static void compact() throws IOException {
+            if (!save_search_freq_csv(persisted)) return; // Keep the log if the snapshot could not be written
+            log_out.close();
+            open_log(true);
+            log_records = 0;
+        }
+
+        // Helper method to open the log for appending, or truncate it and write a header naming its base snapshot
+        private static void open_log(boolean truncate) throws IOException {
+            log_stream = new FileOutputStream(LOG_FILE, !truncate);
+            log_out = new BufferedWriter(new OutputStreamWriter(log_stream, StandardCharsets.UTF_8));
+            if (truncate) {
+                log_out.write(base_line() + "\n");
+                log_out.flush();
+                log_stream.getChannel().force(false);
+            }
+        }
+
+        // Helper method to build the header line tying the log to the current CSV snapshot's checksum
+        private static String base_line() throws IOException {
+            File csv = new File(CSV_FILE);
+            return "#base," + (csv.exists() ? catalog_snapshot.file_crc(csv) : 0);
+        }
+
+        // Helper method to read the first line of a file, or null if it is missing or empty
+        private static String first_line(File file) throws IOException {
+            if (!file.exists()) return null;
+            try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+                return br.readLine();
+            }
+        }
+    }
+
+    // Class to serve the catalog's search features as JSON over HTTP
+    static class query_server {
+        // Method to start the server; each request runs on its own virtual thread when the JVM supports them
+        static HttpServer start(int port) throws IOException {
+            HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+            for (Map.Entry<String, endpoint> route : routes().entrySet()) {
+                server.createContext(route.getKey(), ex -> handle(ex, route.getValue()));
+            }
+            server.setExecutor(request_executor());
+            server.start();
+            return server;
+        }
+
+        // Method to map each endpoint path to its handler; shared by the HTTP server and batch mode
+        static Map<String, endpoint> routes() {
+            Map<String, endpoint> routes = new LinkedHashMap<>();
+            routes.put("/suggest/name", q -> {
+                String type = media_type(q);
+                return json_strings(suggest(trie, required(q, "prefix"), type, q));
+            });
+            routes.put("/suggest/cast", q -> json_strings(suggest(cast_trie, required(q, "prefix"), null, q)));
+            routes.put("/search/genre", q -> {
+                String genre = required(q, "genre");
+                if (!is_valid_genre(genre)) {
+                    return "{\"results\":[],\"did_you_mean\":" + json_string(find_nearest_genre(genre)) + "}";
+                }
+                return "{\"results\":" + json_media(genre_media(genre, media_type(q))) + "}";
+            });
+            routes.put("/search/word", q -> {
+                StringBuilder json = new StringBuilder("[");
+                for (Map.Entry<Media, Integer> entry : word_search(required(q, "q"), media_type(q))) {
+                    if (json.length() > 1) json.append(',');
+                    json.append("{\"frequency\":").append(entry.getValue()).append(",\"media\":");
+                    append_media(json, entry.getKey());
+                    json.append('}');
+                }
+                return json.append(']').toString();
+            });
+            routes.put("/search/platform", q ->
+                    json_media(platform_media(required(q, "platform"), media_type(q))));
+            routes.put("/search/cast", q -> json_media(cast_index.search(required(q, "name"))));
+            routes.put("/plans", q -> {
+                String sort = q.get("sort");
+                String platform = q.get("platform");
+                List<subscription_plan> result;
+                if (q.containsKey("max_price") || q.containsKey("min_resolution") || q.containsKey("min_streams")) {
+                    // Range query over the price index; it is cheapest first, so reverse it for sort=desc
+                    result = plan_index.query(q.containsKey("max_price") ? price_param(q, "max_price") : -1,
+                            resolution_param(q), int_param(q, "min_streams", 0), platform);
+                    if (sort != null && sort.equalsIgnoreCase("desc")) Collections.reverse(result);
+                } else {
+                    result = sort == null ? new ArrayList<>(plans) : sorted_plans(!sort.equalsIgnoreCase("desc"));
+                    if (platform != null) result.removeIf(p -> !p.get_platform().equalsIgnoreCase(platform));
+                }
+                return json_plans(result);
+            });
+            routes.put("/stats/cache", q -> {
+                synchronized (query_cache.class) {
+                    return String.format("{\"hits\":%d,\"misses\":%d,\"evictions\":%d,\"invalidations\":%d,\"catalog_version\":%d}",
+                            query_cache.hits, query_cache.misses, query_cache.evictions, query_cache.invalidations, query_cache.version());
+                }
+            });
+            routes.put("/similar", q -> {
+                List<Media> matches = facet_index.named(required(q, "name"), media_type(q));
+                if (matches.isEmpty()) throw new bad_request("No title named " + q.get("name"));
+                return json_media(similar_index.similar(matches.get(0), int_param(q, "k", SIMILAR_SHOWN)));
+            });
+            routes.put("/watch", q -> {
+                List<watch_index.work> works = watch_index.named(required(q, "name"), q.containsKey("type") ? media_type(q) : null);
+                if (works.isEmpty()) throw new bad_request("No title named " + q.get("name"));
+                return json_works(works);
+            });
+            routes.put("/exclusive", q ->
+                    json_works(watch_index.exclusive(required(q, "platform"), q.containsKey("type") ? media_type(q) : null)));
+            routes.put("/metrics", q -> metrics.json());
+            routes.put("/scatter", q -> {
+                String op = required(q, "op");
+                if (!shard_coordinator.OPS.contains(op)) throw new bad_request("Query parameter op must be one of " + shard_coordinator.OPS);
+                shard_coordinator.result result = shard_coordinator.query(op, media_type(q), required(q, "q"), int_param(q, "k", Trie.TOP_K));
+                List<Media> media = new ArrayList<>();
+                for (shard_coordinator.hit h : result.hits) media.add(h.media);
+                return String.format(Locale.ROOT, "{\"shards\":%d,\"timed_out\":%s,\"failed\":%s,\"ms\":%.3f,\"results\":%s}",
+                        result.shards, json_strings(result.timed_out), json_strings(result.failed), result.ms, json_media(media));
+            });
+            routes.put("/costars", q -> {
+                String name = costar_graph.name(required(q, "name"));
+                if (name == null) throw new bad_request("No cast member named " + q.get("name"));
+                StringBuilder json = new StringBuilder("[");
+                for (Map.Entry<String, Integer> e : costar_graph.top_costars(name, int_param(q, "k", costar_graph.TOP_COSTARS))) {
+                    if (json.length() > 1) json.append(',');
+                    json.append("{\"name\":").append(json_string(e.getKey())).append(",\"titles\":").append(e.getValue()).append('}');
+                }
+                return json.append(']').toString();
+            });
+            routes.put("/path", q -> {
+                for (String param : new String[]{"from", "to"}) {
+                    if (costar_graph.name(required(q, param)) == null) throw new bad_request("No cast member named " + q.get(param));
+                }
+                costar_graph.connection connection = costar_graph.path(q.get("from"), q.get("to"));
+                if (connection == null) return "{\"hops\":null,\"actors\":[],\"titles\":[]}";
+                return "{\"hops\":" + connection.hops() + ",\"actors\":" + json_strings(connection.actors)
+                        + ",\"titles\":" + json_media(connection.titles) + "}";
+            });
+            routes.put("/plans/bundle", q -> {
+                List<String> items = new ArrayList<>();
+                for (String item : required(q, "cover").split(";")) if (!item.trim().isEmpty()) items.add(item.trim());
+                plan_index.bundle bundle = plan_index.cheapest_bundle(items, resolution_param(q), int_param(q, "min_streams", 0));
+                StringBuilder json = new StringBuilder("{\"total_cents\":").append(bundle.total_cents)
+                        .append(",\"plans\":").append(json_plans(bundle.plans)).append(",\"uncovered\":[");
+                for (int i = 0; i < bundle.uncovered.size(); i++) {
+                    if (i > 0) json.append(',');
+                    json.append(json_string(bundle.uncovered.get(i)));
+                }
+                return json.append("]}").toString();
+            });
+            return routes;
+        }
+
+        // Helper method to run an autocomplete request; fuzzy=N allows up to N typos (default: fall back to
+        // typo-tolerant matching only when there are no exact completions)
+        private static List<String> suggest(Trie source, String prefix, String type, Map<String, String> query) {
+            int k = int_param(query, "k", Trie.TOP_K);
+            if (query.containsKey("fuzzy")) return source.suggest_fuzzy(prefix, type, k, int_param(query, "fuzzy", 1));
+            List<String> exact = source.suggest(prefix, type, k);
+            return exact.isEmpty() ? source.suggest_fuzzy(prefix, type, k, typo_budget(prefix)) : exact;
+        }
+
+        // Helper method to create a virtual-thread-per-request executor on JDK 21+, or a cached pool on older JDKs
+        static ExecutorService request_executor() {
+            ExecutorService virtual = virtual_executor();
+            return virtual != null ? virtual : Executors.newCachedThreadPool();
+        }
+
+        // Helper method to create a virtual-thread-per-task executor, or return null when the JDK has none (before 21)
+        static ExecutorService virtual_executor() {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                return null;
+            }
+        }
+
+        // Interface for an endpoint that turns query parameters into a JSON body
+        interface endpoint {
+            String respond(Map<String, String> query);
+        }
+
+        // Exception for a request the client got wrong, reported as HTTP 400
+        static class bad_request extends RuntimeException {
+            private static final long serialVersionUID = 1L;
+
+            bad_request(String message) {
+                super(message);
+            }
+        }
+
+        // Method to run an endpoint against the catalog, holding off file reloads while it reads
+        static String respond(endpoint endpoint, Map<String, String> query) {
+            catalog_reloader.lock.readLock().lock();
+            try {
+                return endpoint.respond(query);
+            } finally {
+                catalog_reloader.lock.readLock().unlock();
+            }
+        }
+
+        // Helper method to run an endpoint and write its JSON response with the matching status code
+        private static void handle(HttpExchange exchange, endpoint endpoint) throws IOException {
+            long started = metrics.start();
+            int status = 200;
+            String body;
+            try {
+                if (!exchange.getRequestMethod().equals("GET")) {
+                    status = 405;
+                    body = "{\"error\":\"Only GET is supported\"}";
+                } else {
+                    body = respond(endpoint, parse_query(exchange.getRequestURI().getRawQuery()));
+                }
+            } catch (bad_request e) {
+                status = 400;
+                body = "{\"error\":" + json_string(e.getMessage()) + "}";
+            } catch (RuntimeException e) {
+                status = 500;
+                body = "{\"error\":" + json_string(String.valueOf(e.getMessage())) + "}";
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+            metrics.time("http_request", started);
+            metrics.count(status == 200 ? "http_requests_ok" : "http_requests_failed");
+        }
+
+        // Helper method to decode a URL query string into a parameter map
+        static Map<String, String> parse_query(String raw) {
+            Map<String, String> params = new HashMap<>();
+            if (raw == null || raw.isEmpty()) return params;
+            for (String pair : raw.split("&")) {
+                int eq = pair.indexOf('=');
+                String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+                String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+                params.put(key, value);
+            }
+            return params;
+        }
+
+        // Helper method to fetch a parameter that must be present
+        private static String required(Map<String, String> query, String name) {
+            String value = query.get(name);
+            if (value == null) throw new bad_request("Missing query parameter: " + name);
+            return value;
+        }
+
+        // Helper method to read an integer parameter with a default
+        private static int int_param(Map<String, String> query, String name, int fallback) {
+            String value = query.get(name);
+            if (value == null) return fallback;
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new bad_request("Query parameter " + name + " must be a number");
+            }
+        }
+
+        // Helper method to read a price parameter such as 15 or 14.99 as cents
+        private static int price_param(Map<String, String> query, String name) {
+            int cents = subscription_plan.parse_cents(query.get(name));
+            if (cents == Integer.MAX_VALUE) throw new bad_request("Query parameter " + name + " must be a price");
+            return cents;
+        }
+
+        // Helper method to read min_resolution (720p, 1080p, 4K, 4K HDR) as a resolution tier, 0 when absent
+        private static int resolution_param(Map<String, String> query) {
+            String value = query.get("min_resolution");
+            if (value == null) return 0;
+            int tier = subscription_plan.resolution_tier(value);
+            if (tier == 0) throw new bad_request("Query parameter min_resolution must be 720p, 1080p, 4K or 4K HDR");
+            return tier;
+        }
+
+        // Helper method to serialize subscription plans as a JSON array
+        private static String json_plans(List<subscription_plan> list) {
+            StringBuilder json = new StringBuilder("[");
+            for (subscription_plan p : list) {
+                if (json.length() > 1) json.append(',');
+                json.append(json_plan(p));
+            }
+            return json.append(']').toString();
+        }
+
+        // Helper method to serialize one subscription plan as a JSON object
+        private static String json_plan(subscription_plan p) {
+            return "{\"name\":" + json_string(p.name)
+                    + ",\"price\":" + json_string(p.price)
+                    + ",\"resolution\":" + json_string(p.resolution)
+                    + ",\"devices\":" + json_string(p.devices)
+                    + ",\"concurrent_devices\":" + json_string(p.concurrent_devices)
+                    + ",\"link\":" + json_string(p.link)
+                    + ",\"platform\":" + json_string(p.platform) + '}';
+        }
+
+        // Helper method to encode consolidated titles with their platforms, links and cheapest plan
+        private static String json_works(List<watch_index.work> works) {
+            Map<String, subscription_plan> cheapest = plan_index.cheapest_plans(0, 0);
+            StringBuilder json = new StringBuilder("[");
+            for (watch_index.work w : works) {
+                if (json.length() > 1) json.append(',');
+                json.append("{\"type\":").append(json_string(w.type))
+                        .append(",\"name\":").append(json_string(w.name))
+                        .append(",\"year\":").append(w.year == 0 ? "null" : Integer.toString(w.year))
+                        .append(",\"listings\":[");
+                boolean first = true;
+                for (Map.Entry<String, String> listing : w.availability().entrySet()) {
+                    if (!first) json.append(',');
+                    first = false;
+                    json.append("{\"platform\":").append(json_string(listing.getKey()))
+                            .append(",\"url\":").append(json_string(listing.getValue())).append('}');
+                }
+                subscription_plan plan = w.cheapest_plan(cheapest);
+                json.append("],\"cheapest_plan\":").append(plan == null ? "null" : json_plan(plan)).append('}');
+            }
+            return json.append(']').toString();
+        }
+
+        // Helper method to map the type parameter (movie or tv) to a media type
+        private static String media_type(Map<String, String> query) {
+            String type = query.getOrDefault("type", "movie").toLowerCase();
+            if (type.equals("movie")) return "Movie";
+            if (type.equals("tv") || type.equals("tv show")) return "TV Show";
+            throw new bad_request("Query parameter type must be movie or tv");
+        }
+
+        // Method to encode a list of strings as a JSON array
+        static String json_strings(List<String> values) {
+            StringBuilder json = new StringBuilder("[");
+            for (String value : values) {
+                if (json.length() > 1) json.append(',');
+                json.append(json_string(value));
+            }
+            return json.append(']').toString();
+        }
+
+        // Method to encode a list of media items as a JSON array
+        static String json_media(List<Media> media) {
+            StringBuilder json = new StringBuilder("[");
+            for (Media m : media) {
+                if (json.length() > 1) json.append(',');
+                append_media(json, m);
+            }
+            return json.append(']').toString();
+        }
+
+        // Method to append one media item as a JSON object
+        static void append_media(StringBuilder json, Media m) {
+            json.append("{\"id\":").append(m.id)
+                    .append(",\"type\":").append(json_string(m.type()))
+                    .append(",\"name\":").append(json_string(m.name))
+                    .append(",\"description\":").append(json_string(m.description))
+                    .append(",\"genre\":").append(json_string(m.genre()))
+                    .append(",\"release\":").append(json_string(m.release_date()))
+                    .append(",\"season\":").append(json_string(m.season()))
+                    .append(",\"cast\":").append(json_string(m.cast()))
+                    .append(",\"platform\":").append(json_string(m.platform()))
+                    .append(",\"url\":").append(json_string(m.url)).append('}');
+        }
+
+        // Method to encode a string as a JSON string literal
+        static String json_string(String value) {
+            if (value == null) return "null";
+            StringBuilder out = new StringBuilder(value.length() + 2).append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"': out.append("\\\""); break;
+                    case '\\': out.append("\\\\"); break;
+                    case '\n': out.append("\\n"); break;
+                    case '\r': out.append("\\r"); break;
+                    case '\t': out.append("\\t"); break;
+                    default:
+                        if (c < 0x20) out.append(String.format("\\u%04x", (int) c));
+                        else out.append(c);
+                }
+            }
+            return out.append('"').toString();
+        }
+    }
+
+    // Class to run typed queries from a file or stdin without the menu, writing one JSON line per query in input
+    // order. A query is an endpoint path such as /search/word?q=love&type=tv, or a short form "<kind>[:tv] <text>"
+    static class batch_runner {
+        // Maximum number of queries in flight; results are written in input order as the oldest one completes
+        static final int WINDOW = Integer.getInteger("bingebuddy.batch.window", 1024);
+        // Worker threads when the JDK has no virtual threads
+        static final int THREADS = Integer.getInteger("bingebuddy.batch.threads", Runtime.getRuntime().availableProcessors());
+        // Short query kinds and the endpoint and parameter each one maps to
+        static final Map<String, String[]> SHORT_FORMS = Map.of(
+                "name", new String[]{"/suggest/name", "prefix"},
+                "cast", new String[]{"/search/cast", "name"},
+                "genre", new String[]{"/search/genre", "genre"},
+                "word", new String[]{"/search/word", "q"},
+                "platform", new String[]{"/search/platform", "platform"},
+                "plans", new String[]{"/plans", "platform"},
+                "bundle", new String[]{"/plans/bundle", "cover"},
+                "watch", new String[]{"/watch", "name"},
+                "exclusive", new String[]{"/exclusive", "platform"});
+
+        // Class to hold one finished query: its JSON line and how long it took
+        private static class outcome {
+            final String json;
+            final long nanos;
+            final boolean failed;
+
+            outcome(String json, long nanos, boolean failed) {
+                this.json = json;
+                this.nanos = nanos;
+                this.failed = failed;
+            }
+        }
+
+        // Method to run every query in the source file ("-" for stdin), write the results to out and print a summary
+        static void run(String source, PrintStream out) {
+            try (BufferedReader in = source.equals("-")
+                    ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                    : Files.newBufferedReader(Paths.get(source), StandardCharsets.UTF_8)) {
+                System.out.println(run(in, out));
+            } catch (IOException e) {
+                System.out.println("Error reading batch queries: " + e.getMessage());
+            }
+        }
+
+        // Class to hold the totals of one batch run: query count, failures, wall time and sorted latencies
+        static class summary {
+            final int count, failed;
+            final double seconds;
+            final long[] latencies;
+            final String workers;
+
+            summary(int count, int failed, double seconds, long[] latencies, String workers) {
+                this.count = count;
+                this.failed = failed;
+                this.seconds = seconds;
+                this.latencies = latencies;
+                this.workers = workers;
+            }
+
+            // Method to return the throughput in queries per second
+            double rate() {
+                return count / Math.max(seconds, 1e-9);
+            }
+
+            // Method to return the nearest-rank latency percentile in milliseconds
+            double percentile(int p) {
+                return batch_runner.percentile(latencies, count, p);
+            }
+
+            @Override
+            public String toString() {
+                return String.format("Batch: %d queries (%d failed) in %.1f ms, %.0f queries/s on %s; latency p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, max %.3f ms",
+                        count, failed, seconds * 1e3, rate(), workers, percentile(50), percentile(90), percentile(99), percentile(100));
+            }
+        }
+
+        // Method to run the queries read from in concurrently, streaming the results to out in input order
+        static summary run(BufferedReader in, PrintStream out) throws IOException {
+            return run(in, out, WINDOW);
+        }
+
+        // Method to run the queries with at most window of them in flight (and holding their results)
+        static summary run(BufferedReader in, PrintStream out, int window) throws IOException {
+            Map<String, query_server.endpoint> routes = query_server.routes();
+            ExecutorService virtual = query_server.virtual_executor();
+            ExecutorService pool = virtual != null ? virtual : Executors.newFixedThreadPool(Math.max(1, THREADS));
+            PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16));
+            Deque<Future<outcome>> in_flight = new ArrayDeque<>();
+            long[] latencies = new long[1024];
+            int count = 0, failed = 0, line_number = 0;
+            long start = System.nanoTime();
+            try {
+                String line;
+                while ((line = in.readLine()) != null || !in_flight.isEmpty()) {
+                    if (line != null) {
+                        line_number++;
+                        String query = line.trim();
+                        if (query.isEmpty() || query.startsWith("#")) continue; // Blank lines and comments
+                        final int number = line_number;
+                        in_flight.add(pool.submit(() -> execute(routes, number, query)));
+                        if (in_flight.size() < window) continue;
+                    }
+                    // Window full or input exhausted: write the oldest result, which keeps the output in input order
+                    outcome done = await(in_flight.poll());
+                    if (count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+                    latencies[count++] = done.nanos;
+                    if (done.failed) failed++;
+                    writer.println(done.json);
+                }
+            } finally {
+                writer.flush();
+                pool.shutdown();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Arrays.sort(latencies, 0, count);
+            return new summary(count, failed, seconds, latencies, virtual != null ? "virtual threads" : THREADS + " thread(s)");
+        }
+
+        // Helper method to run one query line and format its JSON line; failures become an error field
+        private static outcome execute(Map<String, query_server.endpoint> routes, int number, String query) {
+            long start = System.nanoTime();
+            String result = null, error = null;
+            try {
+                String path;
+                Map<String, String> params;
+                if (query.startsWith("/")) {
+                    int mark = query.indexOf('?');
+                    path = mark < 0 ? query : query.substring(0, mark);
+                    params = query_server.parse_query(mark < 0 ? null : query.substring(mark + 1));
+                } else {
+                    int space = query.indexOf(' ');
+                    String kind = (space < 0 ? query : query.substring(0, space)).toLowerCase();
+                    String text = space < 0 ? "" : query.substring(space + 1).trim();
+                    String type = null;
+                    if (kind.endsWith(":tv") || kind.endsWith(":movie")) {
+                        type = kind.substring(kind.indexOf(':') + 1);
+                        kind = kind.substring(0, kind.indexOf(':'));
+                    }
+                    String[] form = SHORT_FORMS.get(kind);
+                    if (form == null) throw new query_server.bad_request("Unknown query kind: " + kind);
+                    path = form[0];
+                    params = new HashMap<>();
+                    if (!text.isEmpty()) params.put(form[1], text);
+                    if (type != null) params.put("type", type);
+                }
+                query_server.endpoint endpoint = routes.get(path);
+                if (endpoint == null) throw new query_server.bad_request("Unknown endpoint: " + path);
+                result = query_server.respond(endpoint, params);
+            } catch (RuntimeException e) {
+                error = String.valueOf(e.getMessage());
+            }
+            long nanos = System.nanoTime() - start;
+            StringBuilder json = new StringBuilder(64 + (result == null ? 0 : result.length()));
+            json.append("{\"line\":").append(number)
+                    .append(",\"query\":").append(query_server.json_string(query))
+                    .append(",\"ms\":").append(String.format(Locale.ROOT, "%.3f", nanos / 1e6));
+            if (result != null) json.append(",\"result\":").append(result);
+            else json.append(",\"error\":").append(query_server.json_string(error));
+            return new outcome(json.append('}').toString(), nanos, result == null);
+        }
+
+        // Helper method to wait for a query; the worker catches query failures, so only interruption can escape
+        private static outcome await(Future<outcome> future) {
+            try {
+                return future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("Batch query did not complete: " + e.getMessage(), e);
+            }
+        }
+
+        // Helper method to return the nearest-rank percentile of the first count sorted latencies, in milliseconds
+        private static double percentile(long[] sorted, int count, int p) {
+            if (count == 0) return 0;
+            int rank = (int) Math.ceil(p / 100.0 * count);
+            return sorted[Math.max(0, Math.min(count, rank) - 1)] / 1e6;
+        }
+    }
+
+    // Class to write synthetic platform CSV files in the bundled schema, from a few rows to tens of millions, so
+    // loading, index builds and searches can be measured at production scale. Title and description words follow
+    // a Zipf distribution over a vocabulary that keeps growing with the catalog, cast members are drawn from a
+    // Zipfian popularity curve, genres, cast sizes and release years follow the bundled catalog, and a share of
+    // titles is listed on a second platform. The same row count and seed always produce the same files
+    static class catalog_generator {
+        // Platform files written: file name, platform name and link prefix
+        static final String[][] PLATFORMS = {
+                {"Netflix_Data.csv", "Netflix", "https://www.netflix.com/ca/title/"},
+                {"AmazonPrime_Data.csv", "Amazon Prime Video", "https://www.primevideo.com/detail/"},
+                {"AppleTV_Data.csv", "Apple TV+", "https://tv.apple.com/ca/"},
+                {"Crave_Data.csv", "Crave", "https://www.crave.ca/en/"}};
+        // Share of original titles that each platform receives
+        static final double[] PLATFORM_SHARE = {0.40, 0.20, 0.25, 0.15};
+        // Genres as spelled in the bundled catalog (including ones the genre correction maps to Others) and their weights
+        static final String[] GENRES = {"Drama", "Comedy", "Action", "Kids", "Thriller", "Documentary", "Animation", "Sci-Fi",
+                "Reality TV", "Romance", "Adventure", "Crime", "Sports", "Anime", "Horror", "Historical", "Fantasy", "Mystery", "Western"};
+        static final double[] GENRE_WEIGHTS = {67, 65, 63, 31, 25, 6, 6, 10, 4, 4, 4, 4, 3, 3, 2, 2, 2, 2, 1};
+        // Cast list lengths and their weights; most bundled titles credit three or ten people
+        static final int[] CAST_SIZES = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12};
+        static final double[] CAST_WEIGHTS = {18, 9, 156, 3, 5, 4, 5, 2, 2, 96, 2, 2};
+        // Most frequent words of the bundled descriptions, most frequent first; rarer words are made up from syllables
+        static final String[] COMMON_WORDS = ("the a and of to in his with an on her is as when for he their from they life this by "
+                + "family after world that she who at but up team one into new are all series must out it story about find young while "
+                + "can be save lives old true love year what long high drama more other two time have together back future will "
+                + "mysterious has him behind where friends former school finds most them star through race based become journey past "
+                + "against crime best earth secret down man fight off adventure elite get takes follows forces girl town own each help "
+                + "stars before father its comes murder group son woman join mission job small over no truth goes american learn "
+                + "single being turn crash top lost ever every big daughter everything brilliant remote island than himself work "
+                + "dangerous land way during years real first gets reality both personal humanity take comedy crew becomes make set "
+                + "deadly discover begins night head husband battle attack detective student start espionage challenges criminal "
+                + "government agency herself face learns only live city dead sets hospital late unexpected women soldier enters car "
+                + "try plan special heist mystery relationships stakes struggling career boy day five kingdom spy everyone winning "
+                + "office thriller game across trapped loss evil threatens fate chaos teams amid secrets follow sinister survive go "
+                + "protect turned could heart show faces yet road").split(" ");
+        // Syllables combined into the long tail of the vocabulary
+        static final String[] SYLLABLES = {"ka", "ro", "mi", "ten", "sha", "vel", "dor", "ia", "lun", "bra", "zek", "ol",
+                "mar", "quin", "tha", "ver", "sol", "en", "gri", "pa", "ost", "lo", "ny", "ark", "cel", "du", "fen", "hal", "jor", "wyn"};
+        // First and last names combined into cast members; combinations past the last one get a numeric suffix
+        static final String[] FIRST_NAMES = {"James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael", "Linda",
+                "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Daniel",
+                "Karen", "Matthew", "Nancy", "Anthony", "Lisa", "Mark", "Sandra", "Steven", "Ashley", "Paul", "Emily", "Andrew",
+                "Donna", "Kenji", "Priya", "Mateo", "Aisha", "Liam", "Chloe", "Omar", "Ingrid", "Diego", "Mei", "Noah", "Zoe",
+                "Arjun", "Lucia", "Hiro", "Amara", "Felix", "Sofia", "Ravi", "Elena", "Tariq", "Nora", "Jonas", "Yara", "Idris",
+                "Maya", "Oscar", "Leila", "Ethan", "Ava", "Samuel", "Grace"};
+        static final String[] LAST_NAMES = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis",
+                "Rodriguez", "Martinez", "Hernandez", "Lopez", "Wilson", "Anderson", "Taylor", "Moore", "Jackson", "Martin", "Lee",
+                "Thompson", "White", "Harris", "Clark", "Lewis", "Walker", "Hall", "Young", "King", "Wright", "Scott", "Green",
+                "Baker", "Tanaka", "Patel", "Silva", "Okafor", "Kim", "Nguyen", "Rossi", "Novak", "Haddad", "Cohen", "Larsen",
+                "Dubois", "Schmidt", "Kowalski", "Ivanova", "Sato", "Chen", "Singh", "Mensah", "Costa", "Ali", "Murphy", "Fischer",
+                "Reyes", "Park", "Khan", "Moreau", "Berg", "Wolf", "Stone", "Rivera", "Fox"};
+        // Share of titles also listed on a second platform (-Dbingebuddy.generate.duplicates)
+        static final double DUPLICATE_SHARE = Double.parseDouble(System.getProperty("bingebuddy.generate.duplicates", "0.1"));
+        // Zipf exponent of cast popularity; higher values concentrate credits on fewer people (-Dbingebuddy.generate.cast_skew)
+        static final double CAST_SKEW = Double.parseDouble(System.getProperty("bingebuddy.generate.cast_skew", "1.0"));
+        // Rank offset of the cast popularity curve (Zipf-Mandelbrot), which caps the busiest cast members at a few
+        // thousand credits in a catalog of millions instead of a share of every title
+        static final int CAST_OFFSET = 1000;
+        // Zipf exponent of word frequency in names and descriptions
+        static final double WORD_SKEW = 1.0;
+        // Seed used when none is given (-Dbingebuddy.generate.seed)
+        static final long SEED = Long.getLong("bingebuddy.generate.seed", 42L);
+
+        // Method to write a catalog of the given number of rows (duplicates included) into dir, returning the file paths
+        static String[] generate(long rows, String dir, long seed) throws IOException {
+            long start = System.nanoTime();
+            Files.createDirectories(Paths.get(dir));
+            Random random = new Random(seed);
+            // The vocabulary and the cast grow with the catalog, roughly like Heaps' law
+            int vocabulary = (int) Math.min(Integer.MAX_VALUE, Math.max(COMMON_WORDS.length * 4L, (long) (40 * Math.sqrt(rows))));
+            int actors = (int) Math.min(Integer.MAX_VALUE, Math.max(1000L, rows / 2));
+            String[] paths = new String[PLATFORMS.length];
+            BufferedWriter[] writers = new BufferedWriter[PLATFORMS.length];
+            long[] written = new long[PLATFORMS.length];
+            long titles = 0;
+            try {
+                for (int p = 0; p < PLATFORMS.length; p++) {
+                    paths[p] = Paths.get(dir, PLATFORMS[p][0]).toString();
+                    writers[p] = Files.newBufferedWriter(Paths.get(paths[p]), StandardCharsets.UTF_8);
+                    writers[p].write("Type,Name,Description,Genre,Release Date,Season,Cast,Platform,Link\n");
+                }
+                StringBuilder row = new StringBuilder(512);
+                for (long count = 0; count < rows; titles++) {
+                    String[] fields = title(random, titles, vocabulary, actors);
+                    int platform = pick(random, PLATFORM_SHARE);
+                    write_row(writers[platform], row, fields, platform, titles);
+                    written[platform]++;
+                    count++;
+                    // Some titles are licensed to a second platform with the same metadata and their own link
+                    if (count < rows && random.nextDouble() < DUPLICATE_SHARE) {
+                        int other = (platform + 1 + random.nextInt(PLATFORMS.length - 1)) % PLATFORMS.length;
+                        write_row(writers[other], row, fields, other, titles);
+                        written[other]++;
+                        count++;
+                    }
+                }
+            } finally {
+                for (BufferedWriter writer : writers) if (writer != null) writer.close();
+            }
+            System.out.printf("Generated %d rows (%d titles; %s) in %s in %.1f ms%n",
+                    rows, titles, summary(written), dir, (System.nanoTime() - start) / 1e6);
+            return paths;
+        }
+
+        // Helper method to describe the rows written per platform
+        private static String summary(long[] written) {
+            StringBuilder out = new StringBuilder();
+            for (int p = 0; p < written.length; p++) {
+                if (p > 0) out.append(", ");
+                out.append(PLATFORMS[p][1]).append(' ').append(written[p]);
+            }
+            return out.toString();
+        }
+
+        // Helper method to make up one title's fields: type, name, description, genre, year, season and cast
+        private static String[] title(Random random, long serial, int vocabulary, int actors) {
+            boolean show = random.nextDouble() < 0.54; // The bundled catalog is slightly more TV than film
+            StringBuilder name = new StringBuilder();
+            if (random.nextInt(4) == 0) name.append("The ");
+            int words = 1 + zipf(random, 3, 1.0, 0);
+            for (int w = 0; w < words; w++) {
+                if (w > 0) name.append(' ');
+                String word = word(zipf(random, vocabulary - 40, WORD_SKEW, 50) + 40); // Past the function words, with a flatter head
+                name.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+            }
+            // Popular names recur, so some titles are sequels and the rest carry a serial to stay distinct
+            if (!show && random.nextInt(10) == 0) name.append(' ').append(2 + random.nextInt(4));
+            else if (serial >= vocabulary) name.append(' ').append(Long.toString(serial, 36));
+            StringBuilder description = new StringBuilder();
+            int length = 12 + random.nextInt(41);
+            for (int w = 0; w < length; w++) {
+                String word = word(zipf(random, vocabulary, WORD_SKEW, 0));
+                if (w == 0) description.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+                else description.append(w % 11 == 10 ? ", " : " ").append(word);
+            }
+            description.append('.');
+            int year = 2025 - (int) (75 * Math.pow(random.nextDouble(), 3)); // Mostly recent releases
+            String season = "-";
+            if (show) {
+                int seasons = 1 + zipf(random, 10, 1.5, 0);
+                season = seasons + (seasons == 1 ? " Season" : " Seasons");
+            }
+            StringBuilder cast = new StringBuilder();
+            int size = CAST_SIZES[pick(random, CAST_WEIGHTS)];
+            for (int c = 0; c < size; c++) {
+                if (c > 0) cast.append(", ");
+                cast.append(actor(zipf(random, actors, CAST_SKEW, CAST_OFFSET)));
+            }
+            return new String[]{show ? "TV Show" : "Movie", name.toString(), description.toString(),
+                    GENRES[pick(random, GENRE_WEIGHTS)], Integer.toString(year), season, cast.toString()};
+        }
+
+        // Helper method to append one CSV row for a title on the given platform and write it
+        private static void write_row(BufferedWriter writer, StringBuilder row, String[] fields, int platform, long serial) throws IOException {
+            row.setLength(0);
+            row.append(fields[0]).append(',');
+            csv_field(row, fields[1]);
+            row.append(",\"").append(fields[2]).append("\",").append(fields[3]).append(',').append(fields[4])
+                    .append(',').append(fields[5]).append(",\"").append(fields[6]).append("\",").append(PLATFORMS[platform][1])
+                    .append(',').append(PLATFORMS[platform][2]).append(Long.toString(serial, 36)).append('\n');
+            writer.append(row);
+        }
+
+        // Helper method to append a field, quoted only when it holds a comma or a quote
+        private static void csv_field(StringBuilder row, String field) {
+            if (field.indexOf(',') < 0 && field.indexOf('"') < 0) row.append(field);
+            else row.append('"').append(field.replace("\"", "\"\"")).append('"');
+        }
+
+        // Method to return the word of the given frequency rank: a common English word, then made-up words
+        static String word(int rank) {
+            if (rank < COMMON_WORDS.length) return COMMON_WORDS[rank];
+            StringBuilder word = new StringBuilder();
+            for (int r = rank - COMMON_WORDS.length; ; r /= SYLLABLES.length) {
+                word.append(SYLLABLES[r % SYLLABLES.length]);
+                if (r < SYLLABLES.length) break;
+            }
+            return word.toString();
+        }
+
+        // Method to return the cast member of the given popularity rank; last names are staggered by first name so
+        // neighbouring ranks do not share one
+        static String actor(int rank) {
+            int pairs = FIRST_NAMES.length * LAST_NAMES.length;
+            int first = rank % FIRST_NAMES.length;
+            String name = FIRST_NAMES[first] + " " + LAST_NAMES[(rank / FIRST_NAMES.length + 17 * first) % LAST_NAMES.length];
+            return rank < pairs ? name : name + " " + (rank / pairs + 1);
+        }
+
+        // Method to draw a rank in [0, n) with probability roughly proportional to 1 / (rank + 1 + offset)^skew, by
+        // inverting the continuous power-law distribution (constant time, so no table over millions of ranks is needed)
+        static int zipf(Random random, int n, double skew, int offset) {
+            double u = random.nextDouble(), low = 1.0 + offset, high = n + 1.0 + offset;
+            double x = Math.abs(skew - 1) < 1e-9 ? low * Math.pow(high / low, u)
+                    : Math.pow(Math.pow(low, 1 - skew) + (Math.pow(high, 1 - skew) - Math.pow(low, 1 - skew)) * u, 1 / (1 - skew));
+            return (int) Math.min(n - 1, Math.max(0, (long) x - 1 - offset));
+        }
+
+        // Helper method to pick an index with probability proportional to its weight
+        static int pick(Random random, double[] weights) {
+            double total = 0;
+            for (double w : weights) total += w;
+            double u = random.nextDouble() * total;
+            for (int i = 0; i < weights.length - 1; i++) {
+                u -= weights[i];
+                if (u < 0) return i;
+            }
+            return weights.length - 1;
+        }
+    }
+
+    // Class to measure how loading, index builds and a mixed query workload scale with catalog size: for each size
+    // a synthetic catalog is generated (or reused), loaded and indexed, and a popularity-skewed mix of queries is
+    // replayed through the batch runner, reporting throughput, latency percentiles, heap and GC activity
+    static class load_test {
+        // Catalog sizes measured when none are given
+        static final long[] SIZES = {10_000, 100_000, 1_000_000};
+        // Directory holding one generated catalog per size
+        static final String DIR = "loadtest";
+        // Queries replayed per catalog size (-Dbingebuddy.loadtest.queries)
+        static final int QUERIES = Integer.getInteger("bingebuddy.loadtest.queries", 10000);
+        // Query kinds in the workload and their weights; listings return whole genres and platforms, so they are rare
+        static final String[] KINDS = {"name", "word", "cast", "similar", "genre", "platform", "plans"};
+        static final double[] KIND_WEIGHTS = {42, 22, 18, 10, 2, 1, 5};
+
+        // Class to hold the measurements for one catalog size
+        static class report {
+            long rows;
+            double load_ms, index_ms;
+            long catalog_bytes, peak_bytes, load_gcs, load_gc_ms, query_gcs, query_gc_ms;
+            batch_runner.summary queries;
+        }
+
+        // Method to measure every size in turn, generating catalogs under dir, and print a table of the results
+        static void run(long[] sizes, String dir) {
+            load_subs_plans(PLANS_FILE); // Plans do not scale with the catalog, so they are loaded once
+            plan_index.build();
+            List<report> reports = new ArrayList<>();
+            for (long size : sizes) {
+                try {
+                    reports.add(measure(size, Paths.get(dir, Long.toString(size)).toString()));
+                } catch (IOException e) {
+                    System.out.println("Error generating catalog of " + size + " rows: " + e.getMessage());
+                } catch (OutOfMemoryError e) {
+                    reset(); // Release what was loaded so the table can still be printed
+                    System.out.println("Error loading catalog of " + size + " rows: out of memory (raise -Xmx)");
+                    break;
+                }
+            }
+            System.out.println("\n=== Load Test (" + QUERIES + " queries per size, max heap " + Runtime.getRuntime().maxMemory() / (1 << 20) + " MB) ===");
+            System.out.printf("%10s %10s %10s %11s %10s %9s %9s %10s %9s %9s %9s %9s %9s%n", "Rows", "Load ms", "Index ms",
+                    "Catalog MB", "Peak MB", "Load GCs", "GC ms", "Queries/s", "p50 ms", "p90 ms", "p99 ms", "Query GCs", "GC ms");
+            for (report r : reports) {
+                System.out.printf("%10d %10.1f %10.1f %11.1f %10.1f %9d %9d %10.0f %9.3f %9.3f %9.3f %9d %9d%n", r.rows, r.load_ms, r.index_ms,
+                        r.catalog_bytes / 1048576.0, r.peak_bytes / 1048576.0, r.load_gcs, r.load_gc_ms, r.queries.rate(),
+                        r.queries.percentile(50), r.queries.percentile(90), r.queries.percentile(99), r.query_gcs, r.query_gc_ms);
+            }
+        }
+
+        // Method to load, index and query one generated catalog, reusing the files when an earlier run wrote the same size and seed
+        static report measure(long rows, String dir) throws IOException {
+            Path marker = Paths.get(dir, "catalog.properties");
+            String stamp = "rows=" + rows + "\nseed=" + catalog_generator.SEED + "\nduplicates=" + catalog_generator.DUPLICATE_SHARE
+                    + "\ncast_skew=" + catalog_generator.CAST_SKEW + "\n";
+            String[] files = new String[catalog_generator.PLATFORMS.length];
+            for (int p = 0; p < files.length; p++) files[p] = Paths.get(dir, catalog_generator.PLATFORMS[p][0]).toString();
+            if (!Files.exists(marker) || !new String(Files.readAllBytes(marker), StandardCharsets.UTF_8).equals(stamp)) {
+                files = catalog_generator.generate(rows, dir, catalog_generator.SEED);
+                Files.write(marker, stamp.getBytes(StandardCharsets.UTF_8));
+            }
+
+            report r = new report();
+            r.rows = rows;
+            reset();
+            long baseline = settled_heap();
+            reset_peaks();
+            long[] gc = gc_totals();
+            long start = System.nanoTime();
+            load_media_data(files);
+            r.load_ms = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            cast_index.build();
+            word_index.build();
+            facet_index.build();
+            similar_index.build();
+            watch_index.build();
+            r.index_ms = (System.nanoTime() - start) / 1e6;
+            long[] after = gc_totals();
+            r.load_gcs = after[0] - gc[0];
+            r.load_gc_ms = after[1] - gc[1];
+            r.peak_bytes = peak_heap();
+            r.catalog_bytes = settled_heap() - baseline;
+
+            String workload = workload(new Random(catalog_generator.SEED), QUERIES);
+            gc = gc_totals();
+            // One query in flight per worker: latency is measured without queueing, and whole-platform listings of a
+            // large catalog are not held a thousand at a time
+            r.queries = batch_runner.run(new BufferedReader(new StringReader(workload)), new PrintStream(OutputStream.nullOutputStream()),
+                    Math.max(1, batch_runner.THREADS));
+            after = gc_totals();
+            r.query_gcs = after[0] - gc[0];
+            r.query_gc_ms = after[1] - gc[1];
+            r.peak_bytes = Math.max(r.peak_bytes, peak_heap());
+            System.out.printf("%d rows: loaded in %.1f ms, indexed in %.1f ms, %.1f MB of heap; %s%n",
+                    rows, r.load_ms, r.index_ms, r.catalog_bytes / 1048576.0, r.queries);
+            return r;
+        }
+
+        // Method to write a batch of queries drawn from the loaded catalog; titles are picked with Zipfian popularity
+        // so hot queries repeat, as they do in production
+        static String workload(Random random, int count) {
+            StringBuilder out = new StringBuilder(count * 32);
+            int titles = media_list.size();
+            if (titles == 0) return "";
+            for (int i = 0; i < count; i++) {
+                // Spread popularity ranks over the catalog so the hot titles are not all from the first file
+                Media m = media_list.get((int) ((catalog_generator.zipf(random, titles, 1.0, 0) * 0x9E3779B1L) % titles));
+                String type = m.type().equals("Movie") ? ":movie" : ":tv";
+                switch (KINDS[catalog_generator.pick(random, KIND_WEIGHTS)]) {
+                    case "name": {
+                        String name = m.name.toLowerCase();
+                        out.append("name").append(type).append(' ').append(name, 0, Math.min(name.length(), 2 + random.nextInt(5)));
+                        break;
+                    }
+                    case "word": {
+                        List<String> tokens = word_index.tokenize(m.description);
+                        out.append("word").append(type).append(' ').append(search_word(random, tokens));
+                        if (random.nextInt(5) == 0) out.append(" OR ").append(search_word(random, tokens));
+                        break;
+                    }
+                    case "cast": {
+                        String[] cast = m.cast().split(",");
+                        out.append("cast ").append(cast[random.nextInt(cast.length)].trim());
+                        break;
+                    }
+                    case "similar":
+                        out.append("/similar?name=").append(URLEncoder.encode(m.name, StandardCharsets.UTF_8))
+                                .append("&type=").append(type.substring(1));
+                        break;
+                    case "genre":
+                        out.append("genre").append(type).append(' ').append(m.genre());
+                        break;
+                    case "platform":
+                        out.append("platform").append(type).append(' ').append(m.platform());
+                        break;
+                    default:
+                        out.append("plans ").append(m.platform());
+                }
+                out.append('\n');
+            }
+            return out.toString();
+        }
+
+        // Helper method to pick a word people would search for: the longest of a few, which skips most stop words
+        private static String search_word(Random random, List<String> tokens) {
+            String best = "";
+            for (int i = 0; i < 4; i++) {
+                String token = tokens.get(random.nextInt(tokens.size()));
+                if (token.length() > best.length()) best = token;
+            }
+            return best;
+        }
+
+        // Helper method to drop the loaded catalog and every index over it
+        static void reset() {
+            media_list = new ArrayList<>();
+            trie = new Trie();
+            cast_trie = new Trie();
+            media_store.build();
+            cast_index.build();
+            word_index.build();
+            facet_index.build();
+            similar_index.build();
+            watch_index.build();
+            query_cache.invalidate();
+        }
+
+        // Helper method to return the total collection count and time (ms) of every garbage collector
+        private static long[] gc_totals() {
+            long[] totals = new long[2];
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                totals[0] += Math.max(0, gc.getCollectionCount());
+                totals[1] += Math.max(0, gc.getCollectionTime());
+            }
+            return totals;
+        }
+
+        // Helper method to restart peak usage tracking of the heap pools
+        private static void reset_peaks() {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+            }
+        }
+
+        // Helper method to add up the peak usage of the heap pools since the last reset (an upper bound on the true peak)
+        private static long peak_heap() {
+            long peak = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+            }
+            return peak;
+        }
+    }
+
+    // Class to split the catalog into per-platform shards and answer name, cast, genre and word queries by
+    // scatter-gather: every shard is asked in parallel, shards that miss the per-shard timeout are left out of the
+    // answer, and the ranked partial results are merged. Shards run in-process on their own executors, or as
+    // separate JVMs started with --shard and reached over loopback sockets (-Dbingebuddy.shards)
+    static class shard_coordinator {
+        // How long a query waits for each shard, measured from the fan-out (-Dbingebuddy.shard.timeout_ms)
+        static final long TIMEOUT_MS = Long.getLong("bingebuddy.shard.timeout_ms", 250);
+        // Remote shard processes as host:port,host:port; in-process shards (one per platform) when empty
+        static final String REMOTE_SHARDS = System.getProperty("bingebuddy.shards", "");
+        // Default port of a --shard process
+        static final int SHARD_PORT = 7100;
+        // Operations a shard answers
+        static final List<String> OPS = List.of("name", "cast", "genre", "word");
+        // Current shards by label, and the catalog version the in-process set was derived from
+        private static final Map<String, shard> shards = new LinkedHashMap<>();
+        private static long shards_version = -1;
+        // Daemon threads that wait on remote shards and serve shard connections
+        private static final ExecutorService io_pool = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "shard-io");
+            t.setDaemon(true);
+            return t;
+        });
+
+        // Class to hold one ranked title returned by a shard
+        static class hit {
+            final Media media;
+            final long score;
+
+            hit(Media media, long score) {
+                this.media = media;
+                this.score = score;
+            }
+        }
+
+        // Class to hold a merged answer and the shards missing from it
+        static class result {
+            final List<hit> hits;
+            final int shards;
+            final List<String> timed_out, failed;
+            final double ms;
+
+            result(List<hit> hits, int shards, List<String> timed_out, List<String> failed, double ms) {
+                this.hits = hits;
+                this.shards = shards;
+                this.timed_out = timed_out;
+                this.failed = failed;
+                this.ms = ms;
+            }
+        }
+
+        // Interface for a shard that answers a query asynchronously with hits ranked best first
+        interface shard {
+            String label();
+
+            Future<List<hit>> submit(String op, String type, String text, int k);
+
+            void close();
+        }
+
+        // Class holding one platform's share of the catalog: its titles in media_list order, and a name Trie, name
+        // lookup, cast index, genre lookup and word index built from those titles alone
+        static class slice {
+            final List<Media> titles = new ArrayList<>();
+            final Trie names = new Trie();
+            final Map<String, List<Media>> by_name = new HashMap<>();
+            final Map<String, List<Media>> by_actor = new HashMap<>();
+            final Map<String, List<Media>> by_genre = new HashMap<>();
+            // Word index whose IDs are positions in titles
+            final Map<String, word_index.posting_list> words = new HashMap<>();
+
+            // Constructor to build the slice from the media_store rows of one platform (matched ignoring case)
+            slice(String platform) {
+                boolean[] mine = new boolean[media_store.platforms.size()];
+                for (int c = 0; c < mine.length; c++) mine[c] = media_store.platforms.decode(c).equalsIgnoreCase(platform);
+                // Genre keys and normalized actor names are worked out once per code, on first use
+                String[] genre_keys = new String[media_store.genres.size()];
+                String[] actor_norm = new String[media_store.actors.size()];
+                for (int row = 0; row < media_store.rows; row++) {
+                    if (!mine[media_store.platform_code[row]]) continue;
+                    Media m = media_list.get(row);
+                    int position = titles.size();
+                    titles.add(m);
+                    names.insert(m.name, m);
+                    by_name.computeIfAbsent(m.name.toLowerCase(), k -> new ArrayList<>()).add(m);
+                    int genre = media_store.genre_code[row];
+                    if (genre_keys[genre] == null) genre_keys[genre] = map_to_valid_genre(media_store.genres.decode(genre)).toLowerCase();
+                    by_genre.computeIfAbsent(genre_keys[genre], k -> new ArrayList<>()).add(m);
+                    for (int c = media_store.cast_start[row]; c < media_store.cast_end[row]; c++) {
+                        int actor = media_store.actor_ids[c];
+                        if (actor_norm[actor] == null) actor_norm[actor] = cast_index.normalize(media_store.actors.decode(actor));
+                        if (!actor_norm[actor].isEmpty()) by_actor.computeIfAbsent(actor_norm[actor], k -> new ArrayList<>()).add(m);
+                    }
+                    word_index.index_field(words, m.name, position, false);
+                    word_index.index_field(words, m.description, position, true);
+                }
+            }
+
+            // Method to answer a query from the slice's own indexes, the same way answer does for the whole catalog
+            List<hit> answer(String op, String type, String text, int k) {
+                List<hit> hits = new ArrayList<>();
+                switch (op) {
+                    case "name":
+                        for (String name : names.suggest(text, type, k)) {
+                            for (Media m : by_name.getOrDefault(name.toLowerCase(), Collections.emptyList())) {
+                                if (type == null || m.type().equals(type)) hits.add(new hit(m, rank_score(m.name, m.release_date())));
+                            }
+                        }
+                        break;
+                    case "cast":
+                        for (Media m : by_actor.getOrDefault(cast_index.normalize(text), Collections.emptyList())) {
+                            if (type == null || m.type().equals(type)) hits.add(new hit(m, rank_score(m.name, m.release_date())));
+                        }
+                        break;
+                    case "genre":
+                        for (Media m : by_genre.getOrDefault(text.toLowerCase(), Collections.emptyList())) {
+                            if (type == null || m.type().equalsIgnoreCase(type)) hits.add(new hit(m, rank_score(m.name, m.release_date())));
+                        }
+                        break;
+                    case "word":
+                        for (Map.Entry<Media, Integer> e : word_index.search(words, titles, text, type, null)) hits.add(new hit(e.getKey(), e.getValue()));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown shard operation: " + op);
+                }
+                return best(hits, k);
+            }
+        }
+
+        // Class for an in-process shard: it owns the slice of one platform and runs its queries on its own thread.
+        // The slice is rebuilt only when media_store reports that this platform's rows changed
+        static class local_shard implements shard {
+            final String platform;
+            private final ExecutorService executor;
+            // Confined to the executor thread: the slice and the media_store generation and edit count it was built at
+            private slice current;
+            private long built_generation = -1;
+            private int built_edits = -1;
+
+            local_shard(String platform) {
+                this.platform = platform;
+                this.executor = Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "shard-" + platform);
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+
+            public String label() {
+                return platform;
+            }
+
+            public Future<List<hit>> submit(String op, String type, String text, int k) {
+                return executor.submit(() -> {
+                    // query() runs under the caller's read lock, so a writer cannot hold the lock while the caller waits.
+                    // tryLock never queues behind a waiting writer (lock() would, and the shard would time out); it only
+                    // fails once the caller has given up and a reload started, when the answer is no longer wanted
+                    if (!catalog_reloader.lock.readLock().tryLock()) throw new CancellationException("Catalog reload in progress");
+                    try {
+                        if (built_generation != media_store.generation || built_edits != media_store.edits(platform)) {
+                            built_generation = media_store.generation;
+                            built_edits = media_store.edits(platform);
+                            current = new slice(platform);
+                        }
+                        return current.answer(op, type, text, k);
+                    } finally {
+                        catalog_reloader.lock.readLock().unlock();
+                    }
+                });
+            }
+
+            public void close() {
+                executor.shutdownNow();
+            }
+        }
+
+        // Class for a shard running in another JVM: each query opens a loopback connection and sends one request line
+        static class remote_shard implements shard {
+            final String host;
+            final int port;
+
+            remote_shard(String host, int port) {
+                this.host = host;
+                this.port = port;
+            }
+
+            public String label() {
+                return host + ":" + port;
+            }
+
+            public Future<List<hit>> submit(String op, String type, String text, int k) {
+                return io_pool.submit(() -> {
+                    try (Socket socket = new Socket()) {
+                        socket.connect(new InetSocketAddress(host, port), (int) TIMEOUT_MS);
+                        socket.setSoTimeout((int) TIMEOUT_MS);
+                        Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+                        out.write(String.join("\t", op, type == null ? "" : type, String.valueOf(k), escape(text)) + "\n");
+                        out.flush();
+                        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                        List<hit> hits = new ArrayList<>();
+                        String line;
+                        while ((line = in.readLine()) != null && !line.isEmpty()) {
+                            if (line.startsWith("!")) throw new IOException(line.substring(1));
+                            hits.add(read_hit(line));
+                        }
+                        if (line == null) throw new IOException("Connection closed mid-response");
+                        return hits;
+                    }
+                });
+            }
+
+            public void close() {
+            }
+        }
+
+        // Method to fan a query out to every shard, wait up to TIMEOUT_MS for each and merge the ranked answers;
+        // the caller holds catalog_reloader's read lock for the whole query (query_server.respond does)
+        static result query(String op, String type, String text, int k) {
+            if (!OPS.contains(op)) throw new IllegalArgumentException("Unknown shard operation: " + op);
+            long started = metrics.start();
+            List<shard> targets = shards();
+            List<Future<List<hit>>> futures = new ArrayList<>();
+            for (shard s : targets) futures.add(s.submit(op, type, text, k));
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MS);
+            List<List<hit>> answers = new ArrayList<>();
+            List<String> timed_out = new ArrayList<>(), failed = new ArrayList<>();
+            for (int i = 0; i < targets.size(); i++) {
+                try {
+                    answers.add(futures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+                } catch (TimeoutException e) {
+                    futures.get(i).cancel(true);
+                    timed_out.add(targets.get(i).label());
+                    metrics.count("shard_timeouts");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failed.add(targets.get(i).label());
+                } catch (ExecutionException e) {
+                    failed.add(targets.get(i).label());
+                    metrics.count("shard_failures");
+                }
+            }
+            List<hit> merged = merge(answers, k);
+            double ms = (System.nanoTime() - started) / 1e6;
+            metrics.time("shard_query", started);
+            return new result(merged, targets.size(), timed_out, failed, ms);
+        }
+
+        // Method to answer a query against the whole loaded catalog: name completes a title prefix, cast and genre
+        // list matching titles ranked by rank_score, word ranks by description frequency; returns at most k hits,
+        // best first
+        static List<hit> answer(String op, String type, String text, int k) {
+            List<hit> hits = new ArrayList<>();
+            switch (op) {
+                case "name":
+                    for (String name : trie.suggest(text, type, k)) {
+                        for (Media m : facet_index.named(name, type)) hits.add(new hit(m, rank_score(m.name, m.release_date())));
+                    }
+                    break;
+                case "cast":
+                    for (Media m : cast_index.search(text)) {
+                        if (type == null || m.type().equals(type)) hits.add(new hit(m, rank_score(m.name, m.release_date())));
+                    }
+                    break;
+                case "genre":
+                    for (Media m : facet_index.select(facet_index.filter(type, null, text))) hits.add(new hit(m, rank_score(m.name, m.release_date())));
+                    break;
+                case "word":
+                    for (Map.Entry<Media, Integer> e : word_index.search(text, type)) hits.add(new hit(e.getKey(), e.getValue()));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown shard operation: " + op);
+            }
+            return best(hits, k);
+        }
+
+        // Helper method to sort hits best first and keep the first k
+        private static List<hit> best(List<hit> hits, int k) {
+            hits.sort(shard_coordinator::compare);
+            return hits.size() > k ? new ArrayList<>(hits.subList(0, k)) : hits;
+        }
+
+        // Method to merge ranked shard answers into the best k hits with a k-way merge over the answer heads
+        static List<hit> merge(List<List<hit>> answers, int k) {
+            PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) -> compare(answers.get(a[0]).get(a[1]), answers.get(b[0]).get(b[1])));
+            for (int i = 0; i < answers.size(); i++) if (!answers.get(i).isEmpty()) heads.add(new int[]{i, 0});
+            List<hit> merged = new ArrayList<>();
+            while (!heads.isEmpty() && merged.size() < k) {
+                int[] head = heads.poll();
+                merged.add(answers.get(head[0]).get(head[1]));
+                if (++head[1] < answers.get(head[0]).size()) heads.add(head);
+            }
+            return merged;
+        }
+
+        // Method to serve shard requests for the loaded catalog on a loopback port; blocks while serving
+        static void serve(int port) throws IOException {
+            ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+            System.out.println("Serving " + media_list.size() + " titles as a shard on " + server.getLocalSocketAddress() + " (Ctrl+C to stop)");
+            while (true) {
+                Socket socket = server.accept();
+                io_pool.submit(() -> handle(socket));
+            }
+        }
+
+        // Helper method to answer the request lines of one shard connection, ending each answer with a blank line
+        private static void handle(Socket socket) {
+            try (Socket s = socket) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+                Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8));
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String[] request = line.split("\t", -1);
+                    catalog_reloader.lock.readLock().lock();
+                    try {
+                        if (request.length != 4) throw new IllegalArgumentException("Malformed request");
+                        for (hit h : answer(request[0], request[1].isEmpty() ? null : request[1], unescape(request[3]), Integer.parseInt(request[2]))) {
+                            out.write(write_hit(h));
+                            out.write('\n');
+                        }
+                    } catch (RuntimeException e) {
+                        out.write("!" + escape(String.valueOf(e.getMessage())) + "\n");
+                    } finally {
+                        catalog_reloader.lock.readLock().unlock();
+                    }
+                    out.write('\n');
+                    out.flush();
+                }
+            } catch (IOException e) {
+                System.out.println("Error serving shard connection: " + e.getMessage());
+            }
+        }
+
+        // Helper method to return the current shards, deriving the in-process set from the catalog's platforms
+        private static synchronized List<shard> shards() {
+            if (!REMOTE_SHARDS.isEmpty()) {
+                if (shards.isEmpty()) {
+                    for (String address : REMOTE_SHARDS.split(",")) {
+                        String[] parts = address.trim().split(":");
+                        shards.put(address.trim(), new remote_shard(parts[0], parts.length > 1 ? Integer.parseInt(parts[1]) : SHARD_PORT));
+                    }
+                }
+            } else if (shards_version != query_cache.version()) {
+                shards_version = query_cache.version();
+                // Platforms that still have rows, read off the platform column
+                boolean[] present = new boolean[media_store.platforms.size()];
+                for (int row = 0; row < media_store.rows; row++) present[media_store.platform_code[row]] = true;
+                Set<String> platforms = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+                for (int c = 0; c < present.length; c++) if (present[c]) platforms.add(media_store.platforms.decode(c));
+                // Keep the shards of platforms still present, so their slices are only rebuilt when they changed
+                shards.entrySet().removeIf(e -> {
+                    if (platforms.contains(e.getKey())) return false;
+                    e.getValue().close();
+                    return true;
+                });
+                for (String platform : platforms) shards.computeIfAbsent(platform, local_shard::new);
+            }
+            return new ArrayList<>(shards.values());
+        }
+
+        // Helper method to order hits by score, best first, then by name
+        private static int compare(hit a, hit b) {
+            return a.score != b.score ? Long.compare(b.score, a.score) : a.media.name.compareToIgnoreCase(b.media.name);
+        }
+
+        // Helper method to encode a hit as one tab-separated line: the score, then the title's fields
+        private static String write_hit(hit h) {
+            Media m = h.media;
+            StringBuilder line = new StringBuilder().append(h.score);
+            for (String field : new String[]{m.type(), m.name, m.description, m.genre(), m.release_date(), m.season(), m.cast(), m.platform(), m.url}) {
+                line.append('\t').append(escape(field == null ? "" : field));
+            }
+            return line.toString();
+        }
+
+        // Helper method to decode a hit line; the title is a copy without a local ID
+        private static hit read_hit(String line) {
+            String[] f = line.split("\t", -1);
+            if (f.length != 10) throw new IllegalArgumentException("Malformed shard response");
+            for (int i = 1; i < f.length; i++) f[i] = unescape(f[i]);
+            return new hit(new Media(f[1], f[2], f[3], f[4], f[5], f[6], f[7], f[8], f[9]), Long.parseLong(f[0]));
+        }
+
+        // Helper method to escape backslashes, tabs and line breaks so a value fits in one field
+        static String escape(String value) {
+            return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+        }
+
+        // Helper method to reverse escape
+        static String unescape(String value) {
+            if (value.indexOf('\\') < 0) return value;
+            StringBuilder out = new StringBuilder(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                char ch = value.charAt(i);
+                if (ch == '\\' && i + 1 < value.length()) {
+                    char next = value.charAt(++i);
+                    out.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+                } else {
+                    out.append(ch);
+                }
+            }
+            return out.toString();
+        }
+    }
+
+    // Class to cache scraped platform contact details with a TTL; expired entries are still served
+    // while a background refresh replaces them (stale-while-revalidate)
+    static class contact_cache {
+        // Platforms whose contact pages can be scraped
+        static final String[] PLATFORMS = {"netflix", "amazon-prime", "apple-tv", "crave"};
+        // How long an entry counts as fresh
+        static final long TTL_MS = Long.getLong("bingebuddy.contact.ttl_minutes", 60) * 60_000;
+        // File the cache is persisted to between runs; set the property to an empty string to keep it in memory only
+        static final String CACHE_FILE = System.getProperty("bingebuddy.contact.cache_file", "contact_cache.properties");
+
+        // Class holding one platform's contact details and when they were fetched
+        static class entry {
+            final String info;
+            final long fetched_at;
+
+            entry(String info, long fetched_at) {
+                this.info = info;
+                this.fetched_at = fetched_at;
+            }
+        }
+
+        private static final Map<String, entry> entries = new ConcurrentHashMap<>();
+        // Fetches currently running, so concurrent callers share one request per platform
+        private static final Map<String, CompletableFuture<String>> in_flight = new ConcurrentHashMap<>();
+        // Daemon threads for background fetches, so a slow site never holds up exit
+        private static final ExecutorService refresher = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "contact-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+
+        // Method to return contact details: fresh entries directly, stale entries immediately while a refresh
+        // runs in the background, and missing entries after fetching them
+        static String get(String platform) throws Exception {
+            entry cached = entries.get(platform);
+            if (cached != null) {
+                if (!fresh(cached)) refresh(platform);
+                return cached.info;
+            }
+            try {
+                return refresh(platform).join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+
+        // Method to start (or join) a background fetch for a platform
+        static CompletableFuture<String> refresh(String platform) {
+            CompletableFuture<String> running = in_flight.get(platform);
+            if (running != null) return running;
+            CompletableFuture<String> created = new CompletableFuture<>();
+            running = in_flight.putIfAbsent(platform, created);
+            if (running != null) return running;
+            refresher.execute(() -> {
+                try {
+                    String info = web_html_parser(platform);
+                    entries.put(platform, new entry(info, System.currentTimeMillis()));
+                    persist();
+                    created.complete(info);
+                } catch (Exception e) {
+                    created.completeExceptionally(e); // A failed refresh keeps serving the previous entry
+                } finally {
+                    in_flight.remove(platform, created);
+                }
+            });
+            return created;
+        }
+
+        // Method to load persisted entries and refresh only the platforms that are missing or expired, concurrently
+        static void start() {
+            load();
+            for (String platform : PLATFORMS) {
+                entry cached = entries.get(platform);
+                if (cached == null || !fresh(cached)) refresh(platform);
+            }
+        }
+
+        // Helper method to check whether an entry is still within its TTL
+        private static boolean fresh(entry cached) {
+            return System.currentTimeMillis() - cached.fetched_at < TTL_MS;
+        }
+
+        // Helper method to read persisted entries, keeping their original fetch times
+        private static void load() {
+            if (CACHE_FILE.isEmpty() || !new File(CACHE_FILE).exists()) return;
+            Properties props = new Properties();
+            try (Reader reader = new InputStreamReader(new FileInputStream(CACHE_FILE), StandardCharsets.UTF_8)) {
+                props.load(reader);
+                for (String platform : PLATFORMS) {
+                    String info = props.getProperty(platform + ".info");
+                    String fetched = props.getProperty(platform + ".fetched_at");
+                    if (info != null && fetched != null) entries.put(platform, new entry(info, Long.parseLong(fetched)));
+                }
+            } catch (IOException | NumberFormatException e) {
+                System.out.println("Error loading contact cache: " + e.getMessage());
+            }
+        }
+
+        // Helper method to write all entries to a temporary file and move it over the cache file, so a crash
+        // mid-write leaves the previous cache intact
+        private static synchronized void persist() {
+            if (CACHE_FILE.isEmpty()) return;
+            Properties props = new Properties();
+            for (Map.Entry<String, entry> e : entries.entrySet()) {
+                props.setProperty(e.getKey() + ".info", e.getValue().info);
+                props.setProperty(e.getKey() + ".fetched_at", Long.toString(e.getValue().fetched_at));
+            }
+            File tmp = new File(CACHE_FILE + ".tmp");
+            try {
+                try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+                    props.store(writer, "Binge Buddy contact details cache");
+                }
+                Files.move(tmp.toPath(), new File(CACHE_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                System.out.println("Error saving contact cache: " + e.getMessage());
+            }
+        }
+    }
+
+    // Class to watch the platform and plan CSV files and fold edits into the loaded catalog without a restart;
+    // a changed file is diffed against the records it contributed, so only the differences touch the indexes
+    static class catalog_reloader {
+        // Guards the catalog while a change is applied; HTTP handlers read under the read lock
+        static final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        // Quiet period after the last file event before files are re-read, so half-written saves are skipped
+        static final long SETTLE_MS = 300;
+        // Parsed file contents waiting to be diffed and applied
+        private static final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+        // Media items each media file contributed, in file order
+        private static final Map<String, List<Media>> owned = new HashMap<>();
+        // True in server mode, where the watcher applies changes itself; the menu applies them between prompts
+        private static volatile boolean apply_on_watcher = false;
+
+        // Method to record which loaded items came from which file and start watching the working directory
+        static void start(boolean apply_immediately) {
+            apply_on_watcher = apply_immediately;
+            // Match each file's parsed records to the loaded items (the catalog may have come from the snapshot)
+            Map<String, Deque<Media>> loaded = new HashMap<>();
+            for (Media m : media_list) loaded.computeIfAbsent(record_key(m), k -> new ArrayDeque<>()).add(m);
+            for (String file : MEDIA_FILES) {
+                List<Media> mine = new ArrayList<>();
+                List<Media> records = parse_media_file(file);
+                for (Media record : records == null ? Collections.<Media>emptyList() : records) {
+                    Deque<Media> same = loaded.get(record_key(record));
+                    if (same != null && !same.isEmpty()) mine.add(same.poll());
+                }
+                owned.put(file, mine);
+            }
+            try {
+                WatchService watcher = FileSystems.getDefault().newWatchService();
+                Paths.get("").toAbsolutePath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                Thread t = new Thread(() -> watch(watcher), "catalog-reloader");
+                t.setDaemon(true);
+                t.start();
+                System.out.println("Watching " + PLANS_FILE + " and the platform CSV files for changes.");
+            } catch (IOException e) {
+                System.out.println("Error starting the file watcher: " + e.getMessage());
+            }
+        }
+
+        // Method to apply every queued change under the write lock
+        static void apply_pending() {
+            if (pending.isEmpty()) return;
+            lock.writeLock().lock();
+            try {
+                Runnable change;
+                while ((change = pending.poll()) != null) change.run();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        // Helper method run by the watcher thread: wait for events on watched files, let them settle, then parse
+        // each changed file and queue the result
+        private static void watch(WatchService watcher) {
+            Set<String> watched = new HashSet<>(Arrays.asList(MEDIA_FILES));
+            watched.add(PLANS_FILE);
+            try {
+                while (true) {
+                    WatchKey key = watcher.take();
+                    Set<String> changed = new TreeSet<>();
+                    while (key != null) {
+                        for (WatchEvent<?> event : key.pollEvents()) {
+                            String name = String.valueOf(event.context());
+                            if (watched.contains(name)) changed.add(name);
+                        }
+                        key.reset();
+                        key = watcher.poll(SETTLE_MS, TimeUnit.MILLISECONDS);
+                    }
+                    for (String file : changed) {
+                        if (file.equals(PLANS_FILE)) {
+                            try {
+                                List<subscription_plan> fresh = read_subs_plans(file);
+                                pending.add(() -> apply_plans(fresh));
+                            } catch (IOException e) {
+                                System.out.println("Error reading subscription file: " + e.getMessage());
+                            }
+                        } else {
+                            List<Media> records = parse_media_file(file);
+                            if (records != null) pending.add(() -> apply_media(file, records));
+                        }
+                    }
+                    if (apply_on_watcher) apply_pending();
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // Watcher shut down
+            }
+        }
+
+        // Helper method to parse a media CSV into fresh records, or return null if it is missing or unreadable
+        private static List<Media> parse_media_file(String file) {
+            if (!new File(file).exists()) return null;
+            try {
+                long[] bounds = record_chunks(file);
+                List<Media> records = new ArrayList<>();
+                for (int c = 0; c + 1 < bounds.length; c++) {
+                    for (String[] record : parse_media_chunk(file, bounds[c], bounds[c + 1], c == 0)) records.add(media_from_fields(record));
+                }
+                return records;
+            } catch (UncheckedIOException e) {
+                System.out.println("Error reading " + file + ": " + e.getCause().getMessage());
+                return null;
+            }
+        }
+
+        // Helper method to diff a media file's new records against the items it contributed and apply the difference:
+        // identical records are kept, a changed record with the same type and title is updated in place, the rest
+        // are removed or inserted
+        private static void apply_media(String file, List<Media> records) {
+            long start = System.nanoTime();
+            Map<String, Deque<Media>> unmatched = new HashMap<>();
+            for (Media m : owned.getOrDefault(file, Collections.emptyList())) {
+                unmatched.computeIfAbsent(record_key(m), k -> new ArrayDeque<>()).add(m);
+            }
+            List<Media> after = new ArrayList<>(records.size());
+            List<Integer> fresh = new ArrayList<>(); // Positions in after still holding a new record
+            for (Media record : records) {
+                Deque<Media> same = unmatched.get(record_key(record));
+                if (same != null && !same.isEmpty()) {
+                    after.add(same.poll());
+                } else {
+                    fresh.add(after.size());
+                    after.add(record);
+                }
+            }
+            Map<String, Deque<Media>> gone = new HashMap<>();
+            for (Deque<Media> left : unmatched.values()) {
+                for (Media m : left) gone.computeIfAbsent(title_key(m), k -> new ArrayDeque<>()).add(m);
+            }
+            // Pair new records with vanished items of the same title before anything moves
+            Map<Media, Media> updates = new IdentityHashMap<>();
+            for (int pos : fresh) {
+                Deque<Media> candidates = gone.get(title_key(after.get(pos)));
+                if (candidates != null && !candidates.isEmpty()) {
+                    Media old = candidates.poll();
+                    updates.put(old, after.get(pos));
+                    after.set(pos, old);
+                }
+            }
+            int removed = 0;
+            for (Deque<Media> left : gone.values()) {
+                for (Media m : left) {
+                    remove_media(m);
+                    removed++;
+                }
+            }
+            for (Map.Entry<Media, Media> update : updates.entrySet()) update_media(update.getKey(), update.getValue());
+            int added = 0;
+            for (int pos : fresh) {
+                if (updates.containsKey(after.get(pos))) continue;
+                add_media(after.get(pos));
+                added++;
+            }
+            owned.put(file, after);
+            System.out.printf("%nReloaded %s: %d added, %d updated, %d removed in %.1f ms%n",
+                    file, added, updates.size(), removed, (System.nanoTime() - start) / 1e6);
+        }
+
+        // Helper method to replace the plans list in place: plans are matched by platform and name
+        private static void apply_plans(List<subscription_plan> fresh) {
+            Map<String, subscription_plan> by_key = new LinkedHashMap<>();
+            for (subscription_plan p : fresh) by_key.put(p.platform + '\u0000' + p.name, p);
+            int updated = 0, removed = 0;
+            for (Iterator<subscription_plan> it = plans.iterator(); it.hasNext(); ) {
+                subscription_plan p = it.next();
+                subscription_plan next = by_key.remove(p.platform + '\u0000' + p.name);
+                if (next == null) {
+                    it.remove();
+                    removed++;
+                } else if (!p.toString().equals(next.toString())) {
+                    p.price = next.price;
+                    p.resolution = next.resolution;
+                    p.devices = next.devices;
+                    p.concurrent_devices = next.concurrent_devices;
+                    p.link = next.link;
+                    p.parse_fields();
+                    updated++;
+                }
+            }
+            plans.addAll(by_key.values());
+            plan_index.build();
+            query_cache.invalidate();
+            System.out.printf("%nReloaded %s: %d added, %d updated, %d removed%n", PLANS_FILE, by_key.size(), updated, removed);
+        }
+
+        // Method to append a new media item and index it; the item becomes a view over its new media_store row
+        static void add_media(Media m) {
+            media_store.add(m);
+            media_list.add(m);
+            index(m);
+        }
+
+        // Method to unindex a media item and drop it; the last item takes its ID so IDs stay dense
+        static void remove_media(Media m) {
+            unindex(m);
+            m.detach(); // Its row is about to be reused; anything still holding the item keeps reading its own fields
+            int last = media_list.size() - 1;
+            if (m.id != last) {
+                Media moved = media_list.get(last);
+                // Only the ID-keyed indexes care about the move; the Tries and cast index hold the item itself
+                word_index.remove(moved);
+                facet_index.remove(moved);
+                media_store.move_last(m.id);
+                moved.id = m.id;
+                media_list.set(m.id, moved);
+                word_index.add(moved);
+                facet_index.add(moved);
+            } else {
+                media_store.move_last(last);
+            }
+            media_list.remove(last);
+            m.id = -1;
+        }
+
+        // Method to overwrite a media item's fields with a changed record, keeping its ID
+        static void update_media(Media m, Media changed) {
+            unindex(m);
+            m.name = changed.name;
+            m.description = changed.description;
+            m.url = changed.url;
+            media_store.update(m.id, changed.fields());
+            index(m);
+        }
+
+        // Helper method to add a media item (already in media_list and media_store) to every index
+        private static void index(Media m) {
+            query_cache.invalidate();
+            trie.insert(m.name, m);
+            cast_index.add(m);
+            word_index.add(m);
+            facet_index.add(m);
+        }
+
+        // Helper method to take a media item out of every index, while its media_store row is still intact
+        private static void unindex(Media m) {
+            query_cache.invalidate();
+            trie.remove(m);
+            cast_index.remove(m);
+            word_index.remove(m);
+            facet_index.remove(m);
+        }
+
+        // Helper method to identify a record by all of its fields
+        private static String record_key(Media m) {
+            return String.join("\u0000", m.type(), m.name, m.description, m.genre(), m.release_date(), m.season(), m.cast(), m.platform(), m.url);
+        }
+
+        // Helper method to identify a record by type and title, which an edit usually leaves alone
+        private static String title_key(Media m) {
+            return m.type() + '\u0000' + m.name.toLowerCase();
         }
+    }
 
-        // Method to insert a cast name into the Trie for suggestions
-        void insert_cast_name(String name) {
-            TrieNode current = root;
-            // Iterate through each character in the lowercase name
-            for (char ch : name.toLowerCase().toCharArray()) {
-                current = current.child_node.computeIfAbsent(ch, c -> new TrieNode());
+    // Main method to run the CLI application
+    public static void main(String[] args) {
+        List<String> options = Arrays.asList(args);
+        long start = System.nanoTime();
+        // In batch mode stdout carries only the JSON lines, so progress messages are sent to stderr
+        PrintStream stdout = System.out;
+        int batch_flag = options.indexOf("--batch");
+        if (batch_flag >= 0) System.setOut(System.err);
+        // Write a synthetic catalog and stop, or measure generated catalogs of several sizes, before anything is loaded
+        int generate_flag = options.indexOf("--generate");
+        if (generate_flag >= 0) {
+            String rows = generate_flag + 1 < args.length ? args[generate_flag + 1] : "";
+            if (!rows.matches("\\d{1,18}") || Long.parseLong(rows) == 0) {
+                System.out.println("Error: --generate takes a positive number of rows, e.g. --generate 100000 [dir]");
+                return;
             }
-            // Add the name to the node's list if not already present
-            if (!current.names.contains(name)) {
-                current.names.add(name);
+            boolean has_dir = generate_flag + 2 < args.length && !args[generate_flag + 2].startsWith("--");
+            // Default to the load-test directory, never the working directory that holds the bundled CSV files
+            String dir = has_dir ? args[generate_flag + 2] : load_test.DIR;
+            if (!options.contains("--overwrite")) {
+                for (String[] platform : catalog_generator.PLATFORMS) {
+                    if (Files.exists(Paths.get(dir, platform[0]))) {
+                        System.out.println("Error: " + Paths.get(dir, platform[0]) + " already exists; pass --overwrite to replace it");
+                        return;
+                    }
+                }
             }
-        }
-
-        // Method to retrieve suggestions based on a prefix and media type
-        List<String> get_suggestions(String prefix, String type) {
-            TrieNode current = root;
-            // Traverse the Trie to the node matching the prefix
-            for (char ch : prefix.toLowerCase().toCharArray()) {
-                if (!current.child_node.containsKey(ch)) return Collections.emptyList();
-                current = current.child_node.get(ch);
+            try {
+                catalog_generator.generate(Long.parseLong(rows), dir, catalog_generator.SEED);
+            } catch (IOException e) {
+                System.out.println("Error generating catalog: " + e.getMessage());
             }
-            // List to store suggestions
-            List<String> suggestions = new ArrayList<>();
-            // Fetch all media names starting from this node
-            fetch_all_media_name(current, new StringBuilder(prefix.toLowerCase()), suggestions, type);
-            return suggestions;
+            return;
         }
-
-        // Helper method to recursively fetch all media names from a Trie node
-        private void fetch_all_media_name(TrieNode node, StringBuilder prefix, List<String> suggestions, String type) {
-            // Add media names of the specified type to suggestions
-            for (Media media : node.media_item) {
-                if (media.type.equals(type)) {
-                    suggestions.add(media.name);
-                }
+        int load_test_flag = options.indexOf("--load-test");
+        if (load_test_flag >= 0) {
+            long[] sizes = load_test.SIZES;
+            boolean has_sizes = load_test_flag + 1 < args.length && !args[load_test_flag + 1].startsWith("--");
+            if (has_sizes && !args[load_test_flag + 1].matches("\\d{1,18}(,\\d{1,18})*")) {
+                System.out.println("Error: --load-test takes comma-separated row counts, e.g. --load-test 10000,100000 [dir]");
+                return;
             }
-            // Recursively explore all child nodes
-            for (Map.Entry<Character, TrieNode> entry : node.child_node.entrySet()) {
-                prefix.append(entry.getKey());
-                fetch_all_media_name(entry.getValue(), prefix, suggestions, type);
-                prefix.deleteCharAt(prefix.length() - 1); // Backtrack
+            if (has_sizes) sizes = Arrays.stream(args[load_test_flag + 1].split(",")).mapToLong(Long::parseLong).toArray();
+            boolean has_dir = has_sizes && load_test_flag + 2 < args.length && !args[load_test_flag + 2].startsWith("--");
+            load_test.run(sizes, has_dir ? args[load_test_flag + 2] : load_test.DIR);
+            return;
+        }
+        // Check the HTTP port before anything is loaded, so a typo fails fast
+        int server_flag = options.indexOf("--server");
+        boolean has_server_port = server_flag >= 0 && server_flag + 1 < args.length && !args[server_flag + 1].startsWith("--");
+        int server_port = has_server_port ? parse_port(args[server_flag + 1]) : 8080;
+        if (server_port < 0) {
+            System.out.println("Error: --server port must be a number from 0 to 65535, not '" + args[server_flag + 1] + "'");
+            return;
+        }
+        // A shard process loads one platform file and leaves the snapshot and search log to the coordinator
+        int shard_flag = options.indexOf("--shard");
+        if (shard_flag >= 0 && (shard_flag + 1 >= args.length || args[shard_flag + 1].startsWith("--"))) {
+            System.out.println("Error: --shard needs the platform CSV file to serve, e.g. --shard Netflix_Data.csv 7101");
+            return;
+        }
+        boolean has_shard_port = shard_flag >= 0 && shard_flag + 2 < args.length && !args[shard_flag + 2].startsWith("--");
+        int shard_port = has_shard_port ? parse_port(args[shard_flag + 2]) : shard_coordinator.SHARD_PORT;
+        if (shard_port < 0) {
+            System.out.println("Error: --shard port must be a number from 0 to 65535, not '" + args[shard_flag + 2] + "'");
+            return;
+        }
+        String[] media_files = shard_flag >= 0 ? new String[]{args[shard_flag + 1]} : MEDIA_FILES;
+        // With --offheap [dir] the titles stay in memory-mapped files and only the plans are loaded onto the heap;
+        // the modes below read the heap catalog and its indexes, which stay empty, so they would answer nothing
+        int offheap_flag = options.indexOf("--offheap");
+        for (String mode : new String[]{"--server", "--batch", "--watch", "--shard", "--costar-sample"}) {
+            if (offheap_flag >= 0 && options.contains(mode)) {
+                System.out.println("Error: --offheap cannot be combined with " + mode + ", which needs the heap catalog");
+                return;
             }
         }
+        load_search_freq_csv(); // Load previous search frequencies first, they feed autocomplete ranking
+        search_freq_log.replay(word_frequency); // Apply searches logged since the last compaction
+        if (shard_flag < 0) search_freq_log.start(word_frequency);
+        Runtime.getRuntime().addShutdownHook(new Thread(search_freq_log::close)); // Flush on Ctrl+C as well
+        metrics.register_catalog_gauges();
+        Runtime.getRuntime().addShutdownHook(new Thread(metrics::dump)); // Write -Dbingebuddy.metrics.file on any exit
+        // Restore the catalog from the binary snapshot when it matches the source files, otherwise parse the CSVs
+        String[] sources = snapshot_sources();
+        boolean from_snapshot = offheap_flag < 0 && shard_flag < 0 && !options.contains("--no-snapshot") && catalog_snapshot.load(SNAPSHOT_FILE, sources);
+        if (offheap_flag >= 0) {
+            load_subs_plans(PLANS_FILE);
+            boolean has_dir = offheap_flag + 1 < args.length && !args[offheap_flag + 1].startsWith("--");
+            offheap_catalog.open(has_dir ? args[offheap_flag + 1] : OFFHEAP_DIR, media_files);
+        } else if (!from_snapshot) {
+            // Load initial data from CSV files and build indexes
+            load_subs_plans(PLANS_FILE);
+            load_media_data(media_files); // Also encodes the catalog into media_store columns; the cast index reads them
+            cast_index.build();
+            System.out.printf("Built cast index: %d distinct actors, %d credits in %.1f ms on %d thread(s)%n",
+                    cast_index.distinct_actors, cast_index.credits, cast_index.build_ms, cast_index.build_threads);
+            word_index.build(); // Build inverted index for generic word search
+        }
+        if (from_snapshot) {
+            // The snapshot holds the rankings of the frequencies it was saved with; apply the current ones
+            trie.rerank();
+            cast_trie.rerank();
+        }
+        facet_index.build(); // Cheap to rebuild, so it is not part of the snapshot
+        plan_index.build();
+        similar_index.build(); // MinHash signatures are cheap to recompute, so they are not part of the snapshot
+        watch_index.build(); // Group the per-platform copies of each title
+        double catalog_ms = (System.nanoTime() - start) / 1e6;
+        metrics.time("catalog_load", start);
+        if (!from_snapshot && shard_flag < 0 && !media_list.isEmpty()) {
+            catalog_snapshot.save(SNAPSHOT_FILE, sources);
+        }
 
-        // Method to fetch cast name suggestions based on a prefix
-        List<String> fetch_cast_suggestions(String prefix) {
-            TrieNode current = root;
-            // Traverse the Trie to the node matching the prefix
-            for (char ch : prefix.toLowerCase().toCharArray()) {
-                if (!current.child_node.containsKey(ch)) return Collections.emptyList();
-                current = current.child_node.get(ch);
+        // Print the Trie memory comparison instead of starting the menu when requested
+        if (options.contains("--trie-footprint")) {
+            print_trie_footprint();
+            return;
+        }
+
+        // Answer scatter-gather requests from a coordinator for this platform file instead of starting the menu when requested
+        if (shard_flag >= 0) {
+            try {
+                shard_coordinator.serve(shard_port);
+            } catch (IOException e) {
+                System.out.println("Error starting shard on port " + shard_port + ": " + e.getMessage());
             }
-            List<String> suggestions = new ArrayList<>();
-            // Fetch all cast names starting from this node
-            fetch_all_cast_name(current, new StringBuilder(prefix.toLowerCase()), suggestions);
-            return suggestions;
+            return;
         }
 
-        // Helper method to recursively fetch all cast names from a Trie node
-        private void fetch_all_cast_name(TrieNode node, StringBuilder prefix, List<String> suggestions) {
-            suggestions.addAll(node.names); // Add all names stored at this node
-            // Recursively explore all child nodes
-            for (Map.Entry<Character, TrieNode> entry : node.child_node.entrySet()) {
-                prefix.append(entry.getKey());
-                fetch_all_cast_name(entry.getValue(), prefix, suggestions);
-                prefix.deleteCharAt(prefix.length() - 1); // Backtrack
+        // Trace random co-star pairs in parallel and report traversal throughput instead of starting the menu when requested
+        int sample_flag = options.indexOf("--costar-sample");
+        if (sample_flag >= 0) {
+            boolean has_count = sample_flag + 1 < args.length && !args[sample_flag + 1].startsWith("--");
+            String count = has_count ? args[sample_flag + 1] : String.valueOf(costar_graph.SAMPLE_PAIRS);
+            if (!count.matches("\\d{1,9}") || Integer.parseInt(count) == 0) {
+                System.out.println("Error: --costar-sample takes a positive number of pairs, not '" + count + "'");
+                return;
             }
+            System.out.println(costar_graph.sample(Integer.parseInt(count), cast_index.INDEX_THREADS, 42));
+            return;
         }
-    }
 
-    // Class to manage an index of cast members and their associated media
-    static class cast_index {
-        // Map to store actors and the list of media they appear in
-        private static Map<String, List<Media>> cast_index = new HashMap<>();
+        // Answer the queries in a file (or stdin) as JSON lines instead of starting the menu when requested
+        if (batch_flag >= 0) {
+            boolean has_file = batch_flag + 1 < args.length && !args[batch_flag + 1].startsWith("--");
+            batch_runner.run(has_file ? args[batch_flag + 1] : "-", stdout);
+            search_freq_log.close();
+            return;
+        }
 
-        // Method to build the cast index and populate the cast Trie
-        static void build() {
-            cast_index.clear(); // Clear existing entries to avoid duplicates
-            Set<String> cast_name_uniq = new HashSet<>(); // Set to ensure unique cast names in Trie
-            for (Media media : media_list) {
-                String cast = media.cast;
-                // Split cast string into individual actors
-                for (String actor : cast.split(",")) {
-                    // Normalize actor name for consistent indexing
-                    String actor_norm = actor.trim()
-                            .replaceAll("^\"|\"$", "") // Remove leading/trailing quotes
-                            .replaceAll("\\p{Zs}+", " ") // Replace multiple spaces with single space
-                            .replaceAll("[^\\p{ASCII}]", "") // Remove non-ASCII characters
-                            .toLowerCase();
-                    if (actor_norm.isEmpty()) continue; // Skip empty entries
-                    // Add to cast index if not already present
-                    cast_index.putIfAbsent(actor_norm, new ArrayList<>());
-                    cast_index.get(actor_norm).add(media);
-                    // Add original actor name to cast Trie for suggestions
-                    String actor_original = actor.trim();
-                    if (!actor_original.isEmpty() && !cast_name_uniq.contains(actor_original)) {
-                        cast_trie.insert_cast_name(actor_original);
-                        cast_name_uniq.add(actor_original);
-                    }
-                }
+        if (options.contains("--watch")) catalog_reloader.start(options.contains("--server"));
+
+        // Serve the search features over HTTP instead of starting the menu when requested
+        if (server_flag >= 0) {
+            try {
+                query_server.start(server_port);
+                System.out.println("Serving JSON search API on http://localhost:" + server_port + "/ (Ctrl+C to stop)");
+            } catch (IOException e) {
+                System.out.println("Error starting server on port " + server_port + ": " + e.getMessage());
             }
+            return; // The server's threads keep the JVM running
         }
 
-        // Method to search for media items by actor name
-        static List<Media> search(String actor) {
-            // Normalize the search query to match indexed format
-            actor = actor.trim()
-                    .replaceAll("^\"|\"$", "")
-                    .replaceAll("\\p{Zs}+", " ")
-                    .replaceAll("[^\\p{ASCII}]", "")
-                    .toLowerCase();
-            // Return list of media for the actor, or empty list if not found
-            return cast_index.getOrDefault(actor, new ArrayList<>());
-        }
-    }
+        contact_cache.start(); // Fetch missing or expired platform contact details in the background (menu only)
 
-    // Main method to run the CLI application
-    public static void main(String[] args) {
-        // Load initial data from CSV files and build indexes
-        load_subs_plans("subscription_plans.csv");
-        load_media_data(new String[]{"Netflix_Data.csv", "AmazonPrime_Data.csv", "AppleTV_Data.csv", "Crave_Data.csv"});
-        cast_index.build();
-        load_search_freq_csv(); // Load previous search frequencies
+        long jvm_start = ManagementFactory.getRuntimeMXBean().getStartTime();
+        System.out.printf("Catalog loaded from %s in %.1f ms; first prompt %d ms after JVM start%n",
+                offheap_catalog.active() ? "off-heap files" : from_snapshot ? "snapshot" : "CSV files", catalog_ms, System.currentTimeMillis() - jvm_start);
 
         Scanner scanner = new Scanner(System.in); // Scanner for user input
         int choice;
         do {
             // Display main menu options
+            catalog_reloader.apply_pending(); // Pick up edited CSV files (--watch) between prompts
             System.out.println("\n=== OTT Platform CLI ===");
             System.out.println("1. Subscription Details");
             System.out.println("2. Movies");
@@ -264,17 +6030,121 @@ public class Main {
                 case 2: show_media_menu(scanner, "Movie"); break;
                 case 3: show_media_menu(scanner, "TV Show"); break;
                 case 4: show_more_info_menu(scanner); break;
-                case 5: System.out.println("Exiting program..."); break;
+                case 5:
+                    System.out.println(query_cache.stats());
+                    System.out.println("Exiting program...");
+                    break;
                 default:
                     System.out.println("Invalid choice. Please enter a number between 1 and 5.");
             }
         } while (choice != 5);
         scanner.close(); // Close scanner resource
+        search_freq_log.close(); // Write outstanding searches and compact the log
+    }
+
+    // Method to list the files a catalog snapshot depends on. The search frequency files change with every word
+    // search, so they are not part of the key; the Trie rankings are recomputed from them after a snapshot loads
+    static String[] snapshot_sources() {
+        List<String> sources = new ArrayList<>();
+        sources.add(PLANS_FILE);
+        sources.addAll(Arrays.asList(MEDIA_FILES));
+        return sources.toArray(new String[0]);
+    }
+
+    // Method to compare the heap used by the radix Tries against the original HashMap-per-character Trie
+    static void print_trie_footprint() {
+        List<String> cast_names = cast_trie.fetch_cast_suggestions("");
+        // Builders that rebuild each structure from the loaded catalog
+        Supplier<Object> radix_titles = () -> {
+            Trie t = new Trie();
+            for (Media m : media_list) t.insert(m.name, m);
+            return t;
+        };
+        Supplier<Object> legacy_titles = () -> {
+            legacy_trie t = new legacy_trie();
+            for (Media m : media_list) t.insert(m.name, m);
+            return t;
+        };
+        Supplier<Object> radix_cast = () -> {
+            Trie t = new Trie();
+            for (String name : cast_names) t.insert_cast_name(name);
+            return t;
+        };
+        Supplier<Object> legacy_cast = () -> {
+            legacy_trie t = new legacy_trie();
+            for (String name : cast_names) t.insert_cast_name(name);
+            return t;
+        };
+
+        System.out.println("\n=== Trie Footprint (" + media_list.size() + " titles, " + cast_names.size() + " cast names) ===");
+        System.out.printf("%-22s %10s %16s %16s%n", "Structure", "Nodes", "Estimated bytes", "Measured bytes");
+        Trie t = (Trie) radix_titles.get();
+        legacy_trie l = (legacy_trie) legacy_titles.get();
+        System.out.printf("%-22s %10d %16d %16d%n", "trie (radix)", t.node_count(), t.footprint(), measure_retained(radix_titles));
+        System.out.printf("%-22s %10d %16d %16d%n", "trie (legacy)", l.node_count(), l.footprint(), measure_retained(legacy_titles));
+        t = (Trie) radix_cast.get();
+        l = (legacy_trie) legacy_cast.get();
+        System.out.printf("%-22s %10d %16d %16d%n", "cast_trie (radix)", t.node_count(), t.footprint(), measure_retained(radix_cast));
+        System.out.printf("%-22s %10d %16d %16d%n", "cast_trie (legacy)", l.node_count(), l.footprint(), measure_retained(legacy_cast));
+    }
+
+    // Helper method to measure the heap retained by a freshly built structure (approximate, GC based)
+    static long measure_retained(Supplier<Object> builder) {
+        // Build several copies at once so small structures rise above the collector's accounting noise
+        final int copies = 16;
+        long[] samples = new long[3];
+        for (int s = 0; s < samples.length; s++) {
+            long before = settled_heap();
+            Object[] built = new Object[copies];
+            for (int c = 0; c < copies; c++) built[c] = builder.get();
+            long after = settled_heap();
+            java.lang.ref.Reference.reachabilityFence(built); // Keep the structures alive until measured
+            built = null; // Release them so the next sample's baseline does not include them
+            samples[s] = Math.max(0, after - before - Trie.array_bytes(4, copies)) / copies;
+        }
+        Arrays.sort(samples);
+        return samples[samples.length / 2]; // Median filters out samples disturbed by GC timing
+    }
+
+    // Helper method to read used heap after encouraging a full collection
+    static long settled_heap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    // Method to score an autocomplete candidate: search popularity first, then recency of release
+    static long rank_score(String text, String release_date) {
+        return popularity(text) * 10000 + release_year(release_date);
+    }
+
+    // Method to sum the search frequency of a text and of each of its distinct words
+    static long popularity(String text) {
+        long popularity = word_frequency.getOrDefault(text.toLowerCase(), 0);
+        for (String token : new HashSet<>(word_index.tokenize(text))) {
+            popularity += word_frequency.getOrDefault(token, 0);
+        }
+        return popularity;
+    }
+
+    // Method to extract the four-digit year from a release date, or 0 if there is none
+    static int release_year(String release_date) {
+        if (release_date == null) return 0;
+        Matcher year = YEAR_PATTERN.matcher(release_date);
+        return year.find() ? Integer.parseInt(year.group()) : 0;
+    }
+
+    // Precompiled pattern for the year in a release date
+    static final Pattern YEAR_PATTERN = Pattern.compile("\\d{4}");
+
+    // Method to parse a TCP port number (0 to 65535), returning -1 for anything else
+    static int parse_port(String value) {
+        return value.matches("\\d{1,5}") && Integer.parseInt(value) <= 65535 ? Integer.parseInt(value) : -1;
     }
 
     // Method to load search frequency data from a CSV file
     static void load_search_freq_csv() {
-        File file = new File("search_frequency.csv");
+        File file = new File(search_freq_log.CSV_FILE);
         if (!file.exists()) {
             return; // Exit if file doesn't exist
         }
@@ -283,35 +6153,51 @@ public class Main {
             String line;
             br.readLine(); // Skip header row
             while ((line = br.readLine()) != null) {
-                String[] parts = split_csv(line);
-                if (parts.length == 2) {
-                    String word = parts[0];
-                    int frequency = Integer.parseInt(parts[1]);
-                    word_frequency.put(word, frequency); // Populate frequency map
-                }
+                // Rows are written like log records, so quotes inside a word come back intact
+                Map.Entry<String, Integer> record = search_freq_log.parse_record(line);
+                if (record != null) word_frequency.put(record.getKey(), record.getValue()); // Populate frequency map
             }
         } catch (IOException e) {
             System.out.println("Error loading search frequency from CSV: " + e.getMessage());
         }
     }
 
-    // Method to save search frequency data to a CSV file
-    static void save_search_freq_csv() {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter("search_frequency.csv"))) {
-            bw.write("Word,Frequency"); // Write CSV header
-            bw.newLine();
-            // Write each word-frequency pair
-            for (Map.Entry<String, Integer> entry : word_frequency.entrySet()) {
-                bw.write(String.format("\"%s\",%d", entry.getKey(), entry.getValue()));
+    // Method to save search frequency data to a CSV file; written to a temporary file and renamed
+    // so a crash never leaves a half-written snapshot
+    static boolean save_search_freq_csv(Map<String, Integer> counts) {
+        File tmp = new File(search_freq_log.CSV_FILE + ".tmp");
+        try {
+            try (BufferedWriter bw = new BufferedWriter(new FileWriter(tmp))) {
+                bw.write("Word,Frequency"); // Write CSV header
                 bw.newLine();
+                // Write each word-frequency pair
+                for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                    bw.write("\"" + entry.getKey().replace("\"", "\"\"") + "\"," + entry.getValue());
+                    bw.newLine();
+                }
             }
+            Files.move(tmp.toPath(), new File(search_freq_log.CSV_FILE).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
         } catch (IOException e) {
             System.out.println("Error saving search frequency to CSV: " + e.getMessage());
+            return false;
         }
     }
 
     // Method to load subscription plans from a CSV file
     static void load_subs_plans(String fileName) {
+        try {
+            plans.addAll(read_subs_plans(fileName));
+            query_cache.invalidate();
+        } catch (IOException e) {
+            System.out.println("Error reading subscription file: " + e.getMessage());
+        }
+    }
+
+    // Method to parse the subscription plans CSV file into plan objects
+    static List<subscription_plan> read_subs_plans(String fileName) throws IOException {
+        List<subscription_plan> result = new ArrayList<>();
         try (BufferedReader br = new BufferedReader(new FileReader(fileName))) {
             br.readLine(); // Skip header row
             String line;
@@ -319,36 +6205,251 @@ public class Main {
                 String[] details = split_csv(line);
                 if (details.length == 7) {
                     // Create and add new subscription plan object
-                    plans.add(new subscription_plan(details[0], details[1], details[2], details[3], details[4], details[5], details[6]));
+                    result.add(new subscription_plan(details[0], details[1], details[2], details[3], details[4], details[5], details[6]));
                 }
             }
-        } catch (IOException e) {
-            System.out.println("Error reading subscription file: " + e.getMessage());
         }
+        return result;
     }
 
-    // Method to load media data from multiple CSV files
+    // Target size of a parse chunk; large files are cut at the first record boundary past each multiple
+    static final long CSV_CHUNK_BYTES = 8L << 20;
+    // Size of the window mapped at a time while scanning a file for record boundaries
+    static final long CSV_SCAN_WINDOW = 256L << 20;
+    // One reusable tokenizer per loader thread
+    static final ThreadLocal<csv_tokenizer> CSV_TOKENIZER = ThreadLocal.withInitial(csv_tokenizer::new);
+
+    // Method to load media data from multiple CSV files; each file is memory-mapped, cut into chunks at
+    // record boundaries and parsed in parallel, then merged into media_list and the Trie in file and chunk order
     static void load_media_data(String[] files) {
-        for (String file : files) {
-            try (BufferedReader br = new BufferedReader(new FileReader(file))) {
-                br.readLine(); // Skip header row
-                String line;
-                while ((line = br.readLine()) != null) {
-                    String[] parts = split_csv(line);
-                    if (parts.length >= 8) {
-                        // Handle optional season field
-                        String season = parts.length > 5 ? parts[5] : "-";
-                        Media media = new Media(parts[0], parts[1], parts[2], parts[3], parts[4], season,
-                                parts.length > 6 ? parts[6] : parts[5],
-                                parts.length > 7 ? parts[7] : parts[6],
-                                parts.length > 8 ? parts[8] : parts[7]);
-                        media_list.add(media);
-                        trie.insert(media.name, media); // Insert into Trie for searching
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+        try {
+            long start = System.nanoTime();
+            long[] started_at = new long[files.length]; // When each file's boundary scan began
+            long[] done_at = new long[files.length]; // Completion time of each file's last chunk
+            List<CompletableFuture<List<List<String[]>>>> loads = new ArrayList<>();
+            for (int f = 0; f < files.length; f++) {
+                final String file = files[f];
+                final int slot = f;
+                loads.add(CompletableFuture.supplyAsync(() -> {
+                    started_at[slot] = System.nanoTime();
+                    return record_chunks(file);
+                }, pool).thenCompose(bounds -> {
+                    List<CompletableFuture<List<String[]>>> chunks = new ArrayList<>();
+                    for (int c = 0; c + 1 < bounds.length; c++) {
+                        final long from = bounds[c], to = bounds[c + 1];
+                        final boolean header = c == 0;
+                        chunks.add(CompletableFuture.supplyAsync(() -> parse_media_chunk(file, from, to, header), pool));
+                    }
+                    return CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+                        done_at[slot] = System.nanoTime();
+                        List<List<String[]>> parsed = new ArrayList<>();
+                        for (CompletableFuture<List<String[]>> chunk : chunks) parsed.add(chunk.join());
+                        return parsed;
+                    });
+                }));
+            }
+            // Merge serially in the order the files were given so IDs and Trie contents are deterministic; each record
+            // becomes the next media_store row, and media_list holds the view over it
+            if (media_store.rows != media_list.size()) media_store.build();
+            for (int f = 0; f < files.length; f++) {
+                try {
+                    List<List<String[]>> chunks = loads.get(f).join();
+                    int count = 0;
+                    for (List<String[]> chunk : chunks) {
+                        for (String[] r : chunk) {
+                            Media media = media_store.append(r[0], r[1], r[2], r[3], r[4], r[5], r[6], r[7], r[8]);
+                            media_list.add(media);
+                            trie.insert(media.name, media); // Insert into Trie for searching
+                            count++;
+                        }
                     }
+                    System.out.printf("Loaded %d titles from %s in %.1f ms (%d chunk(s))%n",
+                            count, files[f], (done_at[f] - started_at[f]) / 1e6, chunks.size());
+                } catch (CompletionException e) {
+                    Throwable cause = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+                    System.out.println("Error reading " + files[f] + ": " + cause.getMessage());
                 }
-            } catch (IOException e) {
-                System.out.println("Error reading " + file + ": " + e.getMessage());
             }
+            metrics.time("load_media_data", start);
+        } finally {
+            query_cache.invalidate(); // Results cached before the load no longer describe the catalog
+            pool.shutdown();
+        }
+    }
+
+    // Method to find chunk boundaries for a CSV file; every boundary starts a record (newlines inside quotes are skipped)
+    static long[] record_chunks(String file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            if (size <= CSV_CHUNK_BYTES) return size == 0 ? new long[]{0} : new long[]{0, size};
+            List<Long> bounds = new ArrayList<>();
+            bounds.add(0L);
+            long target = CSV_CHUNK_BYTES;
+            boolean in_quotes = false;
+            for (long pos = 0; pos < size; ) {
+                int window = (int) Math.min(size - pos, CSV_SCAN_WINDOW);
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, window);
+                for (int i = 0; i < window; i++) {
+                    byte b = buf.get(i);
+                    if (b == '"') {
+                        in_quotes = !in_quotes; // An escaped "" toggles twice, so parity stays correct
+                    } else if (b == '\n' && !in_quotes && pos + i + 1 >= target) {
+                        bounds.add(pos + i + 1);
+                        target = pos + i + 1 + CSV_CHUNK_BYTES;
+                    }
+                }
+                pos += window;
+            }
+            if (bounds.get(bounds.size() - 1) != size) bounds.add(size);
+            long[] result = new long[bounds.size()];
+            for (int i = 0; i < result.length; i++) result[i] = bounds.get(i);
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Method to parse the media records in one chunk of a CSV file into their nine fields (see media_fields)
+    static List<String[]> parse_media_chunk(String file, long from, long to, boolean skip_header) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+            csv_tokenizer tokenizer = CSV_TOKENIZER.get();
+            int limit = (int) (to - from);
+            int pos = skip_header ? tokenizer.next(buf, 0, limit) : 0; // Skip header row
+            List<String[]> parsed = new ArrayList<>();
+            while (pos < limit) {
+                pos = tokenizer.next(buf, pos, limit);
+                String[] record = media_fields(tokenizer.fields(buf));
+                if (record != null) parsed.add(record);
+            }
+            return parsed;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Method to lay CSV fields out as type, name, description, genre, release date, season, cast, platform and URL
+    // (the Media constructor's order), or return null if the row has too few fields
+    static String[] media_fields(String[] parts) {
+        if (parts.length < 8) return null;
+        // Handle optional season field
+        String season = parts.length > 5 ? parts[5] : "-";
+        return new String[]{parts[0], parts[1], parts[2], parts[3], parts[4], season,
+                parts.length > 6 ? parts[6] : parts[5],
+                parts.length > 7 ? parts[7] : parts[6],
+                parts.length > 8 ? parts[8] : parts[7]};
+    }
+
+    // Method to build a media item, detached from the catalog, from fields laid out by media_fields
+    static Media media_from_fields(String[] f) {
+        return new Media(f[0], f[1], f[2], f[3], f[4], f[5], f[6], f[7], f[8]);
+    }
+
+    // Class implementing an allocation-light RFC 4180 tokenizer; fields are reported as byte offsets into
+    // the buffer and only decoded to strings on request
+    static class csv_tokenizer {
+        // Start and end (exclusive) offsets of each field of the last record, with whitespace trimmed
+        int[] starts = new int[16];
+        int[] ends = new int[16];
+        // Whether a quoted field contains "" escapes that must be collapsed when decoding
+        boolean[] escaped = new boolean[16];
+        // Number of fields in the last record
+        int count;
+        // Scratch buffer reused for decoding
+        private byte[] scratch = new byte[256];
+
+        // Method to tokenize the record starting at pos, returning the offset just past its line terminator
+        int next(ByteBuffer buf, int pos, int limit) {
+            count = 0;
+            int i = pos;
+            while (true) {
+                int j = i;
+                while (j < limit && is_blank(buf.get(j))) j++;
+                int start, end;
+                boolean has_escape = false;
+                if (j < limit && buf.get(j) == '"') {
+                    // Quoted field: runs to the next unpaired quote and may contain commas and newlines
+                    start = ++j;
+                    while (j < limit) {
+                        if (buf.get(j) == '"') {
+                            if (j + 1 < limit && buf.get(j + 1) == '"') {
+                                has_escape = true;
+                                j += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        j++;
+                    }
+                    end = j;
+                    if (j < limit) j++; // Skip closing quote
+                    // Ignore anything between the closing quote and the next delimiter
+                    while (j < limit && buf.get(j) != ',' && buf.get(j) != '\n' && buf.get(j) != '\r') j++;
+                } else {
+                    start = j;
+                    while (j < limit && buf.get(j) != ',' && buf.get(j) != '\n' && buf.get(j) != '\r') j++;
+                    end = j;
+                }
+                while (end > start && is_blank(buf.get(end - 1))) end--;
+                add(start, end, has_escape);
+
+                if (j >= limit) return limit;
+                byte delimiter = buf.get(j);
+                if (delimiter == ',') {
+                    i = j + 1;
+                    if (i >= limit) { // Trailing comma at end of input: one more empty field
+                        add(i, i, false);
+                        return limit;
+                    }
+                    continue;
+                }
+                if (delimiter == '\r' && j + 1 < limit && buf.get(j + 1) == '\n') j++;
+                return j + 1;
+            }
+        }
+
+        // Helper method to record one field, growing the offset arrays as needed
+        private void add(int start, int end, boolean has_escape) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+                escaped = Arrays.copyOf(escaped, count * 2);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            escaped[count] = has_escape;
+            count++;
+        }
+
+        // Method to decode one field of the last record as UTF-8
+        String field(ByteBuffer buf, int index) {
+            int len = ends[index] - starts[index];
+            if (len == 0) return "";
+            if (scratch.length < len) scratch = new byte[Math.max(len, scratch.length * 2)];
+            buf.get(starts[index], scratch, 0, len);
+            if (escaped[index]) {
+                // Collapse each "" pair into a single quote
+                int out = 0;
+                for (int k = 0; k < len; k++) {
+                    scratch[out++] = scratch[k];
+                    if (scratch[k] == '"' && k + 1 < len && scratch[k + 1] == '"') k++;
+                }
+                len = out;
+            }
+            return new String(scratch, 0, len, StandardCharsets.UTF_8);
+        }
+
+        // Method to decode every field of the last record
+        String[] fields(ByteBuffer buf) {
+            String[] values = new String[count];
+            for (int k = 0; k < count; k++) values[k] = field(buf, k);
+            return values;
+        }
+
+        // Helper method to check for spaces and tabs that surround a field
+        private static boolean is_blank(byte b) {
+            return b == ' ' || b == '\t';
         }
     }
 
@@ -375,6 +6476,7 @@ public class Main {
         int sub_choice;
         do {
             // Display subscription menu options
+            catalog_reloader.apply_pending();
             System.out.println("\n=== Subscription Plans ===");
             System.out.println("1. Netflix");
             System.out.println("2. Amazon Prime");
@@ -382,14 +6484,16 @@ public class Main {
             System.out.println("4. Crave");
             System.out.println("5. Order Cheapest to Expensive");
             System.out.println("6. Order Expensive to Cheapest");
-            System.out.println("7. Back to Main Menu");
+            System.out.println("7. Find Plans by Price and Quality");
+            System.out.println("8. Cheapest Plans for Platforms or Titles");
+            System.out.println("9. Back to Main Menu");
             System.out.print("Enter your choice: ");
 
             try {
                 sub_choice = scanner.nextInt();
                 scanner.nextLine(); // Clear newline
             } catch (InputMismatchException e) {
-                System.out.println("Invalid input. Please enter a number between 1 and 7.");
+                System.out.println("Invalid input. Please enter a number between 1 and 9.");
                 scanner.nextLine();
                 sub_choice = -1;
                 continue;
@@ -401,12 +6505,14 @@ public class Main {
                 case 2: show_platform_detail("Amazon Prime Video"); break;
                 case 3: show_platform_detail("Apple TV+"); break;
                 case 4: show_platform_detail("Crave"); break;
-                case 5: quick_sort(plans, 0, plans.size() - 1, true); display_plans_sorted(); break;
-                case 6: quick_sort(plans, 0, plans.size() - 1, false); display_plans_sorted(); break;
-                case 7: break;
-                default: System.out.println("Invalid choice. Please enter a number between 1 and 7.");
+                case 5: display_plans_sorted(sorted_plans(true)); break;
+                case 6: display_plans_sorted(sorted_plans(false)); break;
+                case 7: find_plans(scanner); break;
+                case 8: find_cheapest_bundle(scanner); break;
+                case 9: break;
+                default: System.out.println("Invalid choice. Please enter a number between 1 and 9.");
             }
-        } while (sub_choice != 7);
+        } while (sub_choice != 9);
     }
 
     // Method to display subscription plans for a specific platform
@@ -417,23 +6523,23 @@ public class Main {
                 .forEach(System.out::println);
     }
 
-    // QuickSort algorithm to sort subscription plans by price
-    static void quick_sort(List<subscription_plan> list, int low, int high, boolean ascending) {
+    // QuickSort algorithm to sort subscription plans by the given order
+    static void quick_sort(List<subscription_plan> list, int low, int high, Comparator<subscription_plan> order) {
         if (low < high) {
-            int pi = partition(list, low, high, ascending); // Get partition index
-            quick_sort(list, low, pi - 1, ascending); // Sort left partition
-            quick_sort(list, pi + 1, high, ascending); // Sort right partition
+            int pi = partition(list, low, high, order); // Get partition index
+            quick_sort(list, low, pi - 1, order); // Sort left partition
+            quick_sort(list, pi + 1, high, order); // Sort right partition
         }
     }
 
-    // Partition method for QuickSort
-    static int partition(List<subscription_plan> list, int low, int high, boolean ascending) {
-        double pivot = list.get(high).get_price();
+    // Partition method for QuickSort; compares the pre-parsed fields through the comparator
+    static int partition(List<subscription_plan> list, int low, int high, Comparator<subscription_plan> order) {
+        // Use the middle element as pivot so already sorted input does not degrade to quadratic time
+        Collections.swap(list, (low + high) >>> 1, high);
+        subscription_plan pivot = list.get(high);
         int i = low - 1;
         for (int j = low; j < high; j++) {
-            // Compare based on ascending or descending order
-            boolean condition = ascending ? (list.get(j).get_price() < pivot) : (list.get(j).get_price() > pivot);
-            if (condition) {
+            if (order.compare(list.get(j), pivot) < 0) {
                 i++;
                 Collections.swap(list, i, j); // Swap elements
             }
@@ -442,16 +6548,68 @@ public class Main {
         return i + 1;
     }
 
+    // Method to return a sorted copy of the subscription plans, leaving the shared list untouched
+    static List<subscription_plan> sorted_plans(boolean ascending) {
+        long started = metrics.start();
+        List<subscription_plan> copy = new ArrayList<>(plans);
+        quick_sort(copy, 0, copy.size() - 1, subscription_plan.order(ascending));
+        metrics.time("plan_sort", started);
+        return copy;
+    }
+
     // Method to display sorted subscription plans
-    static void display_plans_sorted() {
+    static void display_plans_sorted(List<subscription_plan> sorted) {
         System.out.println("\nSorted Subscription Plans by Price:");
-        plans.forEach(System.out::println);
+        sorted.forEach(System.out::println);
+    }
+
+    // Method to ask for a price limit and minimum quality and list the matching plans, cheapest first
+    static void find_plans(Scanner scanner) {
+        System.out.print("Maximum monthly price (e.g. 15, or press Enter for any): ");
+        String price = scanner.nextLine().trim();
+        System.out.print("Minimum resolution (720p, 1080p, 4K, 4K HDR, or press Enter for any): ");
+        String resolution = scanner.nextLine().trim();
+        System.out.print("Minimum concurrent streams (or press Enter for any): ");
+        String streams = scanner.nextLine().trim();
+        int max_cents = price.isEmpty() ? -1 : subscription_plan.parse_cents(price);
+        int min_tier = resolution.isEmpty() ? 0 : subscription_plan.resolution_tier(resolution);
+        if (max_cents == Integer.MAX_VALUE || (!resolution.isEmpty() && min_tier == 0) || !streams.matches("\\d{0,8}")) {
+            System.out.println("Invalid price, resolution or stream count.");
+            return;
+        }
+        List<subscription_plan> matches = plan_index.query(max_cents, min_tier, streams.isEmpty() ? 0 : Integer.parseInt(streams), null);
+        if (matches.isEmpty()) {
+            System.out.println("No plans match those requirements.");
+            return;
+        }
+        System.out.println("\nMatching Plans (cheapest first):");
+        matches.forEach(System.out::println);
+    }
+
+    // Method to ask for platforms and titles to cover and show the cheapest set of plans that covers them
+    static void find_cheapest_bundle(Scanner scanner) {
+        System.out.print("Enter platforms or titles separated by ';' (e.g. Netflix; Oppenheimer): ");
+        List<String> items = new ArrayList<>();
+        for (String item : scanner.nextLine().split(";")) if (!item.trim().isEmpty()) items.add(item.trim());
+        if (items.isEmpty()) {
+            System.out.println("Nothing to cover.");
+            return;
+        }
+        plan_index.bundle bundle = plan_index.cheapest_bundle(items, 0, 0);
+        for (String item : bundle.uncovered) System.out.println("No plan covers: " + item);
+        if (!bundle.uncovered.isEmpty() && offheap_catalog.active()) {
+            System.out.println("Titles are not looked up with --offheap; only platform names can be covered.");
+        }
+        if (bundle.plans.isEmpty()) return;
+        System.out.printf("%nCheapest bundle: $%d.%02d per month%n", bundle.total_cents / 100, bundle.total_cents % 100);
+        bundle.plans.forEach(System.out::println);
     }
 
     // Method to display and handle the media menu (Movies or TV Shows)
     static void show_media_menu(Scanner scanner, String type) {
         int choice;
         do {
+            catalog_reloader.apply_pending();
             System.out.println("\n=== " + type + " Menu ===");
             System.out.println("1. Search by Name");
             System.out.println("2. Search by Genre");
@@ -476,10 +6634,10 @@ public class Main {
                 case 1: search_by_name(scanner, type); break;
                 case 2: search_by_genre(scanner, type); break;
                 case 3: generic_word_search(scanner, type); break;
-                case 4: display_platform_media("Netflix", type); break;
-                case 5: display_platform_media("Amazon Prime Video", type); break;
-                case 6: display_platform_media("Apple TV+", type); break;
-                case 7: display_platform_media("Crave", type); break;
+                case 4: display_platform_media(scanner, "Netflix", type); break;
+                case 5: display_platform_media(scanner, "Amazon Prime Video", type); break;
+                case 6: display_platform_media(scanner, "Apple TV+", type); break;
+                case 7: display_platform_media(scanner, "Crave", type); break;
                 case 8: break;
                 default:
                     if (choice != -1) {
@@ -493,25 +6651,56 @@ public class Main {
     static void search_by_name(Scanner scanner, String type) {
         System.out.print("Enter " + type + " name prefix: ");
         String prefix = scanner.nextLine();
-        List<String> suggestions = trie.get_suggestions(prefix, type);
+        if (offheap_catalog.active()) {
+            search_offheap(scanner, prefix, offheap_catalog.names(prefix, type, Trie.TOP_K), s -> offheap_catalog.named(s, type));
+            return;
+        }
+        List<String> suggestions = trie.suggest(prefix, type, Trie.TOP_K);
+        String heading = "Top Suggestions (most searched and most recent first):";
+        if (suggestions.isEmpty()) {
+            // Fall back to typo-tolerant matching
+            suggestions = trie.suggest_fuzzy(prefix, type, Trie.TOP_K, typo_budget(prefix));
+            heading = "No exact matches. Did you mean:";
+        }
         if (suggestions.isEmpty()) {
             System.out.println("No suggestions found.");
             return;
         }
-        System.out.println("\nSuggestions:");
+        System.out.println("\n" + heading);
         suggestions.forEach(s -> System.out.println("- " + s));
         System.out.print("Select a name to view details (or press Enter to skip): ");
         String selected = scanner.nextLine();
         if (!selected.isEmpty()) {
-            // Display details of selected media item
-            media_list.stream()
-                    .filter(m -> m.type.equals(type) && m.name.equalsIgnoreCase(selected))
-                    .forEach(m -> System.out.println(m + "\n------------------------"));
+            // Display each matching title once, with every platform carrying it and the cheapest plan that unlocks it
+            List<watch_index.work> matches = watch_index.named(selected, type);
+            Map<String, subscription_plan> cheapest = plan_index.cheapest_plans(0, 0);
+            media_writer.page(scanner, result_cursor.of(matches), (out, w) -> media_writer.write_work(out, w, cheapest));
+            if (!matches.isEmpty()) show_similar(matches.get(0).listings.get(0));
         }
     }
 
+    // Number of similar titles listed under a selected title
+    static final int SIMILAR_SHOWN = 5;
+
+    // Method to list the titles most similar to the given one, across all platforms
+    static void show_similar(Media m) {
+        List<Media> similar = similar_index.similar(m, SIMILAR_SHOWN);
+        if (similar.isEmpty()) return;
+        System.out.println("\nMore like " + m.name + ":");
+        for (Media other : similar) System.out.println("- " + other.name + " (" + other.genre() + ", " + other.platform() + ")");
+    }
+
+    // Method to tell the user that a feature needs the heap catalog while titles are memory-mapped (--offheap);
+    // returns true when the feature should not run
+    static boolean needs_heap_catalog(String feature) {
+        if (!offheap_catalog.active()) return false;
+        System.out.println(feature + " is not available with --offheap; restart without it to use this feature.");
+        return true;
+    }
+
     // Method to search media by genre with spell-check functionality
     static void search_by_genre(Scanner scanner, String type) {
+        if (needs_heap_catalog("Genre search")) return;
         System.out.println("Available Genres: Comedy, Thriller, Animation, Action, Drama, Horror, Adventure, Sci-fi, Sports, Documentary, Others");
         System.out.print("Enter genre: ");
         String genre = scanner.nextLine();
@@ -521,11 +6710,22 @@ public class Main {
             if (!scanner.nextLine().equalsIgnoreCase("y")) return;
             genre = genre_match;
         }
-        final String final_genre = genre;
-        // Filter and display media items matching the genre
-        media_list.stream()
-                .filter(m -> m.type.equals(type) && map_to_valid_genre(m.genre).equalsIgnoreCase(final_genre))
-                .forEach(m -> System.out.println(m + "\n------------------------"));
+        // Display media items matching the genre, a page at a time
+        media_writer.page(scanner, result_cursor.of(genre_ids(genre, type)), media_writer::write_entry);
+    }
+
+    // Method to find media items of a type whose genre maps to the given genre
+    static List<Media> genre_media(String genre, String type) {
+        return facet_index.select(genre_ids(genre, type));
+    }
+
+    // Method to return the (cached, shared) IDs of media items of a type whose genre maps to the given genre
+    static BitSet genre_ids(String genre, String type) {
+        long started = metrics.start();
+        BitSet ids = query_cache.get("genre", type, genre.toLowerCase(),
+                () -> facet_index.filter(type, null, genre), bits -> 32 + bits.size() / 8);
+        metrics.time("genre_search", started);
+        return ids;
     }
 
     // Method to validate if a genre is in the predefined list
@@ -549,18 +6749,28 @@ public class Main {
         return closest;
     }
 
-    // Levenshtein distance algorithm to measure string similarity
+    // Levenshtein distance algorithm to measure string similarity, keeping only two rows of the DP table
     static int lev_dist(String s1, String s2) {
-        int[][] dp = new int[s1.length() + 1][s2.length() + 1];
-        for (int i = 0; i <= s1.length(); i++) {
-            for (int j = 0; j <= s2.length(); j++) {
-                if (i == 0) dp[i][j] = j; // Base case: empty s1
-                else if (j == 0) dp[i][j] = i; // Base case: empty s2
-                else dp[i][j] = Math.min(Math.min(dp[i - 1][j] + 1, dp[i][j - 1] + 1),
-                        dp[i - 1][j - 1] + (s1.charAt(i - 1) == s2.charAt(j - 1) ? 0 : 1));
+        int[] prev = new int[s2.length() + 1];
+        int[] curr = new int[s2.length() + 1];
+        for (int j = 0; j <= s2.length(); j++) prev[j] = j; // Base case: empty s1
+        for (int i = 1; i <= s1.length(); i++) {
+            curr[0] = i; // Base case: empty s2
+            for (int j = 1; j <= s2.length(); j++) {
+                curr[j] = Math.min(Math.min(prev[j] + 1, curr[j - 1] + 1),
+                        prev[j - 1] + (s1.charAt(i - 1) == s2.charAt(j - 1) ? 0 : 1));
             }
+            int[] swap = prev;
+            prev = curr;
+            curr = swap;
         }
-        return dp[s1.length()][s2.length()];
+        return prev[s2.length()];
+    }
+
+    // Method to choose how many typos to tolerate for a query: none for very short input, then 1, then 2
+    static int typo_budget(String query) {
+        int length = query.trim().length();
+        return length <= 3 ? 0 : length <= 6 ? 1 : 2;
     }
 
     // Method to map any genre to a valid genre or "Others"
@@ -571,71 +6781,94 @@ public class Main {
 
     // Method for generic word search in media names and descriptions
     static void generic_word_search(Scanner scanner, String type) {
-        System.out.print("Enter word to search in " + type + " name/description: ");
-        String word = scanner.nextLine().toLowerCase().trim();
-        // Update search frequency for the word
-        word_frequency.put(word, word_frequency.getOrDefault(word, 0) + 1);
-        save_search_freq_csv(); // Save updated frequencies
-
-        // Regular expression to match the word (with optional 's')
-        String regex = "\\b" + Pattern.quote(word) + "(s)?\\b";
-        Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
-        List<Map.Entry<Media, Integer>> res_with_freq = new ArrayList<>();
-
-        for (Media m : media_list) {
-            if (!m.type.equals(type)) continue;
-            Matcher nameMatcher = pattern.matcher(m.name);
-            Matcher descMatcher = pattern.matcher(m.description);
-            if (nameMatcher.find() || descMatcher.find()) {
-                int frequency = 0;
-                descMatcher.reset();
-                while (descMatcher.find()) {
-                    frequency++; // Count occurrences in description
-                }
-                res_with_freq.add(new AbstractMap.SimpleEntry<>(m, frequency));
-            }
-        }
-
-        // Sort results by frequency (descending order for page ranking)
-        res_with_freq.sort((entry1, entry2) -> entry2.getValue().compareTo(entry1.getValue()));
+        if (needs_heap_catalog("Word search")) return;
+        System.out.print("Enter word to search in " + type + " name/description (use OR for alternatives): ");
+        String query = scanner.nextLine().trim();
+        String word = query.toLowerCase();
+        List<Map.Entry<Media, Integer>> res_with_freq = word_search(query, type);
 
         if (res_with_freq.isEmpty()) {
             System.out.println("No " + type + "s found with the word '" + word + "' or '" + word + "s'.");
         } else {
             System.out.println("\nResults (ranked by frequency in description):");
-            for (Map.Entry<Media, Integer> entry : res_with_freq) {
-                Media m = entry.getKey();
-                int freq = entry.getValue();
-                System.out.println(m + "\n[Word '" + word + "' appears " + freq + " time(s) in description]");
-                System.out.println("------------------------");
-            }
+            media_writer.page(scanner, result_cursor.of(res_with_freq), (out, entry) -> {
+                media_writer.write_media(out, entry.getKey());
+                out.print("\n[Word '");
+                out.print(word);
+                out.print("' appears ");
+                out.print(entry.getValue());
+                out.print(" time(s) in description]\n");
+                out.print(media_writer.DIVIDER);
+                out.print('\n');
+            });
         }
         System.out.println("Search frequency for '" + word + "': " + word_frequency.get(word));
     }
 
-    // Method to display all media items for a specific platform and type
-    static void display_platform_media(String platform, String type) {
+    // Method to run a generic word search and record its search frequency; results are ranked by frequency in description
+    static List<Map.Entry<Media, Integer>> word_search(String query, String type) {
+        String word = query.trim().toLowerCase();
+        // Update search frequency for the word; persisted in the background by the frequency log
+        word_frequency.merge(word, 1, Integer::sum);
+        search_freq_log.append(word);
+
+        // Look up matching media in the inverted index (word or its plural, AND/OR across words); repeated
+        // queries are answered from the query cache
+        long started = metrics.start();
+        List<Map.Entry<Media, Integer>> results = query_cache.get("word", type, query_cache.words_key(query), () -> {
+            List<Map.Entry<Media, Integer>> res_with_freq = word_index.search(query, type);
+            // Sort results by frequency (descending order for page ranking)
+            res_with_freq.sort((entry1, entry2) -> entry2.getValue().compareTo(entry1.getValue()));
+            return Collections.unmodifiableList(res_with_freq);
+        }, list -> query_cache.list_bytes(list, 48));
+        metrics.time("word_search", started);
+        metrics.record("word_search_results", "results", results.size());
+        return results;
+    }
+
+    // Method to display all media items for a specific platform and type, a page at a time
+    static void display_platform_media(Scanner scanner, String platform, String type) {
         System.out.println("\nAll " + type + "s on " + platform + ":");
-        media_list.stream()
-                .filter(m -> m.type.equals(type) && m.platform.equalsIgnoreCase(platform))
-                .forEach(m -> System.out.println(m + "\n------------------------"));
+        if (offheap_catalog.active()) {
+            media_writer.page(scanner, offheap_catalog.platform(platform, type), offheap_catalog::write_entry);
+            return;
+        }
+        media_writer.page(scanner, result_cursor.of(platform_ids(platform, type)), media_writer::write_entry);
+    }
+
+    // Method to find all media items of a type on a platform
+    static List<Media> platform_media(String platform, String type) {
+        return facet_index.select(platform_ids(platform, type));
+    }
+
+    // Method to return the (cached, shared) IDs of all media items of a type on a platform
+    static BitSet platform_ids(String platform, String type) {
+        long started = metrics.start();
+        BitSet ids = query_cache.get("platform", type, platform.toLowerCase(),
+                () -> facet_index.filter(type, platform, null), bits -> 32 + bits.size() / 8);
+        metrics.time("platform_search", started);
+        return ids;
     }
 
     // Method to display and handle the "More Information" menu
     static void show_more_info_menu(Scanner scanner) {
         int choice;
         do {
+            catalog_reloader.apply_pending();
             System.out.println("\n=== More Information Menu ===");
             System.out.println("1. Search by Cast");
             System.out.println("2. Get Contact Details");
-            System.out.println("3. Back to Main Menu");
+            System.out.println("3. Co-star Connections");
+            System.out.println("4. Platform Exclusives");
+            System.out.println("5. Performance Metrics");
+            System.out.println("6. Back to Main Menu");
             System.out.print("Enter your choice: ");
 
             try {
                 choice = scanner.nextInt();
                 scanner.nextLine();
             } catch (InputMismatchException e) {
-                System.out.println("Invalid choice. Please enter a number between 1 and 3.");
+                System.out.println("Invalid choice. Please enter a number between 1 and 6.");
                 scanner.nextLine();
                 choice = -1;
             }
@@ -643,13 +6876,61 @@ public class Main {
             switch (choice) {
                 case 1: search_by_cast(scanner); break;
                 case 2: get_contact_info(scanner); break;
-                case 3: System.out.println("Returning to Main Menu..."); break;
+                case 3: show_costars(scanner); break;
+                case 4: show_exclusives(scanner); break;
+                case 5:
+                    System.out.println("\n=== Performance Metrics ===");
+                    System.out.print(metrics.report());
+                    break;
+                case 6: System.out.println("Returning to Main Menu..."); break;
                 default:
                     if (choice != -1) {
-                        System.out.println("Invalid choice. Please enter a number between 1 and 3.");
+                        System.out.println("Invalid choice. Please enter a number between 1 and 6.");
                     }
             }
-        } while (choice != 3);
+        } while (choice != 6);
+    }
+
+    // Method to list the titles only one platform carries, with the cheapest plan that unlocks them
+    static void show_exclusives(Scanner scanner) {
+        if (needs_heap_catalog("Platform exclusives")) return;
+        System.out.println("\n=== Platform Exclusives ===");
+        System.out.println("Select a platform:");
+        System.out.println("1. Netflix");
+        System.out.println("2. Amazon Prime");
+        System.out.println("3. Apple TV+");
+        System.out.println("4. Crave");
+        System.out.print("Enter your choice: ");
+
+        int platform_choice;
+        try {
+            platform_choice = scanner.nextInt();
+            scanner.nextLine();
+        } catch (InputMismatchException e) {
+            System.out.println("Invalid choice. Please enter a number between 1 and 4.");
+            scanner.nextLine();
+            return;
+        }
+
+        String platform;
+        switch (platform_choice) {
+            case 1: platform = "Netflix"; break;
+            case 2: platform = "Amazon Prime Video"; break;
+            case 3: platform = "Apple TV+"; break;
+            case 4: platform = "Crave"; break;
+            default:
+                System.out.println("Invalid choice. Please enter a number between 1 and 4.");
+                return;
+        }
+
+        List<watch_index.work> exclusives = watch_index.exclusive(platform, null);
+        if (exclusives.isEmpty()) {
+            System.out.println("No titles are exclusive to " + platform + ".");
+            return;
+        }
+        System.out.println("\n" + exclusives.size() + " title(s) only on " + platform + ":");
+        Map<String, subscription_plan> cheapest = plan_index.cheapest_plans(0, 0);
+        media_writer.page(scanner, result_cursor.of(exclusives), (out, w) -> media_writer.write_work(out, w, cheapest));
     }
 
     // Method to retrieve and display contact information for a platform
@@ -705,14 +6986,19 @@ public class Main {
         }
     }
 
-    // Method to fetch contact information by parsing platform websites
+    // Method to fetch contact information, served from the contact cache
     static String fetch_contact_info(String platform) throws Exception {
-        return web_html_parser(platform);
+        return contact_cache.get(platform);
     }
 
-    // Method to parse HTML from platform websites to extract contact details
-    static String web_html_parser(String platform) throws Exception {
-        String url = "";
+    // Precompiled patterns for email addresses and phone numbers in platform pages
+    static final Pattern EMAIL_PATTERN = Pattern.compile("[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}");
+    static final Pattern TOLL_FREE_PATTERN = Pattern.compile("1-8\\d{2}-[A-Z0-9-]{6,8}");
+    static final Pattern PHONE_PATTERN = Pattern.compile("\\+?\\d{0,3}[\\s-]?(\\(?\\d{3}\\)?[\\s-]?\\d{3}[\\s-]?\\d{4})");
+
+    // Method to return the contact page URL for a platform; -Dbingebuddy.contact.url.<platform>=... overrides it
+    static String contact_url(String platform) throws Exception {
+        String url;
         switch (platform) {
             case "netflix":
                 url = "https://www.netflix.com";
@@ -729,25 +7015,26 @@ public class Main {
             default:
                 throw new Exception("Unsupported platform: " + platform);
         }
+        return System.getProperty("bingebuddy.contact.url." + platform, url);
+    }
+
+    // Method to parse HTML from platform websites to extract contact details
+    static String web_html_parser(String platform) throws Exception {
+        String url = contact_url(platform);
 
         try {
             // Use Jsoup to fetch and parse the webpage
+            long started = metrics.start();
             Document doc = Jsoup.connect(url)
                     .userAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/90.0.4430.93 Safari/537.36")
                     .timeout(10000)
                     .get();
+            metrics.time("contact_fetch", started);
 
             String text = doc.text();
-            // Regex pattern for email addresses
-            String regex_email = "[a-zA-Z0-9._%+-]+@[a-zA-Z0-9.-]+\\.[a-zA-Z]{2,}";
-            Pattern email_pattern = Pattern.compile(regex_email);
-            Matcher email_matcher = email_pattern.matcher(text);
-            // Regex pattern for phone numbers, adjusted per platform
-            String regex_phone = (platform.equals("apple-tv") || platform.equals("crave")) ?
-                    "1-8\\d{2}-[A-Z0-9-]{6,8}" :
-                    "\\+?\\d{0,3}[\\s-]?(\\(?\\d{3}\\)?[\\s-]?\\d{3}[\\s-]?\\d{4})";
-
-            Pattern phone_pattern = Pattern.compile(regex_phone);
+            Matcher email_matcher = EMAIL_PATTERN.matcher(text);
+            // Phone number pattern, adjusted per platform
+            Pattern phone_pattern = (platform.equals("apple-tv") || platform.equals("crave")) ? TOLL_FREE_PATTERN : PHONE_PATTERN;
             Matcher phone_match = phone_pattern.matcher(text);
 
             StringBuilder contact_info = new StringBuilder();
@@ -787,6 +7074,7 @@ public class Main {
 
             return contact_info.toString();
         } catch (IOException e) {
+            metrics.count("contact_fetch_errors");
             throw new Exception("Failed to fetch contact details due to a network or parsing error: " + e.getMessage());
         }
     }
@@ -795,12 +7083,22 @@ public class Main {
     static void search_by_cast(Scanner scanner) {
         System.out.print("Enter cast name prefix: ");
         String prefix = scanner.nextLine();
-        List<String> suggestions = cast_trie.fetch_cast_suggestions(prefix);
+        if (offheap_catalog.active()) {
+            search_offheap(scanner, prefix, offheap_catalog.cast_names(prefix, Trie.TOP_K), offheap_catalog::cast);
+            return;
+        }
+        List<String> suggestions = cast_trie.suggest(prefix, null, Trie.TOP_K);
+        String heading = "Top Suggestions (most searched and most recent first):";
+        if (suggestions.isEmpty()) {
+            // Fall back to typo-tolerant matching
+            suggestions = cast_trie.suggest_fuzzy(prefix, null, Trie.TOP_K, typo_budget(prefix));
+            heading = "No exact matches. Did you mean:";
+        }
         if (suggestions.isEmpty()) {
             System.out.println("No cast members found with prefix: " + prefix);
             return;
         }
-        System.out.println("\nSuggestions:");
+        System.out.println("\n" + heading);
         suggestions.forEach(s -> System.out.println("- " + s));
         System.out.print("Select a cast member to view details (or press Enter to skip): ");
         String selected = scanner.nextLine();
@@ -810,10 +7108,62 @@ public class Main {
                 System.out.println("No movies or TV shows found for cast member: " + selected);
             } else {
                 System.out.println("\nMovies & TV Shows featuring " + selected + ":");
-                for (Media m : results) {
-                    System.out.println(m + "\n------------------------");
-                }
+                media_writer.page(scanner, result_cursor.of(results), media_writer::write_entry);
             }
         }
     }
-}
\ No newline at end of file
+
+    // Method to finish a name or cast search against the off-heap catalog: list the completions (in name order, as
+    // it keeps no search ranking) and page through the titles of the one selected
+    static void search_offheap(Scanner scanner, String prefix, List<String> suggestions,
+                               Function<String, result_cursor<offheap_catalog.title>> lookup) {
+        if (suggestions.isEmpty()) {
+            System.out.println("No suggestions found for: " + prefix);
+            return;
+        }
+        System.out.println("\nSuggestions (in name order):");
+        suggestions.forEach(s -> System.out.println("- " + s));
+        System.out.print("Select one to view details (or press Enter to skip): ");
+        String selected = scanner.nextLine();
+        if (selected.isEmpty()) return;
+        result_cursor<offheap_catalog.title> cursor = lookup.apply(selected);
+        if (cursor.total == 0) System.out.println("No movies or TV shows found for: " + selected);
+        else media_writer.page(scanner, cursor, offheap_catalog::write_entry);
+    }
+
+    // Method to show an actor's most frequent co-stars and, optionally, how they connect to a second actor
+    static void show_costars(Scanner scanner) {
+        if (needs_heap_catalog("Co-star connections")) return;
+        System.out.print("Enter cast member name: ");
+        String actor = scanner.nextLine().trim();
+        String name = costar_graph.name(actor);
+        if (name == null) {
+            System.out.println("No cast member found: " + actor);
+            return;
+        }
+        List<Map.Entry<String, Integer>> costars = costar_graph.top_costars(name, costar_graph.TOP_COSTARS);
+        if (costars.isEmpty()) {
+            System.out.println(name + " has no co-stars in the catalog.");
+        } else {
+            System.out.println("\nTop co-stars of " + name + ":");
+            costars.forEach(e -> System.out.println("- " + e.getKey() + " (" + e.getValue() + (e.getValue() == 1 ? " title)" : " titles)")));
+        }
+        System.out.print("Connect to another cast member (or press Enter to skip): ");
+        String other = scanner.nextLine().trim();
+        if (other.isEmpty()) return;
+        if (costar_graph.name(other) == null) {
+            System.out.println("No cast member found: " + other);
+            return;
+        }
+        costar_graph.connection connection = costar_graph.path(name, other);
+        if (connection == null) {
+            System.out.println(name + " and " + costar_graph.name(other) + " are not connected through any title.");
+            return;
+        }
+        System.out.println("\n" + name + " -> " + costar_graph.name(other) + " in " + connection.hops() + (connection.hops() == 1 ? " hop:" : " hops:"));
+        for (int i = 0; i < connection.hops(); i++) {
+            System.out.println("- " + connection.actors.get(i) + " and " + connection.actors.get(i + 1) + " in "
+                    + connection.titles.get(i).name + " (" + connection.titles.get(i).platform() + ")");
+        }
+    }
+}
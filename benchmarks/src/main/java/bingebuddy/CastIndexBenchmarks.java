@@ -0,0 +1,50 @@
+package bingebuddy;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Benchmarks for building and querying the cast index
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class CastIndexBenchmarks {
+    // cast_index.build over the whole catalog on every core, including the cast Trie it populates
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Main.Trie build(CatalogState state) {
+        Main.cast_trie = new Main.Trie();
+        Main.cast_index.build();
+        return Main.cast_trie;
+    }
+
+    // The same build on a single thread, to show how it scales across cores
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Main.Trie build_serial(CatalogState state) {
+        Main.cast_trie = new Main.Trie();
+        Main.cast_index.build(1);
+        return Main.cast_trie;
+    }
+
+    // Normalizing a cast name as both the build and every cast search do
+    @Benchmark
+    public String normalize(CatalogState state) {
+        return Main.cast_index.normalize(state.cast_names[state.next()]);
+    }
+
+    // media_store.build, which reads every title back out of its row and re-encodes the catalog columns
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int encode_columns(CatalogState state) {
+        Main.media_store.build();
+        return Main.media_store.actors.size();
+    }
+
+    @Benchmark
+    public List<Main.Media> search(CatalogState state) {
+        return Main.cast_index.search(state.cast_names[state.next()]);
+    }
+}
@@ -0,0 +1,102 @@
+package bingebuddy;
+
+import java.util.*;
+import org.openjdk.jmh.annotations.*;
+
+// Shared benchmark state: the bundled catalog, or a synthetic catalog scaled up from it, loaded into Main's indexes
+@State(Scope.Benchmark)
+public class CatalogState {
+    // Catalog to run against: the bundled CSV files or a synthetic catalog with this many titles
+    @Param({"bundled", "10000", "100000", "1000000"})
+    public String catalog;
+
+    // Directory holding the bundled CSV files (benchmarks run from the benchmarks directory by default)
+    static final String DATA_DIR = System.getProperty("bingebuddy.data.dir", "..");
+    // Number of sample queries cycled through by the lookup benchmarks
+    static final int SAMPLES = 1024;
+
+    List<Main.Media> media;
+    String[] name_prefixes = new String[SAMPLES];
+    String[] cast_prefixes = new String[SAMPLES];
+    String[] cast_names = new String[SAMPLES];
+    String[] typo_cast_names = new String[SAMPLES];
+    String[] words = new String[SAMPLES];
+    private int cursor = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        media = catalog.equals("bundled") ? bundled() : scaled(Integer.parseInt(catalog));
+        install(media);
+        // Draw sample queries from the catalog itself so every lookup has realistic hit rates
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            Main.Media m = media.get(random.nextInt(media.size()));
+            name_prefixes[i] = m.name.substring(0, Math.min(m.name.length(), 1 + random.nextInt(3)));
+            String[] actors = m.cast().split(",");
+            cast_names[i] = actors[random.nextInt(actors.length)].trim();
+            cast_prefixes[i] = cast_names[i].substring(0, Math.min(cast_names[i].length(), 2 + random.nextInt(3)));
+            // Drop one character to simulate a typo such as "Keanu Reves"
+            int drop = cast_names[i].length() / 2;
+            typo_cast_names[i] = cast_names[i].length() < 2 ? cast_names[i] : cast_names[i].substring(0, drop) + cast_names[i].substring(drop + 1);
+            List<String> tokens = Main.word_index.tokenize(m.description);
+            words[i] = tokens.isEmpty() ? "the" : tokens.get(random.nextInt(tokens.size()));
+        }
+    }
+
+    // Method to advance to the next sample query
+    int next() {
+        cursor = (cursor + 1) & (SAMPLES - 1);
+        return cursor;
+    }
+
+    // Method to load the bundled platform CSV files through Main's loader
+    static List<Main.Media> bundled() {
+        Main.media_list = new ArrayList<>();
+        Main.trie = new Main.Trie();
+        List<String> files = new ArrayList<>();
+        for (String file : Main.MEDIA_FILES) {
+            // Skip optional files (such as Crave_Data.csv) that are not bundled
+            if (new java.io.File(DATA_DIR, file).exists()) files.add(DATA_DIR + "/" + file);
+        }
+        Main.load_media_data(files.toArray(new String[0]));
+        return new ArrayList<>(Main.media_list);
+    }
+
+    // Method to build a synthetic catalog of the given size by cycling through the bundled titles;
+    // names and cast members get a per-copy suffix so the Tries and cast index grow like a real catalog
+    static List<Main.Media> scaled(int size) {
+        List<Main.Media> base = bundled();
+        List<Main.Media> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Main.Media m = base.get(i % base.size());
+            int copy = i / base.size();
+            if (copy == 0) {
+                result.add(m);
+                continue;
+            }
+            StringBuilder cast = new StringBuilder();
+            for (String actor : m.cast().split(",")) {
+                if (cast.length() > 0) cast.append(", ");
+                // Actor pools repeat every 997 copies, so popular actors appear in many titles
+                cast.append(actor.trim()).append(' ').append(copy % 997);
+            }
+            result.add(new Main.Media(m.type(), m.name + " " + copy, m.description, m.genre(), m.release_date(),
+                    m.season(), cast.toString(), m.platform(), m.url));
+        }
+        return result;
+    }
+
+    // Method to make a catalog the current one and build every index over it; media_store.build renumbers the
+    // items and turns them into views over the new rows
+    static void install(List<Main.Media> media) {
+        Main.media_list = new ArrayList<>(media);
+        Main.trie = new Main.Trie();
+        Main.cast_trie = new Main.Trie();
+        Main.media_store.build();
+        for (Main.Media m : media) Main.trie.insert(m.name, m);
+        Main.cast_index.build();
+        Main.word_index.build();
+        Main.facet_index.build();
+        Main.query_cache.invalidate();
+    }
+}
@@ -0,0 +1,47 @@
+package bingebuddy;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Benchmarks for the co-star graph: degrees-of-separation paths, top co-stars and the parallel all-pairs sample
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class CostarBenchmarks {
+    // Random actor pairs traced by one sample run
+    static final int SAMPLE_PAIRS = 1000;
+
+    // Threads used by the sample benchmark
+    @Param({"1", "4"})
+    public int threads;
+
+    @Setup(Level.Trial)
+    public void setup(CatalogState state) {
+        Main.costar_graph.build(null);
+        System.out.printf("%n%s%n", Main.costar_graph.sample(SAMPLE_PAIRS, threads, 42));
+    }
+
+    // Shortest chain of shared titles between two cast members drawn from the catalog
+    @Benchmark
+    public Main.costar_graph.connection path(CatalogState state) {
+        int i = state.next();
+        return Main.costar_graph.path(state.cast_names[i], state.cast_names[(i * 7 + 1) & (CatalogState.SAMPLES - 1)]);
+    }
+
+    // Ten most frequent co-stars of a cast member
+    @Benchmark
+    public List<Map.Entry<String, Integer>> top_costars(CatalogState state) {
+        return Main.costar_graph.top_costars(state.cast_names[state.next()], 10);
+    }
+
+    // Random actor pairs traced on a fork-join pool of the given size
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public String sample() {
+        return Main.costar_graph.sample(SAMPLE_PAIRS, threads, 42);
+    }
+}
@@ -0,0 +1,57 @@
+package bingebuddy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Benchmarks for splitting CSV records: the line-based split_csv and the offset-based csv_tokenizer
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvBenchmarks {
+    private List<String> lines;
+    private ByteBuffer bytes;
+    private final Main.csv_tokenizer tokenizer = new Main.csv_tokenizer();
+
+    @Setup
+    public void setup() throws IOException {
+        Path file = Paths.get(CatalogState.DATA_DIR, "Netflix_Data.csv");
+        lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+    }
+
+    // split_csv over every line of Netflix_Data.csv
+    @Benchmark
+    public void split_csv(Blackhole bh) {
+        for (String line : lines) bh.consume(Main.split_csv(line));
+    }
+
+    // csv_tokenizer over the same file, decoding every field
+    @Benchmark
+    public void tokenizer_fields(Blackhole bh) {
+        int limit = bytes.limit();
+        for (int pos = 0; pos < limit; ) {
+            pos = tokenizer.next(bytes, pos, limit);
+            bh.consume(tokenizer.fields(bytes));
+        }
+    }
+
+    // csv_tokenizer offsets only, without decoding any field
+    @Benchmark
+    public int tokenizer_offsets() {
+        int limit = bytes.limit(), fields = 0;
+        for (int pos = 0; pos < limit; ) {
+            pos = tokenizer.next(bytes, pos, limit);
+            fields += tokenizer.count;
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,35 @@
+package bingebuddy;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Benchmarks for type/platform/genre filtering: facet bitsets against a full media_list scan
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class FacetBenchmarks {
+    // "Drama TV shows on Netflix" through bitset intersection
+    @Benchmark
+    public List<Main.Media> facet_filter(CatalogState state) {
+        return Main.facet_index.select(Main.facet_index.filter("TV Show", "Netflix", "Drama"));
+    }
+
+    // The same query as the stream scan the listings used before the facet index
+    @Benchmark
+    public List<Main.Media> scan_filter(CatalogState state) {
+        List<Main.Media> results = new ArrayList<>();
+        for (Main.Media m : Main.media_list) {
+            if (m.type().equals("TV Show") && m.platform().equalsIgnoreCase("Netflix")
+                    && Main.map_to_valid_genre(m.genre()).equalsIgnoreCase("Drama")) results.add(m);
+        }
+        return results;
+    }
+
+    @Benchmark
+    public List<Main.Media> name_lookup(CatalogState state) {
+        return Main.facet_index.named(state.media.get(state.next() % state.media.size()).name, "Movie");
+    }
+}
@@ -0,0 +1,32 @@
+package bingebuddy;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Benchmarks for genre spell correction
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenreBenchmarks {
+    // Misspelled inputs of varying length
+    private final String[] inputs = {"comdy", "thriler", "animaton", "acton", "drma", "horor", "adventur", "scifi", "sprts", "documentry"};
+    private int cursor = 0;
+
+    private String next() {
+        cursor = (cursor + 1) % inputs.length;
+        return inputs[cursor];
+    }
+
+    @Benchmark
+    public int lev_dist() {
+        return Main.lev_dist(next(), "documentary");
+    }
+
+    @Benchmark
+    public String find_nearest_genre() {
+        return Main.find_nearest_genre(next());
+    }
+}
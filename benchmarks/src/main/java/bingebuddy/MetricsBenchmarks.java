@@ -0,0 +1,39 @@
+package bingebuddy;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Benchmarks for the cost of the metrics registry on the hot paths it instruments
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmarks {
+    private long value = 0;
+
+    // One timer sample: two clock reads plus the histogram update
+    @Benchmark
+    public void timer() {
+        Main.metrics.time("benchmark_timer", Main.metrics.start());
+    }
+
+    // One value sample, spread over many buckets
+    @Benchmark
+    public void record() {
+        Main.metrics.record("benchmark_values", "results", value = (value * 31 + 7) & 0xFFFFF);
+    }
+
+    // One counter increment
+    @Benchmark
+    public void count() {
+        Main.metrics.count("benchmark_counter");
+    }
+
+    // Timed Trie completion, as used by autocomplete, for scale
+    @Benchmark
+    public java.util.List<String> trie_suggest(CatalogState state) {
+        return Main.trie.suggest(state.name_prefixes[state.next()], "Movie", Main.Trie.TOP_K);
+    }
+}
@@ -0,0 +1,92 @@
+package bingebuddy;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Benchmarks for the memory-mapped catalog against the heap indexes: name completion, cast lookup and a platform
+// listing page, plus the heap retained by each representation
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class OffHeapBenchmarks {
+    // Results asked for per query, and titles read per listing page
+    static final int K = 10;
+
+    private Path dir;
+
+    @Setup(Level.Trial)
+    public void setup(CatalogState state) throws IOException {
+        // Write the benchmark catalog out as one CSV file and build the off-heap files from it
+        dir = Files.createTempDirectory("offheap");
+        Path csv = dir.resolve("catalog.csv");
+        try (Writer out = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            out.write("Type,Name,Description,Genre,Release Date,Season,Cast,Platform,Link\n");
+            for (Main.Media m : state.media) {
+                String[] fields = {m.type(), m.name, m.description, m.genre(), m.release_date(), m.season(), m.cast(), m.platform(), m.url};
+                for (int i = 0; i < fields.length; i++) {
+                    if (i > 0) out.write(',');
+                    out.write('"' + fields[i].replace("\"", "\"\"") + '"');
+                }
+                out.write('\n');
+            }
+        }
+        String[] sources = {csv.toString()};
+        Main.offheap_catalog.open(dir.resolve("catalog").toString(), sources);
+        // Reopen the built files to measure what an open catalog keeps on the heap
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heap_before = runtime.totalMemory() - runtime.freeMemory();
+        Main.offheap_catalog.open(dir.resolve("catalog").toString(), sources);
+        System.gc();
+        System.out.printf("%nOff-heap catalog: %d titles, %.1f MB mapped, heap growth on reopen %.2f MB%n", Main.offheap_catalog.rows(),
+                Main.offheap_catalog.mapped_bytes() / 1048576.0, (runtime.totalMemory() - runtime.freeMemory() - heap_before) / 1048576.0);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        try (java.util.stream.Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    // Name completions from the sorted name order in the mapped files
+    @Benchmark
+    public List<String> names_offheap(CatalogState state) {
+        return Main.offheap_catalog.names(state.name_prefixes[state.next()], "Movie", K);
+    }
+
+    // Name completions from the heap Trie
+    @Benchmark
+    public List<String> names_heap(CatalogState state) {
+        return Main.trie.suggest(state.name_prefixes[state.next()], "Movie", K);
+    }
+
+    // Titles of a cast member, decoded through flyweight handles
+    @Benchmark
+    public List<Main.Media> cast_offheap(CatalogState state) {
+        List<Main.Media> media = new ArrayList<>();
+        for (Main.offheap_catalog.title t : Main.offheap_catalog.cast(state.cast_names[state.next()]).next_page(K)) media.add(t.media());
+        return media;
+    }
+
+    // Titles of a cast member from the heap cast index
+    @Benchmark
+    public List<Main.Media> cast_heap(CatalogState state) {
+        return Main.cast_index.search(state.cast_names[state.next()]);
+    }
+
+    // First page of a platform listing, decoded through flyweight handles
+    @Benchmark
+    public List<Main.Media> platform_page_offheap() {
+        List<Main.Media> media = new ArrayList<>();
+        for (Main.offheap_catalog.title t : Main.offheap_catalog.platform("Netflix", "Movie").next_page(K)) media.add(t.media());
+        return media;
+    }
+}
@@ -0,0 +1,65 @@
+package bingebuddy;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Benchmarks for sorting, filtering and bundling subscription plans
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlanBenchmarks {
+    // Plans to sort: the bundled CSV or this many synthetic plans derived from it
+    @Param({"bundled", "1000", "100000"})
+    public String plans;
+
+    @Setup
+    public void setup() {
+        Main.plans = new ArrayList<>();
+        Main.load_subs_plans(CatalogState.DATA_DIR + "/" + Main.PLANS_FILE);
+        if (!plans.equals("bundled")) {
+            List<Main.subscription_plan> base = new ArrayList<>(Main.plans);
+            Random random = new Random(42);
+            Main.plans = new ArrayList<>();
+            for (int i = 0; i < Integer.parseInt(plans); i++) {
+                Main.subscription_plan p = base.get(i % base.size());
+                // Spread prices so the sort sees mostly distinct keys, as a real plan catalog would
+                String price = String.format("$%d.%02d", random.nextInt(1000), random.nextInt(100));
+                Main.plans.add(new Main.subscription_plan(p.name + " " + i, price, p.resolution, p.devices,
+                        p.concurrent_devices, p.link, p.platform));
+            }
+        }
+        Main.plan_index.build();
+    }
+
+    // quick_sort (ascending) over a fresh copy of the plans
+    @Benchmark
+    public List<Main.subscription_plan> quick_sort() {
+        return Main.sorted_plans(true);
+    }
+
+    // "At most $15 with at least 4K" through the price index
+    @Benchmark
+    public List<Main.subscription_plan> range_query() {
+        return Main.plan_index.query(1500, 4, 0, null);
+    }
+
+    // The same question answered by sorting a copy and filtering it, as the menu did before the index
+    @Benchmark
+    public List<Main.subscription_plan> range_scan() {
+        List<Main.subscription_plan> result = new ArrayList<>();
+        for (Main.subscription_plan p : Main.sorted_plans(true)) {
+            if (p.get_price() <= 15 && Main.subscription_plan.resolution_tier(p.resolution) >= 4) result.add(p);
+        }
+        return result;
+    }
+
+    // Cheapest plans covering every bundled platform
+    @Benchmark
+    public Main.plan_index.bundle cheapest_bundle() {
+        return Main.plan_index.cheapest_bundle(List.of("Netflix", "Amazon Prime", "Apple TV", "Crave"), 0, 0);
+    }
+}
@@ -0,0 +1,77 @@
+package bingebuddy;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Benchmarks for the query result cache on a skewed query stream, where a few terms are searched most of the time
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class QueryCacheBenchmarks {
+    // Length of the precomputed query stream
+    static final int STREAM = 1 << 16;
+
+    // Zipf exponent of the query stream; 1.0 roughly matches the repeats in search_frequency.csv
+    @Param({"1.0"})
+    public double skew;
+
+    private int[] stream;
+    private int cursor = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // Inverse-CDF sampling over the sample words, most popular first
+        double[] cdf = new double[CatalogState.SAMPLES];
+        double total = 0;
+        for (int i = 0; i < cdf.length; i++) cdf[i] = total += 1 / Math.pow(i + 1, skew);
+        Random random = new Random(42);
+        stream = new int[STREAM];
+        for (int i = 0; i < STREAM; i++) {
+            int at = Arrays.binarySearch(cdf, random.nextDouble() * total);
+            stream[i] = Math.min(at < 0 ? -at - 1 : at, cdf.length - 1);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        System.out.println();
+        System.out.println(Main.query_cache.stats());
+    }
+
+    // Helper method to pick the next word of the stream
+    private String next(CatalogState state) {
+        cursor = (cursor + 1) & (STREAM - 1);
+        return state.words[stream[cursor]];
+    }
+
+    // Word search through the query cache, as Main.word_search does (without recording the search frequency)
+    @Benchmark
+    public List<Map.Entry<Main.Media, Integer>> word_search_cached(CatalogState state) {
+        String word = next(state);
+        return Main.query_cache.get("word", "Movie", Main.query_cache.words_key(word), () -> {
+            List<Map.Entry<Main.Media, Integer>> results = Main.word_index.search(word, "Movie");
+            results.sort((a, b) -> b.getValue().compareTo(a.getValue()));
+            return results;
+        }, list -> Main.query_cache.list_bytes(list, 48));
+    }
+
+    // The same stream answered from the index every time
+    @Benchmark
+    public List<Map.Entry<Main.Media, Integer>> word_search_uncached(CatalogState state) {
+        List<Map.Entry<Main.Media, Integer>> results = Main.word_index.search(next(state), "Movie");
+        results.sort((a, b) -> b.getValue().compareTo(a.getValue()));
+        return results;
+    }
+
+    // Genre lookups through the cache; the bitset filter behind them is already cheap, so this bounds the cache's overhead
+    @Benchmark
+    public BitSet genre_cached(CatalogState state) {
+        return Main.genre_ids(GENRES[stream[cursor = (cursor + 1) & (STREAM - 1)] % GENRES.length], "Movie");
+    }
+
+    static final String[] GENRES = {"Comedy", "Thriller", "Animation", "Action", "Drama", "Horror", "Adventure", "Sci-fi", "Sports", "Documentary"};
+}
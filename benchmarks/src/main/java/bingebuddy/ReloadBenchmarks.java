@@ -0,0 +1,96 @@
+package bingebuddy;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Benchmarks for applying a one-title edit: incremental index maintenance against rebuilding every index
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ReloadBenchmarks {
+    // Number of random adds, updates and removes applied before comparing against a full rebuild
+    static final int EQUIVALENCE_EDITS = 2000;
+
+    @Setup(Level.Trial)
+    public void setup(CatalogState state) {
+        // Keep the original records: update_media rewrites media items in place
+        List<Main.Media> original = copy(state.media);
+        Random random = new Random(11);
+        for (int i = 0; i < EQUIVALENCE_EDITS; i++) {
+            List<Main.Media> media = Main.media_list;
+            Main.Media source = media.get(random.nextInt(media.size()));
+            int op = random.nextInt(3);
+            if (op == 0 && media.size() > 1) {
+                Main.catalog_reloader.remove_media(media.get(random.nextInt(media.size())));
+            } else if (op == 1) {
+                Main.Media m = media.get(random.nextInt(media.size()));
+                Main.catalog_reloader.update_media(m, new Main.Media(source.type(), random.nextBoolean() ? m.name : source.name + " v" + i,
+                        source.description, source.genre(), random.nextBoolean() ? "2031" : source.release_date(), source.season(),
+                        source.cast() + ", Extra Person " + random.nextInt(5), source.platform(), source.url));
+            } else {
+                Main.catalog_reloader.add_media(new Main.Media(source.type(), random.nextBoolean() ? source.name : source.name + " " + i,
+                        source.description + " bonus words " + i, source.genre(), source.release_date(), source.season(), source.cast(),
+                        source.platform(), source.url));
+            }
+        }
+        String incremental = fingerprint(state);
+        CatalogState.install(copy(Main.media_list));
+        boolean match = incremental.equals(fingerprint(state));
+        System.out.printf("%nIncremental index maintenance after %d random edits %s a full rebuild%n",
+                EQUIVALENCE_EDITS, match ? "matches" : "DOES NOT MATCH");
+        state.media = original;
+        CatalogState.install(original);
+    }
+
+    // Re-apply one title's record through catalog_reloader.update_media (unindex, re-encode, reindex)
+    @Benchmark
+    public Main.Media update_one_title(CatalogState state) {
+        Main.Media m = Main.media_list.get(state.next() % Main.media_list.size());
+        Main.catalog_reloader.update_media(m, new Main.Media(m.type(), m.name, m.description, m.genre(), m.release_date(),
+                m.season(), m.cast(), m.platform(), m.url));
+        return m;
+    }
+
+    // What a restart-free refresh cost before: rebuilding every index over the whole catalog
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Main.Trie rebuild_indexes(CatalogState state) {
+        CatalogState.install(Main.media_list);
+        return Main.trie;
+    }
+
+    // Helper method to copy media records into new media items
+    private static List<Main.Media> copy(List<Main.Media> media) {
+        List<Main.Media> copies = new ArrayList<>(media.size());
+        for (Main.Media m : media) {
+            copies.add(new Main.Media(m.type(), m.name, m.description, m.genre(), m.release_date(), m.season(), m.cast(), m.platform(), m.url));
+        }
+        return copies;
+    }
+
+    // Helper method to answer the sample queries against every index, identifying titles by ID
+    private static String fingerprint(CatalogState state) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < CatalogState.SAMPLES; i++) {
+            for (String type : new String[]{"Movie", "TV Show"}) {
+                out.append(Main.trie.suggest(state.name_prefixes[i], type, 10));
+                for (Map.Entry<Main.Media, Integer> hit : Main.word_index.search(state.words[i], type)) {
+                    out.append(hit.getKey().id).append(':').append(hit.getValue()).append(' ');
+                }
+            }
+            out.append(Main.cast_trie.suggest(state.cast_prefixes[i], null, 10));
+            List<Integer> credited = new ArrayList<>();
+            for (Main.Media m : Main.cast_index.search(state.cast_names[i])) credited.add(m.id);
+            Collections.sort(credited);
+            out.append(credited).append('\n');
+        }
+        for (String type : new String[]{null, "Movie", "TV Show"}) {
+            for (String genre : new String[]{null, "Comedy", "Drama", "Action"}) out.append(Main.facet_index.filter(type, null, genre));
+        }
+        return out.toString();
+    }
+}
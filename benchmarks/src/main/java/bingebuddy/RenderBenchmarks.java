@@ -0,0 +1,49 @@
+package bingebuddy;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Benchmarks for rendering a full listing: per-item String.format against the shared hand-rolled writer
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class RenderBenchmarks {
+    // Sink that discards output so only formatting cost is measured
+    private static final PrintStream NULL_STREAM = new PrintStream(OutputStream.nullOutputStream());
+    private static final PrintWriter NULL_WRITER = new PrintWriter(new BufferedWriter(new OutputStreamWriter(OutputStream.nullOutputStream()), 1 << 16));
+
+    // The listing loop as it was: String.format per item (twice for TV shows) and one println each
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void string_format(CatalogState state) {
+        for (Main.Media m : state.media) {
+            String base = String.format("%s - %s\nDescription: %s\nGenre: %s\nRelease: %s\nCast: %s\nPlatform: %s\nURL: %s",
+                    m.type(), m.name, m.description, m.genre(), m.release_date(), m.cast(), m.platform(), m.url);
+            if (m.type().equals("TV Show") && !m.season().equals("-")) {
+                base = String.format("%s - %s\nDescription: %s\nGenre: %s\nRelease: %s\nSeason: %s\nCast: %s\nPlatform: %s\nURL: %s",
+                        m.type(), m.name, m.description, m.genre(), m.release_date(), m.season(), m.cast(), m.platform(), m.url);
+            }
+            NULL_STREAM.println(base + "\n------------------------");
+        }
+    }
+
+    // media_writer.write_entry into one buffered writer, flushed once at the end
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void media_writer(CatalogState state) {
+        for (Main.Media m : state.media) Main.media_writer.write_entry(NULL_WRITER, m);
+        NULL_WRITER.flush();
+    }
+
+    // Time to the first page of a whole-catalog listing through the lazy cursor
+    @Benchmark
+    public int first_page(CatalogState state) {
+        Main.result_cursor<Main.Media> cursor = Main.result_cursor.of(Main.facet_index.filter(null, null, null));
+        for (Main.Media m : cursor.next_page(Main.media_writer.PAGE_SIZE)) Main.media_writer.write_entry(NULL_WRITER, m);
+        NULL_WRITER.flush();
+        return cursor.total;
+    }
+}
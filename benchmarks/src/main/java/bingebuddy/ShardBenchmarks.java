@@ -0,0 +1,81 @@
+package bingebuddy;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Benchmarks for scatter-gather over in-process platform shards, against the same query on the whole catalog
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ShardBenchmarks {
+    // Results asked for per query
+    static final int K = 10;
+    // Random queries of every kind compared between the shards and the whole catalog before measuring
+    static final int EQUIVALENCE_QUERIES = 2000;
+
+    // Query kind: a name prefix, a cast member or a description word
+    @Param({"name", "cast", "word"})
+    public String op;
+
+    @Setup(Level.Trial)
+    public void setup(CatalogState state) {
+        // The first query creates the shards and builds their slices; large slices can outlast the shard timeout,
+        // so repeat until every shard answers in time
+        while (!Main.shard_coordinator.query(op, "Movie", text(state, 0), K).timed_out.isEmpty()) {
+            // Slices still building
+        }
+        // Merged shard answers must equal the single-index answer; hits compare by score and name, since titles
+        // listed on several platforms tie
+        Random random = new Random(1);
+        int mismatches = 0;
+        for (int q = 0; q < EQUIVALENCE_QUERIES; q++) {
+            Main.Media m = state.media.get(random.nextInt(state.media.size()));
+            String kind = Main.shard_coordinator.OPS.get(random.nextInt(Main.shard_coordinator.OPS.size()));
+            String type = random.nextBoolean() ? "Movie" : "TV Show";
+            String text;
+            if (kind.equals("name")) {
+                text = m.name.toLowerCase().substring(0, Math.min(m.name.length(), 1 + random.nextInt(3)));
+            } else if (kind.equals("cast")) {
+                text = m.cast().split(",")[0].trim();
+            } else if (kind.equals("genre")) {
+                text = m.genre();
+            } else {
+                List<String> tokens = Main.word_index.tokenize(m.description);
+                text = tokens.isEmpty() ? "the" : tokens.get(random.nextInt(tokens.size()));
+            }
+            int k = 1 + random.nextInt(K);
+            List<String> sharded = ranking(Main.shard_coordinator.query(kind, type, text, k).hits);
+            if (!sharded.equals(ranking(Main.shard_coordinator.answer(kind, type, text, k)))) mismatches++;
+        }
+        System.out.printf("%nScatter-gather matched the single-index answer on %d of %d random queries%n",
+                EQUIVALENCE_QUERIES - mismatches, EQUIVALENCE_QUERIES);
+    }
+
+    // Fan out to one shard per platform, wait for all of them and merge the ranked answers
+    @Benchmark
+    public List<Main.shard_coordinator.hit> scatter(CatalogState state) {
+        return Main.shard_coordinator.query(op, "Movie", text(state, state.next()), K).hits;
+    }
+
+    // The same query answered directly from the global indexes
+    @Benchmark
+    public List<Main.shard_coordinator.hit> single(CatalogState state) {
+        return Main.shard_coordinator.answer(op, "Movie", text(state, state.next()), K);
+    }
+
+    // Helper method to reduce hits to their scores and lowercase names, in rank order
+    private static List<String> ranking(List<Main.shard_coordinator.hit> hits) {
+        List<String> ranking = new ArrayList<>();
+        for (Main.shard_coordinator.hit h : hits) ranking.add(h.score + "|" + h.media.name.toLowerCase());
+        return ranking;
+    }
+
+    // Helper method to pick the sample query text for the benchmarked kind
+    private String text(CatalogState state, int i) {
+        return op.equals("name") ? state.name_prefixes[i] : op.equals("cast") ? state.cast_names[i] : state.words[i];
+    }
+}
@@ -0,0 +1,87 @@
+package bingebuddy;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Benchmarks for "more like this": MinHash/LSH candidates re-ranked by Jaccard, against a brute-force Jaccard scan
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SimilarBenchmarks {
+    // Number of similar titles asked for
+    static final int TOP_N = 10;
+    // Number of queries used to measure precision
+    static final int PRECISION_QUERIES = 200;
+
+    private long[][] features;
+    private Main.Media[] queries;
+    private int cursor = 0;
+
+    @Setup(Level.Trial)
+    public void setup(CatalogState state) {
+        Main.similar_index.build();
+        features = new long[Main.media_list.size()][];
+        for (int i = 0; i < features.length; i++) features[i] = Main.similar_index.features(Main.media_list.get(i));
+        Random random = new Random(7);
+        queries = new Main.Media[CatalogState.SAMPLES];
+        for (int i = 0; i < queries.length; i++) queries[i] = Main.media_list.get(random.nextInt(Main.media_list.size()));
+        // Precision@N: the share of LSH results whose exact Jaccard reaches the N-th best exact score, so ties in the
+        // brute-force ranking do not count against the index
+        double hits = 0, slots = 0;
+        for (int q = 0; q < Math.min(PRECISION_QUERIES, queries.length); q++) {
+            Main.Media m = queries[q];
+            List<Main.Media> exact = brute_force(m);
+            if (exact.isEmpty()) continue;
+            double cutoff = score(m, exact.get(exact.size() - 1));
+            for (Main.Media found : Main.similar_index.similar(m, TOP_N)) if (score(m, found) >= cutoff) hits++;
+            slots += exact.size();
+        }
+        System.out.printf("%nLSH precision@%d against brute-force Jaccard: %.3f over %d queries (%d titles)%n",
+                TOP_N, hits / slots, Math.min(PRECISION_QUERIES, queries.length), features.length);
+    }
+
+    // Top-N similar titles through the LSH buckets
+    @Benchmark
+    public List<Main.Media> lsh() {
+        return Main.similar_index.similar(next(), TOP_N);
+    }
+
+    // Top-N similar titles by exact Jaccard against every title of the same type
+    @Benchmark
+    public List<Main.Media> brute_force() {
+        return brute_force(next());
+    }
+
+    // Helper method to pick the next query title
+    private Main.Media next() {
+        cursor = (cursor + 1) & (CatalogState.SAMPLES - 1);
+        return queries[cursor];
+    }
+
+    // Helper method to rank every other title of the same type (and a different name) by exact Jaccard
+    private List<Main.Media> brute_force(Main.Media m) {
+        long[] mine = features[m.id];
+        PriorityQueue<double[]> best = new PriorityQueue<>((a, b) -> a[0] != b[0] ? Double.compare(a[0], b[0]) : Double.compare(b[1], a[1]));
+        for (int i = 0; i < features.length; i++) {
+            Main.Media other = Main.media_list.get(i);
+            if (i == m.id || !other.type().equals(m.type()) || other.name.equalsIgnoreCase(m.name)) continue;
+            double similarity = Main.similar_index.jaccard(mine, features[i], 0, features[i].length);
+            if (similarity == 0) continue;
+            best.add(new double[]{similarity, i});
+            if (best.size() > TOP_N) best.poll();
+        }
+        List<Main.Media> results = new ArrayList<>();
+        while (!best.isEmpty()) results.add(Main.media_list.get((int) best.poll()[1]));
+        Collections.reverse(results);
+        return results;
+    }
+
+    // Helper method to return the exact Jaccard similarity of two titles
+    private double score(Main.Media a, Main.Media b) {
+        return Main.similar_index.jaccard(features[a.id], features[b.id], 0, features[b.id].length);
+    }
+}
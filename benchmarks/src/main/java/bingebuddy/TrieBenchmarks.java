@@ -0,0 +1,49 @@
+package bingebuddy;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Benchmarks for building and querying the title and cast Tries
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class TrieBenchmarks {
+    // Trie.insert for every title in the catalog
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Main.Trie insert_catalog(CatalogState state) {
+        Main.Trie trie = new Main.Trie();
+        for (Main.Media m : state.media) trie.insert(m.name, m);
+        return trie;
+    }
+
+    @Benchmark
+    public List<String> get_suggestions(CatalogState state) {
+        return Main.trie.get_suggestions(state.name_prefixes[state.next()], "Movie");
+    }
+
+    @Benchmark
+    public List<String> suggest_top_k(CatalogState state) {
+        return Main.trie.suggest(state.name_prefixes[state.next()], "Movie", Main.Trie.TOP_K);
+    }
+
+    @Benchmark
+    public List<String> fetch_cast_suggestions(CatalogState state) {
+        return Main.cast_trie.fetch_cast_suggestions(state.cast_prefixes[state.next()]);
+    }
+
+    @Benchmark
+    public List<String> suggest_cast_top_k(CatalogState state) {
+        return Main.cast_trie.suggest(state.cast_prefixes[state.next()], null, Main.Trie.TOP_K);
+    }
+
+    // Typo-tolerant cast completion for a full name with one character missing
+    @Benchmark
+    public List<String> suggest_cast_fuzzy(CatalogState state) {
+        String name = state.typo_cast_names[state.next()];
+        return Main.cast_trie.suggest_fuzzy(name, null, Main.Trie.TOP_K, Main.typo_budget(name));
+    }
+}
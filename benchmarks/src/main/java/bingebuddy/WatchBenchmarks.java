@@ -0,0 +1,58 @@
+package bingebuddy;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Benchmarks for the where-to-watch index: consolidated title and exclusives lookups against media_list scans
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class WatchBenchmarks {
+    @Setup(Level.Trial)
+    public void setup(CatalogState state) {
+        Main.plans = new ArrayList<>();
+        Main.load_subs_plans(CatalogState.DATA_DIR + "/" + Main.PLANS_FILE);
+        Main.plan_index.build();
+        Main.watch_index.build();
+        System.out.printf("%n%d titles consolidated into %d works%n", Main.media_list.size(), Main.watch_index.works());
+    }
+
+    // Every platform carrying a title, with the cheapest plan that unlocks it
+    @Benchmark
+    public Main.subscription_plan where_to_watch(CatalogState state) {
+        Map<String, Main.subscription_plan> cheapest = Main.plan_index.cheapest_plans(0, 0);
+        Main.subscription_plan best = null;
+        for (Main.watch_index.work w : Main.watch_index.named(state.media.get(state.next() % state.media.size()).name, null)) {
+            w.availability();
+            best = w.cheapest_plan(cheapest);
+        }
+        return best;
+    }
+
+    // The same question as the media_list scan with equalsIgnoreCase that name search used to run
+    @Benchmark
+    public List<Main.Media> where_to_watch_scan(CatalogState state) {
+        String name = state.media.get(state.next() % state.media.size()).name;
+        List<Main.Media> copies = new ArrayList<>();
+        for (Main.Media m : Main.media_list) if (m.name.equalsIgnoreCase(name)) copies.add(m);
+        return copies;
+    }
+
+    // Titles only Apple TV+ carries
+    @Benchmark
+    public List<Main.watch_index.work> exclusive(CatalogState state) {
+        return Main.watch_index.exclusive("Apple TV+", null);
+    }
+
+    // Rebuilding the index over the whole catalog
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int build(CatalogState state) {
+        Main.watch_index.build();
+        return Main.watch_index.works();
+    }
+}
@@ -0,0 +1,51 @@
+package bingebuddy;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.*;
+
+// Benchmarks for generic word search scoring, against the original per-query regex scan
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class WordSearchBenchmarks {
+    // Index lookup plus ranking, as done by Main.word_search (without recording the search frequency)
+    @Benchmark
+    public List<Map.Entry<Main.Media, Integer>> indexed(CatalogState state) {
+        List<Map.Entry<Main.Media, Integer>> results = Main.word_index.search(state.words[state.next()], "Movie");
+        results.sort((a, b) -> b.getValue().compareTo(a.getValue()));
+        return results;
+    }
+
+    // The scan generic_word_search used before the inverted index, kept as the baseline
+    @Benchmark
+    public List<Map.Entry<Main.Media, Integer>> regex_scan(CatalogState state) {
+        String word = state.words[state.next()];
+        Pattern pattern = Pattern.compile("\\b" + Pattern.quote(word) + "(s)?\\b", Pattern.CASE_INSENSITIVE);
+        List<Map.Entry<Main.Media, Integer>> results = new ArrayList<>();
+        for (Main.Media m : Main.media_list) {
+            if (!m.type().equals("Movie")) continue;
+            Matcher name = pattern.matcher(m.name);
+            Matcher desc = pattern.matcher(m.description);
+            if (name.find() || desc.find()) {
+                int frequency = 0;
+                desc.reset();
+                while (desc.find()) frequency++;
+                results.add(new AbstractMap.SimpleEntry<>(m, frequency));
+            }
+        }
+        results.sort((a, b) -> b.getValue().compareTo(a.getValue()));
+        return results;
+    }
+
+    // word_index.build over the whole catalog
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void build_index(CatalogState state) {
+        Main.word_index.build();
+    }
+}